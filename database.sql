@@ -11,10 +11,13 @@ CREATE TABLE IF NOT EXISTS site (
     status ENUM('INDEXING', 'INDEXED', 'FAILED') NOT NULL,
     status_time DATETIME NOT NULL,
     last_error TEXT,
-    url VARCHAR(255) NOT NULL UNIQUE,
+    url VARCHAR(255) NOT NULL,
     name VARCHAR(255) NOT NULL,
+    generation INT NOT NULL DEFAULT 1,
+    generation_state VARCHAR(20) NOT NULL DEFAULT 'ACTIVE',
     INDEX idx_status (status),
-    INDEX idx_url (url)
+    INDEX idx_url (url),
+    INDEX idx_site_url_generation_state (url, generation_state)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
 
 -- Таблица страниц
@@ -24,6 +27,12 @@ CREATE TABLE IF NOT EXISTS page (
     path TEXT NOT NULL,
     code INT NOT NULL,
     content MEDIUMTEXT NOT NULL,
+    title TEXT,
+    text MEDIUMTEXT,
+    etag VARCHAR(255),
+    last_modified VARCHAR(255),
+    content_hash VARCHAR(64),
+    lemma_count INT NOT NULL DEFAULT 0,
     FOREIGN KEY (site_id) REFERENCES site(id) ON DELETE CASCADE,
     INDEX idx_site_id (site_id),
     INDEX idx_path (path(255))
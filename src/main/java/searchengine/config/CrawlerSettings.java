@@ -0,0 +1,82 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "crawler")
+public class CrawlerSettings {
+    private String userAgent = "Mozilla/5.0";
+    private int fetchTimeoutMs = 10_000;
+    /**
+     * Минимальный интервал между запросами к одному сайту
+     */
+    private long politenessDelayMs = 500;
+    /**
+     * Число одновременно загружаемых страниц одного сайта
+     */
+    private int fetchWorkers = 4;
+    /**
+     * Общий лимит одновременных загрузок для всех сайтов
+     */
+    private int maxConcurrentFetches = 16;
+    /**
+     * Число сайтов, обходимых одновременно; остальные ждут своей очереди
+     */
+    private int maxConcurrentSites = 4;
+    private int parseWorkers = 2;
+    private int persistWorkers = 2;
+    /**
+     * Ёмкость очередей между стадиями загрузки, разбора и записи
+     */
+    private int stageQueueCapacity = 64;
+    /**
+     * Сколько найденных адресов сайта помнить точно, по 64-битному
+     * отпечатку; таблица занимает до 16 байт на адрес
+     */
+    private int visitedMaxFingerprints = 1 << 20;
+    /**
+     * Размер фильтра Блума для адресов сверх visitedMaxFingerprints
+     */
+    private long visitedBloomBits = 1L << 27;
+    /**
+     * Параметры запроса, которые не меняют страницу и удаляются из адреса;
+     * «*» в конце имени задаёт префикс
+     */
+    private List<String> canonicalStripParameters = List.of(
+            "utm_*", "fbclid", "gclid", "yclid", "_openstat", "phpsessid", "jsessionid", "sessionid");
+    private boolean canonicalStripTrailingSlash = true;
+    /**
+     * Страница с rel=canonical на другой адрес сайта не сохраняется,
+     * вместо неё обходится указанный адрес
+     */
+    private boolean followCanonicalLink = true;
+    /**
+     * Сколько бит SimHash текста могут различаться у дубликатов, от 0 до 3;
+     * 0 — только точные копии текста, -1 отключает поиск дубликатов.
+     * Отпечаток берётся со всего текста страницы вместе с меню и подвалом,
+     * поэтому при расстоянии больше 0 разные короткие страницы одного
+     * шаблона могут быть приняты за дубликаты и не попасть в индекс.
+     */
+    private int duplicateMaxDistance = 0;
+    /**
+     * Верхняя граница Crawl-delay из robots.txt: больший интервал сайта
+     * сводится к этому значению
+     */
+    private long maxCrawlDelayMs = 30_000;
+    /**
+     * Сколько карт сайта из Sitemap в robots.txt прочитать, включая
+     * вложенные в индексы карт; 0 отключает чтение карт
+     */
+    private int sitemapMaxFiles = 50;
+    /**
+     * Сколько адресов страниц взять из карт сайта во фронтир
+     */
+    private int sitemapMaxUrls = 100_000;
+}
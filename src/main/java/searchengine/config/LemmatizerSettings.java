@@ -0,0 +1,21 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "lemmatizer")
+public class LemmatizerSettings {
+    /**
+     * Реализация морфологии: suffix — встроенное отсечение окончаний
+     */
+    private String backend = "suffix";
+    /**
+     * Максимальное число слов в кэше слово → лемма
+     */
+    private int cacheSize = 200_000;
+}
@@ -0,0 +1,19 @@
+package searchengine.config;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import searchengine.repository.QueryCounter;
+
+@Configuration
+public class MetricsConfig {
+    
+    /**
+     * Подключает подсчёт SQL-запросов для метрики search.db.queries
+     */
+    @Bean
+    public HibernatePropertiesCustomizer queryCounterCustomizer() {
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, new QueryCounter());
+    }
+}
@@ -0,0 +1,51 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "search")
+public class SearchSettings {
+    /**
+     * Максимальное число запросов в кэше результатов поиска
+     */
+    private int cacheSize = 1000;
+    /**
+     * Время жизни результата в кэше, секунд
+     */
+    private long cacheTtlSeconds = 300;
+    /**
+     * Число потоков, параллельно ищущих по разным сайтам
+     */
+    private int siteThreads = 4;
+    /**
+     * Сколько поисков по сайтам может ждать свободного потока
+     */
+    private int siteQueueCapacity = 256;
+    /**
+     * Сколько ждать ответа сайтов; не успевшие сайты в выдачу не попадают
+     */
+    private long deadlineMs = 2000;
+    /**
+     * Модель релевантности: relative — сумма рангов, делённая на максимальную
+     * по сайту (по умолчанию), bm25 — сравнимая между сайтами
+     */
+    private Scoring scoring = Scoring.RELATIVE;
+    /**
+     * Насыщение BM25 по числу вхождений леммы
+     */
+    private double bm25K1 = 1.2;
+    /**
+     * Нормализация BM25 по длине страницы, от 0 до 1
+     */
+    private double bm25B = 0.75;
+    
+    public enum Scoring {
+        RELATIVE,
+        BM25
+    }
+}
@@ -1,21 +1,34 @@
 package searchengine.controllers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import searchengine.dto.ApiResponse;
+import searchengine.dto.indexing.IndexingProgressResponse;
 import searchengine.dto.search.SearchResponse;
+import searchengine.dto.search.SearchStreamSummary;
 import searchengine.dto.statistics.StatisticsResponse;
 import searchengine.services.*;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
 @RestController
 @RequestMapping("/api")
 @RequiredArgsConstructor
 public class ApiController {
     
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    
     private final StatisticsService statisticsService;
     private final IndexingService indexingService;
     private final SearchService searchService;
     private final PageIndexingService pageIndexingService;
+    private final ObjectMapper objectMapper;
     
     @GetMapping("/statistics")
     public StatisticsResponse statistics() {
@@ -23,8 +36,8 @@ public StatisticsResponse statistics() {
     }
     
     @GetMapping("/startIndexing")
-    public ApiResponse startIndexing() {
-        indexingService.startIndexing();
+    public ApiResponse startIndexing(@RequestParam(defaultValue = "false") boolean incremental) {
+        indexingService.startIndexing(incremental);
         return new ApiResponse(true);
     }
     
@@ -34,6 +47,15 @@ public ApiResponse stopIndexing() {
         return new ApiResponse(true);
     }
     
+    /**
+     * Ход текущей индексации по сайтам; не обращается к БД, поэтому
+     * его можно опрашивать часто
+     */
+    @GetMapping("/indexingProgress")
+    public IndexingProgressResponse indexingProgress() {
+        return indexingService.getProgress();
+    }
+    
     @PostMapping("/indexPage")
     public ApiResponse indexPage(@RequestParam String url) {
         pageIndexingService.indexPage(url);
@@ -49,4 +71,47 @@ public SearchResponse search(
         
         return searchService.search(query, site, offset, limit);
     }
+    
+    /**
+     * Постраничная выдача по курсору: nextCursor из ответа передаётся
+     * в следующий запрос, пока он не станет пустым
+     */
+    @GetMapping("/searchCursor")
+    public SearchResponse searchCursor(
+            @RequestParam String query,
+            @RequestParam(required = false) String site,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit) {
+        
+        return searchService.searchAfter(query, site, cursor, limit);
+    }
+    
+    /**
+     * Та же выдача в формате NDJSON: по строке на результат, как только
+     * для него построен сниппет, и итоговая строка с количеством и курсором
+     */
+    @GetMapping("/searchStream")
+    public ResponseEntity<StreamingResponseBody> searchStream(
+            @RequestParam String query,
+            @RequestParam(required = false) String site,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit) {
+        
+        RankedSearch ranked = searchService.rankAfter(query, site, cursor, limit);
+        StreamingResponseBody body = out -> {
+            searchService.streamItems(ranked, item -> writeLine(out, item));
+            writeLine(out, new SearchStreamSummary(true, ranked.getTotal(), ranked.getNextCursor()));
+        };
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
+    }
+    
+    private void writeLine(OutputStream out, Object value) {
+        try {
+            out.write(objectMapper.writeValueAsBytes(value));
+            out.write('\n');
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 }
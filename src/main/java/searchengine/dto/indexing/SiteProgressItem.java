@@ -0,0 +1,24 @@
+package searchengine.dto.indexing;
+
+import lombok.Data;
+
+import java.util.Map;
+
+/**
+ * Ход обхода сайта. Стадии и типы ошибок — в нижнем регистре,
+ * как в тегах метрик crawl.*
+ */
+@Data
+public class SiteProgressItem {
+    private String url;
+    private String name;
+    private boolean finished;
+    private long elapsedMs;
+    private long pagesFetched;
+    private long pagesSaved;
+    private double pagesPerSecond;
+    private long bytesDownloaded;
+    private int frontierSize;
+    private Map<String, StageLatency> stages;
+    private Map<String, Long> errors;
+}
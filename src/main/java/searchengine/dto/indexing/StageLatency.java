@@ -0,0 +1,11 @@
+package searchengine.dto.indexing;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class StageLatency {
+    private long count;
+    private double meanMs;
+}
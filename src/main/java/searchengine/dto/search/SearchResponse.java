@@ -1,5 +1,6 @@
 package searchengine.dto.search;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
 import java.util.List;
 
@@ -9,4 +10,6 @@ public class SearchResponse {
     private int count;
     private List<SearchItem> data;
     private String error;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String nextCursor;
 }
@@ -0,0 +1,16 @@
+package searchengine.dto.search;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Последняя строка потоковой выдачи: общее число найденных страниц
+ * и курсор следующей части
+ */
+@Data
+@AllArgsConstructor
+public class SearchStreamSummary {
+    private boolean result;
+    private int count;
+    private String nextCursor;
+}
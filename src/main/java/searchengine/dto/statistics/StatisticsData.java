@@ -7,4 +7,5 @@
 public class StatisticsData {
     private TotalStatistics total;
     private List<DetailedStatisticsItem> detailed;
+    private SearchCacheStatistics searchCache;
 }
@@ -39,6 +39,13 @@ public ApiResponse handleEmptySearchQuery(EmptySearchQueryException ex) {
         return new ApiResponse(false, ex.getMessage());
     }
     
+    @ExceptionHandler(InvalidSearchCursorException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public ApiResponse handleInvalidSearchCursor(InvalidSearchCursorException ex) {
+        log.warn("Invalid search cursor: {}", ex.getMessage());
+        return new ApiResponse(false, ex.getMessage());
+    }
+    
     @ExceptionHandler(Exception.class)
     @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
     public ApiResponse handleGenericException(Exception ex) {
@@ -0,0 +1,7 @@
+package searchengine.exception;
+
+public class InvalidSearchCursorException extends RuntimeException {
+    public InvalidSearchCursorException(String message) {
+        super(message);
+    }
+}
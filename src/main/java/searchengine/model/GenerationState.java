@@ -0,0 +1,11 @@
+package searchengine.model;
+
+/**
+ * Состояние поколения индекса сайта. Поиск читает только ACTIVE,
+ * полная индексация пишет в BUILDING, RETIRED ждёт удаления.
+ */
+public enum GenerationState {
+    BUILDING,
+    ACTIVE,
+    RETIRED
+}
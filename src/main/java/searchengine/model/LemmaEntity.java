@@ -8,6 +8,8 @@
 @Entity
 @Table(name = "lemma", indexes = {
     @Index(name = "idx_lemma", columnList = "lemma")
+}, uniqueConstraints = {
+    @UniqueConstraint(name = "uk_lemma_site_lemma", columnNames = {"site_id", "lemma"})
 })
 @Getter
 @Setter
@@ -29,4 +29,25 @@ public class PageEntity {
     
     @Column(nullable = false, columnDefinition = "MEDIUMTEXT")
     private String content;
+    
+    @Column(columnDefinition = "TEXT")
+    private String title;
+    
+    @Column(columnDefinition = "MEDIUMTEXT")
+    private String text;
+    
+    @Column(name = "etag")
+    private String etag;
+    
+    @Column(name = "last_modified")
+    private String lastModified;
+    
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+    
+    /**
+     * Длина страницы в леммах — сумма рангов её строк индекса
+     */
+    @Column(name = "lemma_count", nullable = false)
+    private int lemmaCount;
 }
@@ -26,9 +26,16 @@ public class SiteEntity {
     @Column(name = "last_error", columnDefinition = "TEXT")
     private String lastError;
     
-    @Column(nullable = false, unique = true)
+    @Column(nullable = false)
     private String url;
     
     @Column(nullable = false)
     private String name;
+    
+    @Column(nullable = false)
+    private int generation = 1;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "generation_state", nullable = false, length = 20)
+    private GenerationState generationState = GenerationState.ACTIVE;
 }
@@ -0,0 +1,255 @@
+package searchengine.repository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.*;
+
+/**
+ * Пакетная запись лемм и индексов через JDBC. Для PostgreSQL и MySQL
+ * леммы страницы записываются одним upsert-запросом, а строки индекса —
+ * JDBC-пакетом, минуя построчные save() в Hibernate.
+ * <p>
+ * В MySQL с нечувствительной к диакритике сортировкой по умолчанию разные
+ * строки, например «ёлка» и «елка», попадают в одну строку lemma. Id таких
+ * лемм сопоставляются по ключу сравнения {@link Collator} первого уровня,
+ * который так же не различает диакритику и регистр, и у каждой леммы
+ * страницы есть id; лемма, которую не удалось сопоставить, — ошибка.
+ */
+@Slf4j
+@Repository
+@RequiredArgsConstructor
+public class IndexJdbcRepository {
+    
+    private static final int LEMMA_CHUNK_SIZE = 1000;
+    private static final int INDEX_BATCH_SIZE = 500;
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    private volatile Dialect dialect;
+    
+    /**
+     * Для тестов: диалект задаётся явно, без определения по соединению
+     */
+    static IndexJdbcRepository withDialect(JdbcTemplate jdbcTemplate, Dialect dialect) {
+        IndexJdbcRepository repository = new IndexJdbcRepository(jdbcTemplate);
+        repository.dialect = dialect;
+        return repository;
+    }
+    
+    /**
+     * Поддерживает ли текущая БД пакетную запись
+     */
+    public boolean isSupported() {
+        return getDialect() != Dialect.OTHER;
+    }
+    
+    /**
+     * Увеличивает частоту лемм сайта на единицу, создавая отсутствующие.
+     * Леммы записываются в отсортированном порядке, чтобы параллельные
+     * потоки блокировали строки в одной последовательности. Леммы, которые
+     * БД считает одной строкой, получают один id, а частота этой строки
+     * растёт на единицу.
+     *
+     * @return id лемм по их тексту
+     * @throws IllegalStateException если для леммы не нашлась строка
+     */
+    public Map<String, Integer> upsertLemmas(int siteId, Collection<String> lemmas) {
+        List<String> sorted = new ArrayList<>(lemmas);
+        Collections.sort(sorted);
+        
+        Map<String, Integer> ids = new HashMap<>(sorted.size() * 2);
+        for (int from = 0; from < sorted.size(); from += LEMMA_CHUNK_SIZE) {
+            List<String> chunk = sorted.subList(from, Math.min(from + LEMMA_CHUNK_SIZE, sorted.size()));
+            if (getDialect() == Dialect.POSTGRESQL) {
+                upsertPostgres(siteId, chunk, ids);
+            } else {
+                upsertMysql(siteId, chunk, ids);
+            }
+        }
+        return ids;
+    }
+    
+    /**
+     * Записывает строки индекса страницы JDBC-пакетами
+     *
+     * @param ranks ранг по id леммы
+     */
+    public void insertIndexes(int pageId, Map<Integer, Float> ranks) {
+        String sql = getDialect() == Dialect.POSTGRESQL
+                ? "INSERT INTO \"index\" (page_id, lemma_id, \"rank\") VALUES (?, ?, ?)"
+                : "INSERT INTO `index` (page_id, lemma_id, `rank`) VALUES (?, ?, ?)";
+        
+        List<Object[]> batch = new ArrayList<>(Math.min(ranks.size(), INDEX_BATCH_SIZE));
+        for (Map.Entry<Integer, Float> entry : ranks.entrySet()) {
+            batch.add(new Object[]{pageId, entry.getKey(), entry.getValue()});
+            if (batch.size() == INDEX_BATCH_SIZE) {
+                jdbcTemplate.batchUpdate(sql, batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            jdbcTemplate.batchUpdate(sql, batch);
+        }
+    }
+    
+    /**
+     * Обновляет ранги существующих строк индекса страницы JDBC-пакетами
+     *
+     * @param ranks новый ранг по id леммы
+     */
+    public void updateIndexRanks(int pageId, Map<Integer, Float> ranks) {
+        String sql = getDialect() == Dialect.POSTGRESQL
+                ? "UPDATE \"index\" SET \"rank\" = ? WHERE page_id = ? AND lemma_id = ?"
+                : "UPDATE `index` SET `rank` = ? WHERE page_id = ? AND lemma_id = ?";
+        
+        List<Object[]> batch = new ArrayList<>(Math.min(ranks.size(), INDEX_BATCH_SIZE));
+        for (Map.Entry<Integer, Float> entry : ranks.entrySet()) {
+            batch.add(new Object[]{entry.getValue(), pageId, entry.getKey()});
+            if (batch.size() == INDEX_BATCH_SIZE) {
+                jdbcTemplate.batchUpdate(sql, batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            jdbcTemplate.batchUpdate(sql, batch);
+        }
+    }
+    
+    /**
+     * Уменьшает частоты лемм удаляемых страниц одним UPDATE ... FROM
+     * (в MySQL — UPDATE ... JOIN) по сгруппированным строкам индекса
+     *
+     * @return число изменённых лемм
+     */
+    public int releaseLemmasOfPages(Collection<Integer> pageIds) {
+        boolean postgres = getDialect() == Dialect.POSTGRESQL;
+        String counts = "SELECT lemma_id, COUNT(*) AS pages FROM " + (postgres ? "\"index\"" : "`index`") +
+                        " WHERE page_id IN (" + placeholders("?", pageIds.size()) + ") GROUP BY lemma_id";
+        String sql = postgres
+                ? "UPDATE lemma l SET frequency = l.frequency - c.pages FROM (" + counts + ") c " +
+                  "WHERE l.id = c.lemma_id"
+                : "UPDATE lemma l JOIN (" + counts + ") c ON l.id = c.lemma_id " +
+                  "SET l.frequency = l.frequency - c.pages";
+        return jdbcTemplate.update(sql, pageIds.toArray());
+    }
+    
+    /**
+     * Читает все леммы сайта без создания сущностей
+     */
+    public void forEachLemma(int siteId, LemmaRowHandler handler) {
+        jdbcTemplate.query("SELECT id, lemma, frequency FROM lemma WHERE site_id = ?", rs -> {
+            handler.handle(rs.getInt("id"), rs.getString("lemma"), rs.getInt("frequency"));
+        }, siteId);
+    }
+    
+    private void upsertPostgres(int siteId, List<String> lemmas, Map<String, Integer> ids) {
+        String sql = "INSERT INTO lemma (site_id, lemma, frequency) VALUES " + placeholders("(?, ?, 1)", lemmas.size()) +
+                     " ON CONFLICT (site_id, lemma) DO UPDATE SET frequency = lemma.frequency + 1" +
+                     " RETURNING id, lemma";
+        jdbcTemplate.query(sql, rs -> {
+            ids.put(rs.getString("lemma"), rs.getInt("id"));
+        }, lemmaArgs(siteId, lemmas));
+    }
+    
+    private void upsertMysql(int siteId, List<String> lemmas, Map<String, Integer> ids) {
+        String sql = "INSERT INTO lemma (site_id, lemma, frequency) VALUES " + placeholders("(?, ?, 1)", lemmas.size()) +
+                     " ON DUPLICATE KEY UPDATE frequency = frequency + 1";
+        jdbcTemplate.update(sql, lemmaArgs(siteId, lemmas));
+        
+        Object[] args = new Object[lemmas.size() + 1];
+        args[0] = siteId;
+        for (int i = 0; i < lemmas.size(); i++) {
+            args[i + 1] = lemmas.get(i);
+        }
+        String select = "SELECT id, lemma FROM lemma WHERE site_id = ? AND lemma IN (" +
+                        placeholders("?", lemmas.size()) + ")";
+        Collator collator = Collator.getInstance(Locale.ROOT);
+        collator.setStrength(Collator.PRIMARY);
+        // «ё» раскладывается в «е» и диакритику, которую первый уровень не сравнивает
+        collator.setDecomposition(Collator.CANONICAL_DECOMPOSITION);
+        Map<String, Integer> exact = new HashMap<>();
+        Map<CollationKey, Integer> folded = new HashMap<>();
+        jdbcTemplate.query(select, rs -> {
+            String lemma = rs.getString("lemma");
+            exact.put(lemma, rs.getInt("id"));
+            folded.put(collator.getCollationKey(lemma), rs.getInt("id"));
+        }, args);
+        
+        Map<Integer, Integer> occurrences = new HashMap<>();
+        for (String lemma : lemmas) {
+            Integer id = exact.get(lemma);
+            if (id == null) {
+                id = folded.get(collator.getCollationKey(lemma));
+            }
+            if (id == null) {
+                throw new IllegalStateException("Лемма «" + lemma + "» сайта " + siteId + " не найдена после записи");
+            }
+            ids.put(lemma, id);
+            occurrences.merge(id, 1, Integer::sum);
+        }
+        // Каждая совпавшая для БД лемма запроса увеличила частоту строки ещё раз
+        occurrences.forEach((id, count) -> {
+            if (count > 1) {
+                jdbcTemplate.update("UPDATE lemma SET frequency = frequency - ? WHERE id = ?", count - 1, id);
+            }
+        });
+    }
+    
+    private static Object[] lemmaArgs(int siteId, List<String> lemmas) {
+        Object[] args = new Object[lemmas.size() * 2];
+        for (int i = 0; i < lemmas.size(); i++) {
+            args[i * 2] = siteId;
+            args[i * 2 + 1] = lemmas.get(i);
+        }
+        return args;
+    }
+    
+    private static String placeholders(String group, int count) {
+        StringJoiner joiner = new StringJoiner(", ");
+        for (int i = 0; i < count; i++) {
+            joiner.add(group);
+        }
+        return joiner.toString();
+    }
+    
+    private Dialect getDialect() {
+        if (dialect == null) {
+            String product = jdbcTemplate.execute(
+                    (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+            dialect = Dialect.of(product);
+            log.info("Пакетная запись индекса: БД {}, режим {}", product, dialect);
+        }
+        return dialect;
+    }
+    
+    @FunctionalInterface
+    public interface LemmaRowHandler {
+        void handle(int id, String lemma, int frequency);
+    }
+    
+    enum Dialect {
+        POSTGRESQL,
+        MYSQL,
+        OTHER;
+        
+        static Dialect of(String product) {
+            if (product == null) {
+                return OTHER;
+            }
+            String name = product.toLowerCase(Locale.ROOT);
+            if (name.contains("postgresql")) {
+                return POSTGRESQL;
+            }
+            if (name.contains("mysql") || name.contains("mariadb")) {
+                return MYSQL;
+            }
+            return OTHER;
+        }
+    }
+}
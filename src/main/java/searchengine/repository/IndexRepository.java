@@ -1,16 +1,63 @@
 package searchengine.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import searchengine.model.IndexEntity;
 import searchengine.model.LemmaEntity;
 import searchengine.model.PageEntity;
 
+import javax.persistence.QueryHint;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 @Repository
 public interface IndexRepository extends JpaRepository<IndexEntity, Integer> {
     List<IndexEntity> findByPage(PageEntity page);
     List<IndexEntity> findByLemma(LemmaEntity lemma);
     List<IndexEntity> findByPageAndLemma(PageEntity page, LemmaEntity lemma);
+    
+    @Query("select i.lemma.lemma from IndexEntity i where i.page = :page")
+    List<String> findLemmasByPage(@Param("page") PageEntity page);
+    
+    @Query("select i.lemma.id as lemmaId, i.lemma.lemma as lemma, i.rank as rank " +
+           "from IndexEntity i where i.page.id = :pageId")
+    List<PageLemmaView> findLemmaRanksByPageId(@Param("pageId") int pageId);
+    
+    @Modifying
+    @Query("delete from IndexEntity i where i.page.id = :pageId")
+    int deleteByPageId(@Param("pageId") int pageId);
+    
+    @Modifying
+    @Query("delete from IndexEntity i where i.page.id = :pageId and i.lemma.id in :lemmaIds")
+    int deleteByPageIdAndLemmaIdIn(@Param("pageId") int pageId, @Param("lemmaIds") Collection<Integer> lemmaIds);
+    
+    @Modifying
+    @Query("delete from IndexEntity i where i.page.id in :pageIds")
+    int deleteByPageIdIn(@Param("pageIds") Collection<Integer> pageIds);
+    
+    @Modifying
+    @Query("delete from IndexEntity i where i.page.id in " +
+           "(select p.id from PageEntity p where p.site.id in :siteIds)")
+    int deleteBySiteIdIn(@Param("siteIds") Collection<Integer> siteIds);
+    
+    @Modifying
+    @Query("update IndexEntity i set i.rank = :rank where i.page.id = :pageId and i.lemma.id = :lemmaId")
+    int updateRank(@Param("pageId") int pageId, @Param("lemmaId") int lemmaId, @Param("rank") float rank);
+    
+    @Query("select l.site.id as siteId, l.id as lemmaId, l.lemma as lemma, i.page.id as pageId, i.rank as rank " +
+           "from IndexEntity i join i.lemma l where i.page.id in :pageIds")
+    List<PostingView> findPostingsByPageIdIn(@Param("pageIds") Collection<Integer> pageIds);
+    
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "10000"))
+    @Query("select l.site.id as siteId, l.id as lemmaId, l.lemma as lemma, i.page.id as pageId, i.rank as rank " +
+           "from IndexEntity i join i.lemma l " +
+           "where l.site.generationState = searchengine.model.GenerationState.ACTIVE order by i.page.id")
+    Stream<PostingView> streamActivePostings();
 }
@@ -1,14 +1,49 @@
 package searchengine.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import searchengine.model.LemmaEntity;
 import searchengine.model.SiteEntity;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface LemmaRepository extends JpaRepository<LemmaEntity, Integer> {
     long countBySite(SiteEntity site);
+    
+    @Query("select l.site.id as siteId, count(l) as count from LemmaEntity l group by l.site.id")
+    List<SiteCountView> countGroupedBySite();
+    
     Optional<LemmaEntity> findBySiteAndLemma(SiteEntity site, String lemma);
+    
+    @Modifying
+    @Query("update LemmaEntity l set l.frequency = l.frequency + 1 where l.id = :id")
+    int incrementFrequency(@Param("id") int id);
+    
+    @Modifying
+    @Query("update LemmaEntity l set l.frequency = l.frequency - 1 where l.id in :ids")
+    int decrementFrequency(@Param("ids") Collection<Integer> ids);
+    
+    @Modifying
+    @Query("delete from LemmaEntity l where l.id in :ids and l.frequency <= 0")
+    int deleteUnusedByIdIn(@Param("ids") Collection<Integer> ids);
+    
+    /**
+     * Уменьшает частоту каждой леммы на число удаляемых страниц, где она встречается.
+     * Переносимый вариант с подзапросом для БД без UPDATE ... FROM.
+     */
+    @Modifying
+    @Query("update LemmaEntity l set l.frequency = l.frequency - " +
+           "(select count(i) from IndexEntity i where i.lemma = l and i.page.id in :pageIds) " +
+           "where l.id in (select i.lemma.id from IndexEntity i where i.page.id in :pageIds)")
+    int releaseByPageIdIn(@Param("pageIds") Collection<Integer> pageIds);
+    
+    @Modifying
+    @Query("delete from LemmaEntity l where l.site.id in :siteIds")
+    int deleteBySiteIdIn(@Param("siteIds") Collection<Integer> siteIds);
 }
@@ -0,0 +1,13 @@
+package searchengine.repository;
+
+/**
+ * Сведения о ранее загруженной странице для условных запросов
+ * при повторном обходе
+ */
+public interface PageFetchView {
+    Integer getId();
+    String getPath();
+    String getEtag();
+    String getLastModified();
+    String getContentHash();
+}
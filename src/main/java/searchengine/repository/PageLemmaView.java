@@ -0,0 +1,10 @@
+package searchengine.repository;
+
+/**
+ * Лемма страницы с её рангом
+ */
+public interface PageLemmaView {
+    Integer getLemmaId();
+    String getLemma();
+    Float getRank();
+}
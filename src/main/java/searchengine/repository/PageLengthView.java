@@ -0,0 +1,10 @@
+package searchengine.repository;
+
+/**
+ * Длина страницы в леммах для ранжирования BM25
+ */
+public interface PageLengthView {
+    Integer getSiteId();
+    Integer getPageId();
+    Integer getLemmaCount();
+}
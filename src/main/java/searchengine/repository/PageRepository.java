@@ -1,14 +1,61 @@
 package searchengine.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import searchengine.model.PageEntity;
 import searchengine.model.SiteEntity;
 
+import javax.persistence.QueryHint;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
 
 @Repository
 public interface PageRepository extends JpaRepository<PageEntity, Integer> {
     long countBySite(SiteEntity site);
+    
+    @Query("select p.site.id as siteId, count(p) as count from PageEntity p group by p.site.id")
+    List<SiteCountView> countGroupedBySite();
+    
     Optional<PageEntity> findBySiteAndPath(SiteEntity site, String path);
+    
+    @Query("select p.id as id, p.path as path, p.title as title, p.text as text from PageEntity p where p.id in :ids")
+    List<PageTextView> findTextsByIdIn(@Param("ids") Collection<Integer> ids);
+    
+    @Query("select p.id from PageEntity p where p.text is null and p.id > :afterId order by p.id")
+    List<Integer> findIdsWithoutText(@Param("afterId") int afterId, Pageable pageable);
+    
+    @Query("select p.id as id, p.path as path, p.etag as etag, p.lastModified as lastModified, " +
+           "p.contentHash as contentHash from PageEntity p where p.site = :site")
+    List<PageFetchView> findFetchMetadataBySite(@Param("site") SiteEntity site);
+    
+    @Query("select p.content from PageEntity p where p.id = :id")
+    String findContentById(@Param("id") int id);
+    
+    @Modifying
+    @Query("delete from PageEntity p where p.site.id in :siteIds")
+    int deleteBySiteIdIn(@Param("siteIds") Collection<Integer> siteIds);
+    
+    @Modifying
+    @Query("update PageEntity p set p.lemmaCount = :lemmaCount where p.id = :id")
+    int updateLemmaCount(@Param("id") int id, @Param("lemmaCount") int lemmaCount);
+    
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "10000"))
+    @Query("select p.site.id as siteId, p.id as pageId, p.lemmaCount as lemmaCount from PageEntity p " +
+           "where p.lemmaCount > 0 and p.site.generationState = searchengine.model.GenerationState.ACTIVE")
+    Stream<PageLengthView> streamActiveLengths();
+    
+    @Transactional
+    @Modifying
+    @Query("update PageEntity p set p.etag = :etag, p.lastModified = :lastModified where p.id = :id")
+    int updateValidators(@Param("id") int id, @Param("etag") String etag, @Param("lastModified") String lastModified);
 }
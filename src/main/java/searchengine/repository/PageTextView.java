@@ -0,0 +1,11 @@
+package searchengine.repository;
+
+/**
+ * Данные страницы для выдачи без исходного HTML
+ */
+public interface PageTextView {
+    Integer getId();
+    String getPath();
+    String getTitle();
+    String getText();
+}
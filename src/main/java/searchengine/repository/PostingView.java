@@ -0,0 +1,12 @@
+package searchengine.repository;
+
+/**
+ * Строка индекса без загрузки сущностей: сайт, лемма, страница и ранг
+ */
+public interface PostingView {
+    Integer getSiteId();
+    Integer getLemmaId();
+    String getLemma();
+    Integer getPageId();
+    Float getRank();
+}
@@ -0,0 +1,58 @@
+package searchengine.repository;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Считает SQL-запросы Hibernate, выполненные в рамках одного поискового
+ * запроса. Счётчик привязан к потоку; задачи, которые поиск отправляет
+ * в пул, переносят его с собой через {@link #propagate}.
+ */
+public class QueryCounter implements StatementInspector {
+    
+    private static final ThreadLocal<AtomicInteger> CURRENT = new ThreadLocal<>();
+    
+    @Override
+    public String inspect(String sql) {
+        AtomicInteger counter = CURRENT.get();
+        if (counter != null) {
+            counter.incrementAndGet();
+        }
+        return sql;
+    }
+    
+    /**
+     * Начинает подсчёт в текущем потоке
+     *
+     * @return счётчик запросов, выполненных до вызова {@link #end()}
+     */
+    public static AtomicInteger begin() {
+        AtomicInteger counter = new AtomicInteger();
+        CURRENT.set(counter);
+        return counter;
+    }
+    
+    public static void end() {
+        CURRENT.remove();
+    }
+    
+    /**
+     * Задача, запросы которой попадут в счётчик текущего потока
+     */
+    public static <T> Callable<T> propagate(Callable<T> task) {
+        AtomicInteger counter = CURRENT.get();
+        if (counter == null) {
+            return task;
+        }
+        return () -> {
+            CURRENT.set(counter);
+            try {
+                return task.call();
+            } finally {
+                CURRENT.remove();
+            }
+        };
+    }
+}
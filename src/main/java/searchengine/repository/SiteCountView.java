@@ -0,0 +1,9 @@
+package searchengine.repository;
+
+/**
+ * Число строк таблицы у одного сайта
+ */
+public interface SiteCountView {
+    Integer getSiteId();
+    Long getCount();
+}
@@ -1,12 +1,21 @@
 package searchengine.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import searchengine.model.GenerationState;
 import searchengine.model.SiteEntity;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface SiteRepository extends JpaRepository<SiteEntity, Integer> {
-    Optional<SiteEntity> findByUrl(String url);
+    Optional<SiteEntity> findByUrlAndGenerationState(String url, GenerationState generationState);
+    List<SiteEntity> findByGenerationState(GenerationState generationState);
+    List<SiteEntity> findByGenerationStateIn(Collection<GenerationState> generationStates);
+    
+    @Query("select coalesce(max(s.generation), 0) from SiteEntity s")
+    int findMaxGeneration();
 }
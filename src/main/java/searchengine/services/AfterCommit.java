@@ -0,0 +1,28 @@
+package searchengine.services;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Изменения состояния в памяти, которые должны следовать за БД. Внутри
+ * транзакции действие выполняется после её коммита, в порядке регистрации,
+ * а при откате не выполняется; вне транзакции — сразу.
+ */
+final class AfterCommit {
+    
+    private AfterCommit() {
+    }
+    
+    static void run(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
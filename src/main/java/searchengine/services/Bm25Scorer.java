@@ -0,0 +1,58 @@
+package searchengine.services;
+
+import java.util.Map;
+
+/**
+ * Релевантность BM25. Число страниц, средняя длина страницы и частоты лемм
+ * берутся сразу по всем сайтам, по которым идёт поиск, поэтому оценки
+ * страниц разных сайтов сравнимы и их можно сливать в одну выдачу.
+ */
+public class Bm25Scorer {
+    
+    private final double k1;
+    private final double b;
+    private final long pageCount;
+    private final double averageLength;
+    private final Map<String, Long> documentFrequencies;
+    
+    /**
+     * @param pageCount           число страниц на всех сайтах поиска
+     * @param totalLength         сумма длин этих страниц в леммах
+     * @param documentFrequencies число страниц с леммой на всех сайтах поиска
+     */
+    public Bm25Scorer(double k1, double b, long pageCount, long totalLength, Map<String, Long> documentFrequencies) {
+        this.k1 = k1;
+        this.b = b;
+        this.pageCount = pageCount;
+        this.averageLength = pageCount == 0 || totalLength == 0 ? 1.0 : (double) totalLength / pageCount;
+        this.documentFrequencies = documentFrequencies;
+    }
+    
+    /**
+     * Обратная частота леммы; всегда положительна, даже если лемма есть
+     * больше чем на половине страниц
+     */
+    public double idf(String lemma) {
+        long frequency = Math.min(pageCount, documentFrequencies.getOrDefault(lemma, 0L));
+        return Math.log(1 + (pageCount - frequency + 0.5) / (frequency + 0.5));
+    }
+    
+    /**
+     * Вклад леммы в релевантность страницы
+     *
+     * @param rank   число вхождений леммы на странице
+     * @param length длина страницы в леммах; 0 — неизвестна, считается средней
+     */
+    public double termScore(double idf, int rank, int length) {
+        double relativeLength = length <= 0 ? 1.0 : length / averageLength;
+        return idf * rank * (k1 + 1) / (rank + k1 * (1 - b + b * relativeLength));
+    }
+    
+    /**
+     * Верхняя граница вклада леммы на любой странице, где она встречается
+     * не более maxRank раз: вклад растёт с рангом и падает с длиной страницы
+     */
+    public double maxTermScore(double idf, int maxRank) {
+        return idf * maxRank * (k1 + 1) / (maxRank + k1 * (1 - b));
+    }
+}
@@ -0,0 +1,222 @@
+package searchengine.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ход обхода одного сайта в памяти: загруженные и записанные страницы,
+ * скачанные байты, размер фронтира, время стадий конвейера и ошибки по
+ * типам. Потоки обхода обновляют счётчики без блокировок, а чтение не
+ * обращается к БД, поэтому опрашивать ход обхода можно сколь угодно часто.
+ * Те же значения пишутся в метрики crawl.* с тегом site.
+ */
+public class CrawlProgress {
+    
+    public enum Stage {
+        /** Загрузка страницы, без ожидания места в очереди разбора */
+        FETCH,
+        /** Разбор HTML и сбор ссылок */
+        PARSE,
+        /** Лемматизация текста; входит в запись */
+        LEMMATIZE,
+        /** Запись страницы, лемм и индекса */
+        PERSIST
+    }
+    
+    public enum ErrorType {
+        /** Ответ 4xx */
+        HTTP_CLIENT,
+        /** Ответ 5xx */
+        HTTP_SERVER,
+        TIMEOUT,
+        /** Ответ не HTML */
+        UNSUPPORTED_CONTENT,
+        /** Прочие ошибки соединения */
+        NETWORK,
+        PARSE,
+        PERSIST
+    }
+    
+    // Обход, стадию которого выполняет текущий поток
+    private static final ThreadLocal<CrawlProgress> CURRENT = new ThreadLocal<>();
+    
+    private final String url;
+    private final String name;
+    private final long startedAt = System.nanoTime();
+    private volatile long finishedAt;
+    
+    private final LongAdder pagesFetched = new LongAdder();
+    private final LongAdder pagesSaved = new LongAdder();
+    private final LongAdder bytesDownloaded = new LongAdder();
+    private final AtomicInteger frontierSize = new AtomicInteger();
+    private final Map<Stage, StageTimer> stages = new EnumMap<>(Stage.class);
+    private final Map<ErrorType, LongAdder> errors = new EnumMap<>(ErrorType.class);
+    private final Map<ErrorType, Counter> errorCounters = new EnumMap<>(ErrorType.class);
+    private final Counter pagesCounter;
+    private final Counter bytesCounter;
+    
+    public CrawlProgress(String url, String name, MeterRegistry registry) {
+        this.url = url;
+        this.name = name;
+        for (Stage stage : Stage.values()) {
+            stages.put(stage, new StageTimer(Timer.builder("crawl.stage")
+                    .description("Время стадии обхода сайта")
+                    .tag("site", url)
+                    .tag("stage", stage.name().toLowerCase(Locale.ROOT))
+                    .publishPercentileHistogram()
+                    .register(registry)));
+        }
+        for (ErrorType type : ErrorType.values()) {
+            errors.put(type, new LongAdder());
+            errorCounters.put(type, Counter.builder("crawl.errors")
+                    .description("Ошибки обхода сайта")
+                    .tag("site", url)
+                    .tag("type", type.name().toLowerCase(Locale.ROOT))
+                    .register(registry));
+        }
+        pagesCounter = Counter.builder("crawl.pages")
+                .description("Загруженные страницы")
+                .tag("site", url)
+                .register(registry);
+        bytesCounter = Counter.builder("crawl.bytes")
+                .description("Скачано байт")
+                .baseUnit("bytes")
+                .tag("site", url)
+                .register(registry);
+    }
+    
+    /**
+     * Обход, в стадии которого выполняется текущий поток, или null
+     */
+    public static CrawlProgress current() {
+        return CURRENT.get();
+    }
+    
+    /**
+     * Задача, во время выполнения которой {@link #current()} вернёт этот обход
+     */
+    public Runnable bind(Runnable task) {
+        return () -> {
+            CURRENT.set(this);
+            try {
+                task.run();
+            } finally {
+                CURRENT.remove();
+            }
+        };
+    }
+    
+    public void recordFetched(long bytes) {
+        pagesFetched.increment();
+        bytesDownloaded.add(bytes);
+        pagesCounter.increment();
+        bytesCounter.increment(bytes);
+    }
+    
+    public void recordSaved() {
+        pagesSaved.increment();
+    }
+    
+    public void recordStage(Stage stage, long nanos) {
+        stages.get(stage).record(nanos);
+    }
+    
+    public void recordError(ErrorType type) {
+        errors.get(type).increment();
+        errorCounters.get(type).increment();
+    }
+    
+    public void enqueued() {
+        frontierSize.incrementAndGet();
+    }
+    
+    public void dequeued() {
+        frontierSize.decrementAndGet();
+    }
+    
+    public void finish() {
+        finishedAt = System.nanoTime();
+    }
+    
+    public String getUrl() {
+        return url;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public boolean isFinished() {
+        return finishedAt != 0;
+    }
+    
+    public long getElapsedMillis() {
+        long end = isFinished() ? finishedAt : System.nanoTime();
+        return TimeUnit.NANOSECONDS.toMillis(end - startedAt);
+    }
+    
+    public long getPagesFetched() {
+        return pagesFetched.sum();
+    }
+    
+    public long getPagesSaved() {
+        return pagesSaved.sum();
+    }
+    
+    public long getBytesDownloaded() {
+        return bytesDownloaded.sum();
+    }
+    
+    /**
+     * Средняя скорость загрузки с начала обхода
+     */
+    public double getPagesPerSecond() {
+        long elapsed = getElapsedMillis();
+        return elapsed == 0 ? 0 : getPagesFetched() * 1000.0 / elapsed;
+    }
+    
+    /**
+     * Адреса, ожидающие загрузки
+     */
+    public int getFrontierSize() {
+        return frontierSize.get();
+    }
+    
+    public long getStageCount(Stage stage) {
+        return stages.get(stage).count.sum();
+    }
+    
+    public double getStageMeanMillis(Stage stage) {
+        StageTimer timer = stages.get(stage);
+        long count = timer.count.sum();
+        return count == 0 ? 0 : timer.nanos.sum() / 1_000_000.0 / count;
+    }
+    
+    public long getErrors(ErrorType type) {
+        return errors.get(type).sum();
+    }
+    
+    private static final class StageTimer {
+        private final Timer timer;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        
+        StageTimer(Timer timer) {
+            this.timer = timer;
+        }
+        
+        void record(long elapsed) {
+            count.increment();
+            nanos.add(elapsed);
+            timer.record(elapsed, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package searchengine.services;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.model.GenerationState;
+import searchengine.model.IndexingStatus;
+import searchengine.model.SiteEntity;
+import searchengine.repository.SiteRepository;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Поколения индекса. Каждая строка site — одно поколение сайта: страницы,
+ * леммы и индексы привязаны к ней через site_id. Полная индексация пишет
+ * в новые строки BUILDING, пока поиск читает ACTIVE. По окончании обхода
+ * новое поколение целиком становится активным в одной транзакции,
+ * а прежнее удаляется в фоне пакетными запросами.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class IndexGenerations {
+    
+    private final SiteRepository siteRepository;
+    private final SiteDataPurger siteDataPurger;
+    private final InvertedIndex invertedIndex;
+    private final IndexVersions indexVersions;
+    private final TransactionTemplate transactionTemplate;
+    
+    private final ExecutorService purgeExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "index-generation-purge");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    public int nextGeneration() {
+        return siteRepository.findMaxGeneration() + 1;
+    }
+    
+    /**
+     * Сайты, которые сейчас видны пользователю: строящееся поколение,
+     * если оно есть, иначе активное
+     */
+    public List<SiteEntity> findCurrentSites() {
+        return currentOf(siteRepository.findByGenerationStateIn(
+                List.of(GenerationState.ACTIVE, GenerationState.BUILDING)));
+    }
+    
+    /**
+     * Оставляет по одному поколению на адрес: строящееся, если оно есть
+     */
+    static List<SiteEntity> currentOf(Collection<SiteEntity> activeAndBuilding) {
+        Map<String, SiteEntity> sites = new LinkedHashMap<>();
+        for (SiteEntity site : activeAndBuilding) {
+            sites.merge(site.getUrl(), site,
+                        (a, b) -> a.getGenerationState() == GenerationState.BUILDING ? a : b);
+        }
+        return new ArrayList<>(sites.values());
+    }
+    
+    /**
+     * Атомарно делает построенные сайты активными. Сайт, обход которого
+     * не завершился, заменяет прежнее поколение, только если прежнего нет;
+     * иначе поиск остаётся на старых данных, а ошибка записывается в них.
+     */
+    public void publish(List<SiteEntity> built) {
+        if (built.isEmpty()) {
+            return;
+        }
+        List<Integer> retired = transactionTemplate.execute(status -> swap(built));
+        indexVersions.bumpSiteSet();
+        if (retired == null || retired.isEmpty()) {
+            return;
+        }
+        for (Integer siteId : retired) {
+            invertedIndex.removeSite(siteId);
+        }
+        purgeExecutor.submit(() -> purge(retired));
+    }
+    
+    private List<Integer> swap(List<SiteEntity> built) {
+        Map<String, SiteEntity> active = new HashMap<>();
+        for (SiteEntity site : siteRepository.findByGenerationState(GenerationState.ACTIVE)) {
+            active.put(site.getUrl(), site);
+        }
+        
+        List<Integer> retired = new ArrayList<>();
+        List<SiteEntity> changed = new ArrayList<>();
+        for (SiteEntity site : built) {
+            SiteEntity previous = active.get(site.getUrl());
+            if (site.getStatus() == IndexingStatus.INDEXED || previous == null) {
+                site.setGenerationState(GenerationState.ACTIVE);
+                changed.add(site);
+                if (previous != null) {
+                    previous.setGenerationState(GenerationState.RETIRED);
+                    changed.add(previous);
+                    retired.add(previous.getId());
+                }
+                log.info("Сайт {}: поколение {} стало активным", site.getUrl(), site.getGeneration());
+            } else {
+                site.setGenerationState(GenerationState.RETIRED);
+                previous.setLastError(site.getLastError());
+                changed.add(site);
+                changed.add(previous);
+                retired.add(site.getId());
+                log.warn("Сайт {}: поколение {} не достроено, поиск остаётся на поколении {}",
+                         site.getUrl(), site.getGeneration(), previous.getGeneration());
+            }
+        }
+        siteRepository.saveAll(changed);
+        return retired;
+    }
+    
+    /**
+     * Удаляет поколения, брошенные при прошлом запуске: недостроенные
+     * и не успевшие удалиться
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void purgeAbandoned() {
+        List<Integer> abandoned = new ArrayList<>();
+        for (SiteEntity site : siteRepository.findByGenerationStateIn(
+                List.of(GenerationState.BUILDING, GenerationState.RETIRED))) {
+            abandoned.add(site.getId());
+            invertedIndex.removeSite(site.getId());
+        }
+        if (!abandoned.isEmpty()) {
+            log.info("Удаление {} брошенных поколений сайтов", abandoned.size());
+            purgeExecutor.submit(() -> purge(abandoned));
+        }
+    }
+    
+    private void purge(List<Integer> siteIds) {
+        try {
+            siteDataPurger.purgeSites(siteIds);
+        } catch (Exception e) {
+            log.error("Ошибка при удалении старого поколения {}: {}", siteIds, e.getMessage(), e);
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        purgeExecutor.shutdown();
+    }
+}
@@ -0,0 +1,44 @@
+package searchengine.services;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Счётчики версий индекса: у каждого сайта свой, увеличивается при любом
+ * изменении его страниц, и общий — при смене набора активных сайтов.
+ * Закэшированный результат поиска действителен, пока версии не изменились.
+ */
+@Component
+public class IndexVersions {
+    
+    private final ConcurrentHashMap<Integer, AtomicLong> sites = new ConcurrentHashMap<>();
+    private final AtomicLong siteSet = new AtomicLong();
+    
+    public long getSiteVersion(int siteId) {
+        AtomicLong version = sites.get(siteId);
+        return version == null ? 0 : version.get();
+    }
+    
+    public long getSiteSetVersion() {
+        return siteSet.get();
+    }
+    
+    /**
+     * Отмечает изменение индекса сайта. Версия увеличивается сразу и ещё
+     * раз через {@link AfterCommit}: внутри транзакции это происходит после
+     * коммита, и результат, посчитанный по незафиксированным данным, не
+     * переживёт коммит; вне транзакции оба увеличения происходят сразу.
+     */
+    public void bumpSite(int siteId) {
+        AtomicLong version = sites.computeIfAbsent(siteId, id -> new AtomicLong());
+        version.incrementAndGet();
+        AfterCommit.run(version::incrementAndGet);
+    }
+    
+    public void bumpSiteSet() {
+        siteSet.incrementAndGet();
+        AfterCommit.run(siteSet::incrementAndGet);
+    }
+}
@@ -0,0 +1,114 @@
+package searchengine.services;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import searchengine.model.SiteEntity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Метрики индексации страниц: время лемматизации текста и записи
+ * в индекс, отдельно для новых и изменившихся страниц, и попадания в кэш
+ * лемм. Здесь же ход обхода каждого сайта последней индексации и метрики
+ * crawl.* по нему.
+ */
+@Component
+public class IndexingMetrics {
+    
+    private final MeterRegistry registry;
+    // Ход обхода по адресу сайта; остаётся после окончания обхода
+    private final Map<String, CrawlProgress> crawls = new ConcurrentHashMap<>();
+    private final Timer lemmatize;
+    private final Timer index;
+    private final Timer reindex;
+    
+    public IndexingMetrics(MeterRegistry registry, LemmaService lemmaService) {
+        this.registry = registry;
+        LemmaCache lemmaCache = lemmaService.getCache();
+        FunctionCounter.builder("lemmatizer.cache.hits", lemmaCache, LemmaCache::getHits)
+                .register(registry);
+        FunctionCounter.builder("lemmatizer.cache.misses", lemmaCache, LemmaCache::getMisses)
+                .register(registry);
+        Gauge.builder("lemmatizer.cache.size", lemmaCache, LemmaCache::size)
+                .register(registry);
+        lemmatize = Timer.builder("indexing.lemmatize")
+                .description("Лемматизация текста страницы")
+                .publishPercentileHistogram()
+                .register(registry);
+        index = pageTimer(registry, "index");
+        reindex = pageTimer(registry, "reindex");
+    }
+    
+    /**
+     * Время лемматизации попадает и в ход обхода, стадию которого
+     * выполняет текущий поток
+     */
+    public <T> T timeLemmatize(Supplier<T> action) {
+        long start = System.nanoTime();
+        try {
+            return action.get();
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            lemmatize.record(elapsed, TimeUnit.NANOSECONDS);
+            CrawlProgress progress = CrawlProgress.current();
+            if (progress != null) {
+                progress.recordStage(CrawlProgress.Stage.LEMMATIZE, elapsed);
+            }
+        }
+    }
+    
+    /**
+     * Запись лемм и строк индекса страницы, без лемматизации
+     */
+    public void timeIndex(boolean changed, Runnable action) {
+        (changed ? reindex : index).record(action);
+    }
+    
+    /**
+     * Начинает учёт хода обхода сайта, заменяя учёт прошлого обхода
+     */
+    public CrawlProgress startCrawl(SiteEntity site) {
+        String url = site.getUrl();
+        CrawlProgress progress = new CrawlProgress(url, site.getName(), registry);
+        if (crawls.put(url, progress) == null) {
+            Gauge.builder("crawl.frontier", crawls, c -> frontierSize(c, url))
+                    .description("Адреса, ожидающие загрузки")
+                    .tag("site", url)
+                    .register(registry);
+        }
+        return progress;
+    }
+    
+    /**
+     * Забывает обходы прошлой индексации, в том числе сайтов, которых
+     * больше нет в конфигурации
+     */
+    public void clearCrawls() {
+        crawls.clear();
+    }
+    
+    public List<CrawlProgress> getCrawls() {
+        return new ArrayList<>(crawls.values());
+    }
+    
+    private static double frontierSize(Map<String, CrawlProgress> crawls, String url) {
+        CrawlProgress progress = crawls.get(url);
+        return progress == null ? 0 : progress.getFrontierSize();
+    }
+    
+    private static Timer pageTimer(MeterRegistry registry, String mode) {
+        return Timer.builder("indexing.page")
+                .description("Запись страницы в индекс")
+                .tag("mode", mode)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+}
@@ -3,19 +3,22 @@
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import searchengine.config.CrawlerSettings;
 import searchengine.config.Site;
 import searchengine.config.SitesList;
+import searchengine.dto.indexing.IndexingProgressResponse;
+import searchengine.dto.indexing.SiteProgressItem;
+import searchengine.dto.indexing.StageLatency;
 import searchengine.exception.IndexingAlreadyStartedException;
 import searchengine.exception.IndexingNotStartedException;
+import searchengine.model.GenerationState;
 import searchengine.model.IndexingStatus;
 import searchengine.model.SiteEntity;
 import searchengine.repository.*;
 
 import java.time.LocalDateTime;
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.Set;
-import java.util.concurrent.ForkJoinPool;
+import java.util.*;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 @Slf4j
@@ -23,29 +26,44 @@
 @RequiredArgsConstructor
 public class IndexingService {
     
+    private static final String STOPPED_BY_USER = "Индексация остановлена пользователем";
+    
     private final SiteRepository siteRepository;
     private final PageRepository pageRepository;
-    private final LemmaRepository lemmaRepository;
-    private final IndexRepository indexRepository;
     private final SitesList sitesList;
-    private final LemmaService lemmaService;
+    private final CrawlerSettings crawlerSettings;
     private final PageIndexer pageIndexer;
+    private final IndexGenerations indexGenerations;
+    private final SiteDataPurger siteDataPurger;
+    private final LemmaDictionary lemmaDictionary;
+    private final IndexingMetrics indexingMetrics;
+    private final SiteStatistics siteStatistics;
     
     private final AtomicBoolean indexingInProgress = new AtomicBoolean(false);
-    private ForkJoinPool forkJoinPool;
+    private final Set<SiteCrawler> activeCrawlers = ConcurrentHashMap.newKeySet();
     
     public void startIndexing() {
-        if (indexingInProgress.get()) {
+        startIndexing(false);
+    }
+    
+    /**
+     * Запускает индексацию всех сайтов. В инкрементальном режиме активное
+     * поколение обновляется на месте: страницы сайтов перепроверяются
+     * условными запросами, изменившиеся переиндексируются, исчезнувшие
+     * удаляются.
+     */
+    public void startIndexing(boolean incremental) {
+        if (!indexingInProgress.compareAndSet(false, true)) {
             log.warn("Попытка запуска индексации, но она уже выполняется");
             throw new IndexingAlreadyStartedException("Индексация уже запущена");
         }
         
-        log.info("Запуск полной индексации всех сайтов");
-        indexingInProgress.set(true);
+        log.info(incremental ? "Запуск инкрементальной индексации всех сайтов"
+                             : "Запуск полной индексации всех сайтов");
         
         new Thread(() -> {
             try {
-                performIndexing();
+                performIndexing(incremental);
             } catch (Exception e) {
                 log.error("Ошибка при индексации: {}", e.getMessage(), e);
             } finally {
@@ -54,30 +72,92 @@ public void startIndexing() {
         }).start();
     }
     
-    private void performIndexing() {
-        log.info("Удаление старых данных из БД");
-        deleteAllData();
-        
-        forkJoinPool = new ForkJoinPool();
-        log.info("ForkJoinPool создан");
-        
+    /**
+     * Обходит сайты параллельно: одновременно не больше maxConcurrentSites
+     * сайтов, а их загрузки делят общий лимит maxConcurrentFetches. Полная
+     * индексация пишет в новое поколение сайта, которое заменяет прежнее,
+     * как только закончен обход этого сайта, не дожидаясь остальных; до
+     * этого поиск по сайту работает по старому индексу.
+     */
+    private void performIndexing(boolean incremental) throws InterruptedException {
+        indexingMetrics.clearCrawls();
+        int generation = indexGenerations.nextGeneration();
+        List<SiteEntity> sites = new ArrayList<>();
+        List<SiteEntity> building = new ArrayList<>();
+        // Поколения, которые ещё не опубликованы, по id сайта
+        Set<Integer> unpublished = ConcurrentHashMap.newKeySet();
         for (Site site : sitesList.getSites()) {
-            if (!indexingInProgress.get()) {
-                log.info("Индексация остановлена пользователем");
-                break;
+            Optional<SiteEntity> existing = incremental
+                    ? siteRepository.findByUrlAndGenerationState(site.getUrl(), GenerationState.ACTIVE)
+                    : Optional.empty();
+            if (existing.isPresent()) {
+                existing.get().setLastError(null);
+                updateSiteStatus(existing.get(), IndexingStatus.INDEXING, null);
+                sites.add(existing.get());
+            } else {
+                log.info("Создание поколения {} для сайта: {}", generation, site.getUrl());
+                SiteEntity siteEntity = createSiteEntity(site, generation);
+                sites.add(siteEntity);
+                building.add(siteEntity);
+                unpublished.add(siteEntity.getId());
+            }
+        }
+        
+        Semaphore globalFetchSlots = new Semaphore(crawlerSettings.getMaxConcurrentFetches());
+        int threads = Math.max(1, Math.min(crawlerSettings.getMaxConcurrentSites(), sites.size()));
+        ExecutorService sitesExecutor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (SiteEntity site : sites) {
+                futures.add(sitesExecutor.submit(() -> {
+                    try {
+                        indexSite(site, globalFetchSlots, incremental);
+                    } finally {
+                        publishIfUnpublished(site, unpublished);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    log.error("Ошибка при индексации сайта: {}", e.getCause().getMessage(), e.getCause());
+                }
+            }
+        } finally {
+            sitesExecutor.shutdownNow();
+            // Сайты, до обхода которых дело не дошло
+            List<SiteEntity> remaining = new ArrayList<>();
+            for (SiteEntity site : building) {
+                if (unpublished.remove(site.getId())) {
+                    remaining.add(site);
+                }
             }
-            log.info("Начало индексации сайта: {}", site.getUrl());
-            indexSite(site);
+            indexGenerations.publish(remaining);
+            siteStatistics.reconcile();
         }
         log.info("Индексация всех сайтов завершена");
     }
     
+    /**
+     * Публикует строящееся поколение сайта, как только обход сайта
+     * закончен, успешно или нет
+     */
+    private void publishIfUnpublished(SiteEntity site, Set<Integer> unpublished) {
+        if (!unpublished.remove(site.getId())) {
+            return;
+        }
+        try {
+            indexGenerations.publish(List.of(site));
+            siteStatistics.reconcile();
+        } catch (Exception e) {
+            log.error("Ошибка при публикации поколения сайта {}: {}", site.getUrl(), e.getMessage(), e);
+        }
+    }
+    
     private void cleanupResources() {
         indexingInProgress.set(false);
-        if (forkJoinPool != null) {
-            forkJoinPool.shutdown();
-            log.info("ForkJoinPool остановлен");
-        }
+        activeCrawlers.clear();
     }
     
     public void stopIndexing() {
@@ -88,70 +168,149 @@ public void stopIndexing() {
         
         log.info("Остановка индексации по запросу пользователя");
         indexingInProgress.set(false);
-        if (forkJoinPool != null) {
-            forkJoinPool.shutdownNow();
-            log.info("ForkJoinPool принудительно остановлен");
+        for (SiteCrawler crawler : activeCrawlers) {
+            crawler.stop();
         }
+        log.info("Прерван обход {} сайтов", activeCrawlers.size());
     }
     
     public boolean isIndexing() {
         return indexingInProgress.get();
     }
     
-    private void deleteAllData() {
-        log.debug("Удаление индексов");
-        indexRepository.deleteAll();
-        log.debug("Удаление лемм");
-        lemmaRepository.deleteAll();
-        log.debug("Удаление страниц");
-        pageRepository.deleteAll();
-        log.debug("Удаление сайтов");
-        siteRepository.deleteAll();
-        log.info("Все данные успешно удалены");
+    /**
+     * Ход обхода сайтов текущей или последней индексации. Собирается
+     * из счётчиков в памяти, к БД не обращается.
+     */
+    public IndexingProgressResponse getProgress() {
+        List<SiteProgressItem> sites = new ArrayList<>();
+        for (CrawlProgress progress : indexingMetrics.getCrawls()) {
+            sites.add(toProgressItem(progress));
+        }
+        sites.sort(Comparator.comparing(SiteProgressItem::getUrl));
+        
+        IndexingProgressResponse response = new IndexingProgressResponse();
+        response.setResult(true);
+        response.setIndexing(indexingInProgress.get());
+        response.setSites(sites);
+        return response;
     }
     
-    private void indexSite(Site site) {
-        log.info("Создание записи для сайта: {}", site.getUrl());
-        SiteEntity siteEntity = createSiteEntity(site);
+    private static SiteProgressItem toProgressItem(CrawlProgress progress) {
+        SiteProgressItem item = new SiteProgressItem();
+        item.setUrl(progress.getUrl());
+        item.setName(progress.getName());
+        item.setFinished(progress.isFinished());
+        item.setElapsedMs(progress.getElapsedMillis());
+        item.setPagesFetched(progress.getPagesFetched());
+        item.setPagesSaved(progress.getPagesSaved());
+        item.setPagesPerSecond(progress.getPagesPerSecond());
+        item.setBytesDownloaded(progress.getBytesDownloaded());
+        item.setFrontierSize(progress.getFrontierSize());
+        
+        Map<String, StageLatency> stages = new LinkedHashMap<>();
+        for (CrawlProgress.Stage stage : CrawlProgress.Stage.values()) {
+            stages.put(stage.name().toLowerCase(Locale.ROOT),
+                       new StageLatency(progress.getStageCount(stage), progress.getStageMeanMillis(stage)));
+        }
+        item.setStages(stages);
+        
+        Map<String, Long> errors = new LinkedHashMap<>();
+        for (CrawlProgress.ErrorType type : CrawlProgress.ErrorType.values()) {
+            errors.put(type.name().toLowerCase(Locale.ROOT), progress.getErrors(type));
+        }
+        item.setErrors(errors);
+        return item;
+    }
+    
+    private void indexSite(SiteEntity siteEntity, Semaphore globalFetchSlots, boolean incremental) {
+        String url = siteEntity.getUrl();
+        if (!indexingInProgress.get()) {
+            updateSiteStatus(siteEntity, IndexingStatus.FAILED, STOPPED_BY_USER);
+            return;
+        }
         
         try {
-            log.info("Загрузка robots.txt для сайта: {}", site.getUrl());
-            RobotsTxtParser robotsTxtParser = new RobotsTxtParser(site.getUrl());
+            log.info("Загрузка robots.txt для сайта: {}", url);
+            RobotsTxtParser robotsTxtParser = new RobotsTxtParser(url, crawlerSettings.getUserAgent());
             
-            log.info("Запуск обхода сайта: {}", site.getUrl());
-            Set<String> visitedUrls = Collections.synchronizedSet(new HashSet<>());
+            Map<String, PageFetchView> knownPages = incremental ? loadKnownPages(siteEntity) : Map.of();
+            lemmaDictionary.preload(siteEntity.getId());
             
-            SiteIndexingTask task = new SiteIndexingTask(
-                site.getUrl(),
+            log.info("Запуск обхода сайта: {}", url);
+            SiteCrawler crawler = new SiteCrawler(
                 siteEntity,
+                crawlerSettings,
                 pageRepository,
-                lemmaRepository,
-                indexRepository,
-                lemmaService,
                 pageIndexer,
-                indexingInProgress,
-                visitedUrls,
-                robotsTxtParser
+                siteStatistics,
+                robotsTxtParser,
+                indexingInProgress::get,
+                globalFetchSlots,
+                knownPages,
+                indexingMetrics.startCrawl(siteEntity)
             );
+            activeCrawlers.add(crawler);
+            try {
+                crawler.crawl();
+            } finally {
+                activeCrawlers.remove(crawler);
+            }
             
-            forkJoinPool.invoke(task);
-            
-            updateSiteStatus(siteEntity, IndexingStatus.INDEXED, null);
-            log.info("Сайт {} успешно проиндексирован", site.getUrl());
-            
+            if (indexingInProgress.get()) {
+                removeVanishedPages(siteEntity, knownPages, crawler.getAlivePaths());
+                updateSiteStatus(siteEntity, IndexingStatus.INDEXED, null);
+                log.info("Сайт {} успешно проиндексирован", url);
+            } else {
+                updateSiteStatus(siteEntity, IndexingStatus.FAILED, STOPPED_BY_USER);
+                log.info("Индексация сайта {} остановлена пользователем", url);
+            }
+        
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            updateSiteStatus(siteEntity, IndexingStatus.FAILED, STOPPED_BY_USER);
         } catch (Exception e) {
-            log.error("Ошибка при индексации сайта {}: {}", site.getUrl(), e.getMessage(), e);
+            log.error("Ошибка при индексации сайта {}: {}", url, e.getMessage(), e);
             updateSiteStatus(siteEntity, IndexingStatus.FAILED, e.getMessage());
         }
     }
     
-    private SiteEntity createSiteEntity(Site site) {
+    private Map<String, PageFetchView> loadKnownPages(SiteEntity site) {
+        Map<String, PageFetchView> knownPages = new HashMap<>();
+        for (PageFetchView page : pageRepository.findFetchMetadataBySite(site)) {
+            knownPages.put(page.getPath(), page);
+        }
+        log.info("Сайт {}: {} страниц из прошлой индексации", site.getUrl(), knownPages.size());
+        return knownPages;
+    }
+    
+    /**
+     * Удаляет страницы прошлой индексации, которых не нашёл завершившийся обход
+     */
+    private void removeVanishedPages(SiteEntity site, Map<String, PageFetchView> knownPages, Set<String> alivePaths) {
+        List<Integer> vanished = new ArrayList<>();
+        for (PageFetchView page : knownPages.values()) {
+            if (!alivePaths.contains(page.getPath())) {
+                vanished.add(page.getId());
+            }
+        }
+        if (!vanished.isEmpty()) {
+            siteDataPurger.purgePages(site.getId(), vanished);
+            log.info("Сайт {}: удалено {} исчезнувших страниц", site.getUrl(), vanished.size());
+        }
+    }
+    
+    private SiteEntity createSiteEntity(Site site, int generation) {
         SiteEntity siteEntity = new SiteEntity();
         siteEntity.setUrl(site.getUrl());
         siteEntity.setName(site.getName());
+        siteEntity.setGeneration(generation);
+        siteEntity.setGenerationState(GenerationState.BUILDING);
         siteEntity.setStatus(IndexingStatus.INDEXING);
         siteEntity.setStatusTime(LocalDateTime.now());
-        return siteRepository.save(siteEntity);
+        siteEntity = siteRepository.save(siteEntity);
+        siteStatistics.siteSaved(siteEntity);
+        return siteEntity;
     }
     
     private void updateSiteStatus(SiteEntity siteEntity, IndexingStatus status, String error) {
@@ -161,5 +320,6 @@ private void updateSiteStatus(SiteEntity siteEntity, IndexingStatus status, Stri
             siteEntity.setLastError(error);
         }
         siteRepository.save(siteEntity);
+        siteStatistics.siteSaved(siteEntity);
     }
 }
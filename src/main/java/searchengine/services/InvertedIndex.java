@@ -0,0 +1,311 @@
+package searchengine.services;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import searchengine.repository.IndexRepository;
+import searchengine.repository.PageLengthView;
+import searchengine.repository.PageRepository;
+import searchengine.repository.PostingView;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Обратный индекс в памяти: для каждой пары (сайт, лемма) хранит сжатый
+ * список страниц. Строится из таблиц index и lemma активного поколения
+ * при старте приложения и обновляется при индексации страниц, поэтому
+ * поиск не обращается к БД. Рядом хранятся длины страниц в леммах
+ * для ранжирования BM25.
+ * <p>
+ * Страницы, добавленные или удалённые внутри транзакции, меняют индекс
+ * только после её коммита: поиск не видит незафиксированных страниц,
+ * а откат не оставляет в памяти того, чего нет в БД.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class InvertedIndex {
+    
+    private final IndexRepository indexRepository;
+    private final PageRepository pageRepository;
+    
+    private final Map<Integer, Map<String, PostingList>> sites = new ConcurrentHashMap<>();
+    private final Map<Integer, PageLengths> lengths = new ConcurrentHashMap<>();
+    
+    @Transactional(readOnly = true)
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        log.info("Загрузка обратного индекса из БД");
+        long start = System.currentTimeMillis();
+        long postings = 0;
+        
+        try (Stream<PostingView> stream = indexRepository.streamActivePostings()) {
+            Iterator<PostingView> iterator = stream.iterator();
+            while (iterator.hasNext()) {
+                PostingView view = iterator.next();
+                getOrCreate(view.getSiteId(), view.getLemma()).add(view.getPageId(), view.getRank());
+                postings++;
+            }
+        }
+        try (Stream<PageLengthView> stream = pageRepository.streamActiveLengths()) {
+            Iterator<PageLengthView> iterator = stream.iterator();
+            while (iterator.hasNext()) {
+                PageLengthView view = iterator.next();
+                getOrCreateLengths(view.getSiteId()).put(view.getPageId(), view.getLemmaCount());
+            }
+        }
+        
+        log.info("Обратный индекс загружен: {} вхождений, {} сайтов за {} мс",
+                 postings, sites.size(), System.currentTimeMillis() - start);
+    }
+    
+    /**
+     * Добавляет в индекс леммы проиндексированной страницы
+     *
+     * @param lemmas все леммы страницы с количеством вхождений
+     */
+    public void addPage(int siteId, int pageId, Map<String, Integer> lemmas) {
+        AfterCommit.run(() -> applyAddPage(siteId, pageId, lemmas));
+    }
+    
+    private void applyAddPage(int siteId, int pageId, Map<String, Integer> lemmas) {
+        int length = 0;
+        for (Map.Entry<String, Integer> entry : lemmas.entrySet()) {
+            getOrCreate(siteId, entry.getKey()).add(pageId, entry.getValue());
+            length += entry.getValue();
+        }
+        if (length > 0) {
+            getOrCreateLengths(siteId).put(pageId, length);
+        }
+    }
+    
+    /**
+     * Удаляет страницу из индекса целиком
+     *
+     * @param lemmas все леммы страницы
+     */
+    public void deletePage(int siteId, int pageId, Collection<String> lemmas) {
+        AfterCommit.run(() -> {
+            applyRemovePage(siteId, pageId, lemmas);
+            PageLengths siteLengths = lengths.get(siteId);
+            if (siteLengths != null) {
+                siteLengths.remove(pageId);
+            }
+        });
+    }
+    
+    /**
+     * Удаляет страницу из списков вхождений указанных лемм
+     */
+    public void removePage(int siteId, int pageId, Collection<String> lemmas) {
+        AfterCommit.run(() -> applyRemovePage(siteId, pageId, lemmas));
+    }
+    
+    private void applyRemovePage(int siteId, int pageId, Collection<String> lemmas) {
+        Map<String, PostingList> siteIndex = sites.get(siteId);
+        if (siteIndex == null) {
+            return;
+        }
+        for (String lemma : lemmas) {
+            PostingList postingList = siteIndex.get(lemma);
+            if (postingList != null) {
+                postingList.remove(pageId);
+            }
+        }
+    }
+    
+    public void removeSite(int siteId) {
+        sites.remove(siteId);
+        lengths.remove(siteId);
+    }
+    
+    public void clear() {
+        sites.clear();
+        lengths.clear();
+    }
+    
+    /**
+     * Количество страниц сайта, содержащих лемму
+     */
+    public int getDocumentFrequency(int siteId, String lemma) {
+        PostingList postingList = getPostingList(siteId, lemma);
+        return postingList == null ? 0 : postingList.size();
+    }
+    
+    /**
+     * Количество проиндексированных страниц сайта, на которых есть хотя бы одна лемма
+     */
+    public int getPageCount(int siteId) {
+        PageLengths siteLengths = lengths.get(siteId);
+        return siteLengths == null ? 0 : siteLengths.size();
+    }
+    
+    /**
+     * Сумма длин всех страниц сайта в леммах
+     */
+    public long getTotalLength(int siteId) {
+        PageLengths siteLengths = lengths.get(siteId);
+        return siteLengths == null ? 0 : siteLengths.total();
+    }
+    
+    /**
+     * Длина страницы в леммах или 0, если она неизвестна
+     */
+    public int getPageLength(int siteId, int pageId) {
+        PageLengths siteLengths = lengths.get(siteId);
+        return siteLengths == null ? 0 : siteLengths.get(pageId);
+    }
+    
+    /**
+     * Находит страницы сайта, содержащие все леммы, и суммирует ранги лемм
+     * на каждой из них
+     *
+     * @return отсортированные id страниц с абсолютной релевантностью
+     */
+    public PostingList.Postings findPagesWithAllLemmas(int siteId, List<String> lemmas) {
+        Matches matches = findMatches(siteId, lemmas);
+        int[] ranks = new int[matches.getSize()];
+        for (int[] termRanks : matches.getRanks()) {
+            for (int i = 0; i < ranks.length; i++) {
+                ranks[i] += termRanks[i];
+            }
+        }
+        return new PostingList.Postings(matches.getPageIds(), ranks, matches.getSize());
+    }
+    
+    /**
+     * Находит страницы сайта, содержащие все леммы, сохраняя ранг каждой
+     * леммы отдельно. Распаковывается только самый короткий список: его
+     * страницы — кандидаты, остальные списки в порядке роста проверяются
+     * курсорами только для оставшихся кандидатов, перепрыгивая блоки по
+     * указателям пропуска. Поиск прекращается, как только кандидатов не осталось.
+     */
+    public Matches findMatches(int siteId, List<String> lemmas) {
+        if (lemmas.isEmpty()) {
+            return Matches.EMPTY;
+        }
+        
+        List<Map.Entry<String, PostingList>> postingLists = new ArrayList<>();
+        for (String lemma : lemmas) {
+            PostingList postingList = getPostingList(siteId, lemma);
+            if (postingList == null || postingList.isEmpty()) {
+                return Matches.EMPTY;
+            }
+            postingLists.add(Map.entry(lemma, postingList));
+        }
+        postingLists.sort(Comparator.comparingInt(entry -> entry.getValue().size()));
+        
+        PostingList.Postings first = postingLists.get(0).getValue().decode();
+        int[] pageIds = first.getPageIds();
+        int[][] ranks = new int[postingLists.size()][];
+        ranks[0] = first.getRanks();
+        int size = first.getSize();
+        
+        for (int i = 1; i < postingLists.size(); i++) {
+            ranks[i] = new int[size];
+            if (size > 0) {
+                size = intersect(pageIds, ranks, i, size, postingLists.get(i).getValue().cursor());
+            }
+        }
+        
+        List<String> ordered = new ArrayList<>(postingLists.size());
+        postingLists.forEach(entry -> ordered.add(entry.getKey()));
+        return new Matches(ordered, pageIds, ranks, size, first.getSize());
+    }
+    
+    /**
+     * Оставляет в pageIds только страницы, найденные курсором, сдвигая
+     * вместе с ними ранги уже пересечённых лемм и записывая ранги курсора в ranks[term]
+     *
+     * @return количество оставшихся страниц
+     */
+    private static int intersect(int[] pageIds, int[][] ranks, int term, int size, PostingList.Cursor cursor) {
+        int result = 0;
+        for (int i = 0; i < size; i++) {
+            if (!cursor.advanceTo(pageIds[i])) {
+                break;
+            }
+            if (cursor.pageId() != pageIds[i]) {
+                continue;
+            }
+            pageIds[result] = pageIds[i];
+            for (int t = 0; t < term; t++) {
+                ranks[t][result] = ranks[t][i];
+            }
+            ranks[term][result] = cursor.rank();
+            result++;
+        }
+        return result;
+    }
+    
+    private PostingList getPostingList(int siteId, String lemma) {
+        Map<String, PostingList> siteIndex = sites.get(siteId);
+        return siteIndex == null ? null : siteIndex.get(lemma);
+    }
+    
+    private PostingList getOrCreate(int siteId, String lemma) {
+        return sites.computeIfAbsent(siteId, id -> new ConcurrentHashMap<>())
+                .computeIfAbsent(lemma, l -> new PostingList());
+    }
+    
+    private PageLengths getOrCreateLengths(int siteId) {
+        return lengths.computeIfAbsent(siteId, id -> new PageLengths());
+    }
+    
+    /**
+     * Страницы, содержащие все леммы запроса. Леммы упорядочены по длине
+     * списка вхождений, ranks[t][i] — ранг леммы t на странице pageIds[i];
+     * candidates — сколько страниц самого редкого списка проверялось.
+     */
+    @Getter
+    @RequiredArgsConstructor(access = AccessLevel.PACKAGE)
+    public static class Matches {
+        static final Matches EMPTY = new Matches(Collections.emptyList(), new int[0], new int[0][], 0, 0);
+        
+        private final List<String> lemmas;
+        private final int[] pageIds;
+        private final int[][] ranks;
+        private final int size;
+        private final int candidates;
+    }
+    
+    /**
+     * Длины страниц сайта и их сумма
+     */
+    private static final class PageLengths {
+        private final Map<Integer, Integer> lengths = new ConcurrentHashMap<>();
+        private final AtomicLong total = new AtomicLong();
+        
+        void put(int pageId, int length) {
+            Integer previous = lengths.put(pageId, length);
+            total.addAndGet(length - (previous == null ? 0 : previous));
+        }
+        
+        void remove(int pageId) {
+            Integer previous = lengths.remove(pageId);
+            if (previous != null) {
+                total.addAndGet(-previous);
+            }
+        }
+        
+        int get(int pageId) {
+            return lengths.getOrDefault(pageId, 0);
+        }
+        
+        int size() {
+            return lengths.size();
+        }
+        
+        long total() {
+            return total.get();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package searchengine.services;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Ограниченный потокобезопасный кэш слово → лемма. При переполнении
+ * вытесняется десятая часть записей по алгоритму «часы»: стрелка идёт по
+ * хеш-таблице с того места, где остановилась в прошлый раз, запись, к
+ * которой обращались после прошлого прохода, теряет отметку и остаётся,
+ * а запись без отметки удаляется. Частые слова поэтому переживают
+ * вытеснение, а поток редких слов вытесняет в основном сам себя.
+ */
+public class LemmaCache {
+    
+    private final int maxSize;
+    private final ConcurrentHashMap<String, Entry> lemmas;
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    // Стрелка часов; используется только под evictionLock
+    private Iterator<Entry> hand;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    
+    public LemmaCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Размер кэша лемм должен быть положительным: " + maxSize);
+        }
+        this.maxSize = maxSize;
+        this.lemmas = new ConcurrentHashMap<>(Math.min(maxSize, 1 << 16));
+    }
+    
+    /**
+     * Лемма слова из кэша; при промахе слово анализируется и запоминается
+     */
+    public String get(String word, Lemmatizer lemmatizer) {
+        Entry entry = lemmas.get(word);
+        if (entry != null) {
+            hits.increment();
+            if (!entry.referenced) {
+                entry.referenced = true;
+            }
+            return entry.lemma;
+        }
+        
+        misses.increment();
+        String lemma = lemmatizer.lemmatize(word);
+        if (lemma == null || lemma.isEmpty()) {
+            lemma = word;
+        }
+        if (lemmas.size() >= maxSize) {
+            evict();
+        }
+        lemmas.putIfAbsent(word, new Entry(lemma));
+        return lemma;
+    }
+    
+    public long getHits() {
+        return hits.sum();
+    }
+    
+    public long getMisses() {
+        return misses.sum();
+    }
+    
+    public int size() {
+        return lemmas.size();
+    }
+    
+    public int getMaxSize() {
+        return maxSize;
+    }
+    
+    private void evict() {
+        // Вытеснением занимается один поток, остальные не ждут
+        if (!evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            int toRemove = lemmas.size() - maxSize + Math.max(1, maxSize / 10);
+            // За два полных оборота отметки сняты со всех записей, дальше идти незачем
+            long steps = 2L * lemmas.size() + 2;
+            while (toRemove > 0 && steps-- > 0) {
+                if (hand == null || !hand.hasNext()) {
+                    hand = lemmas.values().iterator();
+                    if (!hand.hasNext()) {
+                        return;
+                    }
+                }
+                Entry entry = hand.next();
+                if (entry.referenced) {
+                    entry.referenced = false;
+                } else {
+                    hand.remove();
+                    toRemove--;
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+    
+    private static final class Entry {
+        private final String lemma;
+        // Было ли обращение к записи после прошлого прохода стрелки
+        private volatile boolean referenced;
+        
+        private Entry(String lemma) {
+            this.lemma = lemma;
+        }
+    }
+}
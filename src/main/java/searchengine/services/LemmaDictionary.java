@@ -0,0 +1,156 @@
+package searchengine.services;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.repository.IndexJdbcRepository;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Словари лемм сайтов в памяти: лемма → id и частота. Словарь сайта
+ * загружается из таблицы lemma при первом поиске по сайту или перед его
+ * обходом, после чего поиск и индексация не запрашивают леммы из БД по
+ * одной. Загружать словарь можно только вне транзакции записи: иначе он
+ * увидит её незафиксированные изменения.
+ * <p>
+ * Изменения, сделанные в транзакции, применяются после коммита, при
+ * откате — не применяются. Если словарь сайта был перезагружен, пока
+ * транзакция шла, неизвестно, видел ли он её изменения, поэтому он
+ * выбрасывается и при следующем обращении загрузится заново.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LemmaDictionary {
+    
+    public static final Lemma ABSENT = new Lemma(0, "", 0);
+    
+    private final IndexJdbcRepository indexJdbcRepository;
+    
+    private final Map<Integer, SiteLemmas> sites = new ConcurrentHashMap<>();
+    
+    /**
+     * Лемма сайта с id и частотой или null, если на сайте её нет.
+     * Загружает словарь сайта, если он ещё не загружен.
+     */
+    public Lemma find(int siteId, String lemma) {
+        return toLemma(lemma, sites.computeIfAbsent(siteId, this::load).find(lemma));
+    }
+    
+    /**
+     * Лемма из уже загруженного словаря; для вызова внутри транзакции
+     *
+     * @return лемма, {@link #ABSENT}, если на сайте её нет, или null,
+     * если словарь сайта не загружен и ответ нужно искать в БД
+     */
+    public Lemma findLoaded(int siteId, String lemma) {
+        SiteLemmas loaded = sites.get(siteId);
+        if (loaded == null) {
+            return null;
+        }
+        Lemma found = toLemma(lemma, loaded.find(lemma));
+        return found == null ? ABSENT : found;
+    }
+    
+    /**
+     * Число лемм сайта по загруженному словарю или null, если словарь
+     * не загружен
+     */
+    public Integer countLoaded(int siteId) {
+        SiteLemmas loaded = sites.get(siteId);
+        return loaded == null ? null : loaded.size();
+    }
+    
+    public void preload(int siteId) {
+        sites.computeIfAbsent(siteId, this::load);
+    }
+    
+    /**
+     * Частота каждой из лемм увеличилась на единицу
+     *
+     * @param lemmaIds id по тексту леммы
+     */
+    public void addOccurrences(int siteId, Map<String, Integer> lemmaIds) {
+        if (!lemmaIds.isEmpty()) {
+            apply(siteId, lemmas -> lemmas.addOccurrences(lemmaIds));
+        }
+    }
+    
+    /**
+     * Частоты лемм уменьшились
+     *
+     * @param counts на сколько уменьшилась частота каждой леммы
+     */
+    public void releaseOccurrences(int siteId, Map<String, Integer> counts) {
+        if (!counts.isEmpty()) {
+            apply(siteId, lemmas -> lemmas.releaseOccurrences(counts));
+        }
+    }
+    
+    public void evict(int siteId) {
+        sites.remove(siteId);
+    }
+    
+    private void apply(int siteId, Consumer<SiteLemmas> change) {
+        SiteLemmas loaded = sites.get(siteId);
+        AfterCommit.run(() -> {
+            SiteLemmas current = sites.get(siteId);
+            if (current == null) {
+                return;
+            }
+            if (current == loaded) {
+                change.accept(current);
+            } else {
+                sites.remove(siteId, current);
+            }
+        });
+    }
+    
+    private static Lemma toLemma(String lemma, int[] entry) {
+        return entry == null ? null : new Lemma(entry[0], lemma, entry[1]);
+    }
+    
+    private SiteLemmas load(int siteId) {
+        long start = System.currentTimeMillis();
+        List<String> lemmas = new ArrayList<>();
+        IntList ids = new IntList();
+        IntList frequencies = new IntList();
+        indexJdbcRepository.forEachLemma(siteId, (id, lemma, frequency) -> {
+            lemmas.add(lemma);
+            ids.add(id);
+            frequencies.add(frequency);
+        });
+        SiteLemmas siteLemmas = new SiteLemmas(lemmas, ids.toArray(), frequencies.toArray());
+        log.debug("Словарь лемм сайта {} загружен: {} лемм за {} мс",
+                  siteId, lemmas.size(), System.currentTimeMillis() - start);
+        return siteLemmas;
+    }
+    
+    @Getter
+    @RequiredArgsConstructor
+    public static class Lemma {
+        private final int id;
+        private final String lemma;
+        private final int frequency;
+    }
+    
+    private static final class IntList {
+        private int[] values = new int[16];
+        private int size;
+        
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+        
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
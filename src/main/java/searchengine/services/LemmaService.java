@@ -1,17 +1,23 @@
 package searchengine.services;
 
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import searchengine.config.LemmatizerSettings;
 
 import java.util.*;
+import java.util.function.Function;
 
+/**
+ * Разбивает текст на слова и приводит их к леммам. Нормальную форму
+ * слова определяет подключаемый Lemmatizer, а результаты его работы
+ * кэшируются, поэтому каждое слово анализируется один раз за время
+ * работы приложения.
+ */
 @Slf4j
 @Service
 public class LemmaService {
     
-    // Упрощенная лемматизация для русского языка
-    // Для продакшена рекомендуется Apache Lucene Morphology
-    
     private static final Set<String> STOP_WORDS = new HashSet<>(Arrays.asList(
         "и", "в", "во", "не", "что", "он", "на", "я", "с", "со", "как", "а", "то", "все",
         "она", "так", "его", "но", "да", "ты", "к", "у", "же", "вы", "за", "бы", "по",
@@ -29,65 +35,271 @@ public class LemmaService {
         "чуть", "том", "нельзя", "такой", "им", "более", "всегда", "конечно", "всю", "между"
     ));
     
-    public Map<String, Integer> getLemmas(String text) {
-        Map<String, Integer> lemmas = new HashMap<>();
+    private static final int MIN_WORD_LENGTH = 3;
+    
+    private static final LetterTrie STOP_WORD_TRIE = buildStopWordTrie();
+    
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+    
+    private final Lemmatizer lemmatizer;
+    @Getter
+    private final LemmaCache cache;
+    
+    public LemmaService(Lemmatizer lemmatizer, LemmatizerSettings settings) {
+        this.lemmatizer = lemmatizer;
+        this.cache = new LemmaCache(settings.getCacheSize());
+        log.info("Лемматизатор: {}, размер кэша лемм {}",
+                 lemmatizer.getClass().getSimpleName(), settings.getCacheSize());
+    }
+    
+    /**
+     * Леммы текста с количеством вхождений. Текст просматривается посимвольно
+     * без промежуточных строк; разные слова текста переводятся в леммы
+     * один раз в конце, через кэш.
+     */
+    public Map<String, Integer> getLemmas(CharSequence text) {
+        Scratch scratch = SCRATCH.get();
+        WordCounter counter = scratch.counter;
+        counter.clear();
         
-        String[] words = text.toLowerCase()
-                .replaceAll("[^а-яa-zё\\s]", " ")
-                .trim()
-                .split("\\s+");
+        int length = text.length();
+        int wordLength = 0;
+        boolean russian = true;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            char lower = Character.toLowerCase(c);
+            if (isWordChar(lower)) {
+                scratch.ensureCapacity(wordLength + 1);
+                scratch.word[wordLength++] = lower;
+                russian &= isRussianLetter(lower);
+                // String.toLowerCase() превращает «İ» в «i» и комбинирующую точку,
+                // которая разрывает слово
+                if (c != 'İ') {
+                    continue;
+                }
+            }
+            if (wordLength > 0) {
+                countWord(scratch.word, wordLength, russian, counter);
+                wordLength = 0;
+                russian = true;
+            }
+        }
+        if (wordLength > 0) {
+            countWord(scratch.word, wordLength, russian, counter);
+        }
+        
+        return counter.toLemmas(this::normalize);
+    }
+    
+    /**
+     * Лемма отдельного слова или null, если слово не индексируется
+     * (короткое, не русское или стоп-слово)
+     */
+    public String getLemma(String word) {
+        return getLemma(word, 0, word.length());
+    }
+    
+    /**
+     * Лемма слова text[start, end) без выделения подстроки
+     */
+    public String getLemma(CharSequence text, int start, int end) {
+        int wordLength = end - start;
+        if (wordLength < MIN_WORD_LENGTH) {
+            return null;
+        }
         
-        for (String word : words) {
-            if (word.isEmpty() || word.length() < 3) {
-                continue;
+        Scratch scratch = SCRATCH.get();
+        scratch.ensureCapacity(wordLength);
+        char[] word = scratch.word;
+        for (int i = 0; i < wordLength; i++) {
+            char c = text.charAt(start + i);
+            char lower = Character.toLowerCase(c);
+            if (!isRussianLetter(lower) || c == 'İ') {
+                return null;
             }
-            
-            // Проверяем только русские слова
-            if (!word.matches("[а-яё]+")) {
-                continue;
+            word[i] = lower;
+        }
+        
+        if (STOP_WORD_TRIE.contains(word, wordLength)) {
+            return null;
+        }
+        return normalize(new String(word, 0, wordLength));
+    }
+    
+    private String normalize(String word) {
+        return cache.get(word, lemmatizer);
+    }
+    
+    private static void countWord(char[] word, int wordLength, boolean russian, WordCounter counter) {
+        if (wordLength < MIN_WORD_LENGTH || !russian || STOP_WORD_TRIE.contains(word, wordLength)) {
+            return;
+        }
+        counter.add(word, wordLength);
+    }
+    
+    private static boolean isWordChar(char c) {
+        return isRussianLetter(c) || (c >= 'a' && c <= 'z');
+    }
+    
+    private static boolean isRussianLetter(char c) {
+        return (c >= 'а' && c <= 'я') || c == 'ё';
+    }
+    
+    private static LetterTrie buildStopWordTrie() {
+        LetterTrie trie = new LetterTrie();
+        for (String stopWord : STOP_WORDS) {
+            trie.put(stopWord, false, 0);
+        }
+        return trie;
+    }
+    
+    /**
+     * Буферы потока, переиспользуемые между вызовами
+     */
+    private static final class Scratch {
+        
+        private char[] word = new char[64];
+        private final WordCounter counter = new WordCounter();
+        
+        void ensureCapacity(int length) {
+            if (length > word.length) {
+                word = Arrays.copyOf(word, Math.max(length, word.length * 2));
+            }
+        }
+    }
+    
+    /**
+     * Счётчик слов с открытой адресацией. Символы слов хранятся подряд
+     * в общем массиве, поэтому повторное вхождение слова ничего не выделяет.
+     * Очищаются только занятые ячейки, так что таблица переиспользуется
+     * между текстами без обхода целиком.
+     */
+    private static final class WordCounter {
+        
+        private static final int INITIAL_CAPACITY = 256;
+        private static final int MAX_RETAINED_CAPACITY = 1 << 16;
+        
+        private int[] slots;
+        private int[] hashes;
+        private int[] offsets;
+        private int[] lengths;
+        private int[] counts;
+        private int[] order;
+        private char[] chars;
+        private int size;
+        private int charsUsed;
+        
+        WordCounter() {
+            allocate(INITIAL_CAPACITY);
+            chars = new char[INITIAL_CAPACITY * 8];
+        }
+        
+        void clear() {
+            if (slots.length > MAX_RETAINED_CAPACITY) {
+                allocate(INITIAL_CAPACITY);
+                chars = new char[INITIAL_CAPACITY * 8];
+            } else {
+                for (int i = 0; i < size; i++) {
+                    slots[order[i]] = -1;
+                }
+            }
+            size = 0;
+            charsUsed = 0;
+        }
+        
+        void add(char[] key, int length) {
+            int hash = hash(key, length);
+            int mask = slots.length - 1;
+            int slot = hash & mask;
+            while (slots[slot] >= 0) {
+                int entry = slots[slot];
+                if (hashes[entry] == hash && equalsKey(entry, key, length)) {
+                    counts[entry]++;
+                    return;
+                }
+                slot = (slot + 1) & mask;
             }
             
-            if (STOP_WORDS.contains(word)) {
-                continue;
+            if (charsUsed + length > chars.length) {
+                chars = Arrays.copyOf(chars, Math.max(charsUsed + length, chars.length * 2));
             }
+            System.arraycopy(key, 0, chars, charsUsed, length);
+            hashes[size] = hash;
+            offsets[size] = charsUsed;
+            lengths[size] = length;
+            counts[size] = 1;
+            order[size] = slot;
+            slots[slot] = size;
+            charsUsed += length;
+            size++;
             
-            String lemma = lemmatize(word);
-            lemmas.put(lemma, lemmas.getOrDefault(lemma, 0) + 1);
+            if (size * 2 >= slots.length) {
+                grow();
+            }
         }
         
-        return lemmas;
-    }
-    
-    private String lemmatize(String word) {
-        if (word.length() < 4) {
-            return word;
-        }
-        
-        // Расширенный список окончаний для более точной лемматизации
-        String[][] endings = {
-            // Существительные множественного числа
-            {"ами", "ями", "ах", "ях", "ам", "ям"},
-            // Прилагательные
-            {"ого", "его", "ому", "ему", "ыми", "ими"},
-            // Глаголы
-            {"ешь", "ете", "ишь", "ите", "ать", "ять", "еть", "ить", "ыть"},
-            // Существительные и прилагательные
-            {"ом", "ем", "им", "ой", "ей", "ий", "ый", "ая", "яя", "ое", "ее", "ые", "ие"},
-            // Короткие окончания
-            {"ов", "ев", "ам", "ми", "ах", "ой", "ей"},
-            // Самые короткие
-            {"а", "я", "у", "ю", "о", "е", "и", "ы", "ь"}
-        };
-        
-        // Пробуем удалить окончания от длинных к коротким
-        for (String[] endingGroup : endings) {
-            for (String ending : endingGroup) {
-                if (word.endsWith(ending) && word.length() - ending.length() >= 3) {
-                    return word.substring(0, word.length() - ending.length());
+        /**
+         * Переводит разные слова в леммы и суммирует их вхождения
+         */
+        Map<String, Integer> toLemmas(Function<String, String> normalizer) {
+            Map<String, Integer> lemmas = new HashMap<>(Math.max(16, size * 4 / 3 + 1));
+            for (int i = 0; i < size; i++) {
+                String lemma = normalizer.apply(new String(chars, offsets[i], lengths[i]));
+                lemmas.merge(lemma, counts[i], Integer::sum);
+            }
+            return lemmas;
+        }
+        
+        private boolean equalsKey(int entry, char[] key, int length) {
+            if (lengths[entry] != length) {
+                return false;
+            }
+            int offset = offsets[entry];
+            for (int i = 0; i < length; i++) {
+                if (chars[offset + i] != key[i]) {
+                    return false;
                 }
             }
+            return true;
         }
         
-        return word;
+        private void grow() {
+            int capacity = slots.length * 2;
+            slots = new int[capacity];
+            Arrays.fill(slots, -1);
+            hashes = Arrays.copyOf(hashes, capacity / 2);
+            offsets = Arrays.copyOf(offsets, capacity / 2);
+            lengths = Arrays.copyOf(lengths, capacity / 2);
+            counts = Arrays.copyOf(counts, capacity / 2);
+            order = Arrays.copyOf(order, capacity / 2);
+            
+            int mask = capacity - 1;
+            for (int entry = 0; entry < size; entry++) {
+                int slot = hashes[entry] & mask;
+                while (slots[slot] >= 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = entry;
+                order[entry] = slot;
+            }
+        }
+        
+        private void allocate(int capacity) {
+            slots = new int[capacity];
+            Arrays.fill(slots, -1);
+            hashes = new int[capacity / 2];
+            offsets = new int[capacity / 2];
+            lengths = new int[capacity / 2];
+            counts = new int[capacity / 2];
+            order = new int[capacity / 2];
+        }
+        
+        private static int hash(char[] key, int length) {
+            int hash = 0;
+            for (int i = 0; i < length; i++) {
+                hash = 31 * hash + key[i];
+            }
+            return hash ^ (hash >>> 16);
+        }
     }
 }
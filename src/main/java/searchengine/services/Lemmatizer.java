@@ -0,0 +1,13 @@
+package searchengine.services;
+
+/**
+ * Морфологический анализатор, приводящий слово к нормальной форме.
+ * LemmaService вызывает его только для русских слов в нижнем регистре
+ * длиной от трёх букв, не входящих в список стоп-слов, и кэширует результат,
+ * поэтому реализация может быть сколь угодно дорогой, но должна быть
+ * потокобезопасной и детерминированной.
+ */
+public interface Lemmatizer {
+    
+    String lemmatize(String word);
+}
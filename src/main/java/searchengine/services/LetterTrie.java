@@ -0,0 +1,76 @@
+package searchengine.services;
+
+import java.util.Arrays;
+
+/**
+ * Префиксное дерево над русским алфавитом, хранящееся в плоском массиве:
+ * у каждого узла 33 дочерних ссылки. Значение узла -1 означает, что
+ * в нём не заканчивается ни один ключ.
+ */
+final class LetterTrie {
+    
+    static final int ROOT = 0;
+    private static final int ALPHABET = 33;
+    
+    private int[] children = new int[ALPHABET * 16];
+    private int[] values = new int[16];
+    private int size = 1;
+    
+    LetterTrie() {
+        Arrays.fill(children, -1);
+        Arrays.fill(values, -1);
+    }
+    
+    /**
+     * Добавляет ключ; при повторном добавлении сохраняется первое значение
+     */
+    void put(String key, boolean reversed, int value) {
+        int node = ROOT;
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(reversed ? key.length() - 1 - i : i);
+            int letter = letterIndex(c);
+            int next = children[node * ALPHABET + letter];
+            if (next < 0) {
+                next = newNode();
+                children[node * ALPHABET + letter] = next;
+            }
+            node = next;
+        }
+        if (values[node] < 0) {
+            values[node] = value;
+        }
+    }
+    
+    boolean contains(char[] key, int length) {
+        int node = ROOT;
+        for (int i = 0; i < length && node >= 0; i++) {
+            node = child(node, key[i]);
+        }
+        return node >= 0 && values[node] >= 0;
+    }
+    
+    int child(int node, char c) {
+        return children[node * ALPHABET + letterIndex(c)];
+    }
+    
+    int value(int node) {
+        return values[node];
+    }
+    
+    private int newNode() {
+        if (size == values.length) {
+            int capacity = values.length * 2;
+            int oldChildren = children.length;
+            children = Arrays.copyOf(children, capacity * ALPHABET);
+            Arrays.fill(children, oldChildren, children.length, -1);
+            values = Arrays.copyOf(values, capacity);
+            Arrays.fill(values, size, capacity, -1);
+        }
+        return size++;
+    }
+    
+    private static int letterIndex(char c) {
+        return c == 'ё' ? ALPHABET - 1 : c - 'а';
+    }
+}
+
@@ -0,0 +1,172 @@
+package searchengine.services;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Отпечатки текстов страниц, уже найденных при обходе сайта. Сначала текст
+ * сравнивается точно: по SHA-256 слов текста в нижнем регистре, так что
+ * копии, отличающиеся только регистром и пунктуацией, совпадают, а разные
+ * тексты — нет. При maxDistance больше 0 ищутся и почти одинаковые тексты
+ * (версия для печати, другой порядок сортировки) по 64-битному SimHash
+ * шинглов из трёх слов: текст считается дубликатом, если отпечаток
+ * отличается от запомненного не больше чем в maxDistance битах. Короткие
+ * тексты, где шинглов мало и SimHash неустойчив, сравниваются только
+ * точно. Текст берётся со всей страницы, поэтому у страниц общего шаблона
+ * отпечатки SimHash близки; по умолчанию maxDistance равно 0.
+ * <p>
+ * Похожие отпечатки ищутся по четырём 16-битным блокам: при расстоянии
+ * не больше 3 хотя бы один блок совпадает точно, поэтому сравнивать
+ * нужно только отпечатки с тем же значением одного из блоков.
+ */
+class NearDuplicates {
+    
+    static final int MAX_DISTANCE = 3;
+    private static final int SHINGLE_WORDS = 3;
+    // Меньше шинглов — сравнение только на полное совпадение
+    private static final int MIN_NEAR_SHINGLES = 16;
+    private static final int BLOCKS = 4;
+    
+    private final int maxDistance;
+    // SHA-256 нормализованных текстов
+    private final Set<String> texts = new HashSet<>();
+    private final List<Map<Integer, List<Long>>> blocks = new ArrayList<>(BLOCKS);
+    
+    /**
+     * @param maxDistance наибольшее число различающихся бит, не больше {@link #MAX_DISTANCE}
+     */
+    NearDuplicates(int maxDistance) {
+        this.maxDistance = Math.min(maxDistance, MAX_DISTANCE);
+        for (int i = 0; i < BLOCKS; i++) {
+            blocks.add(new HashMap<>());
+        }
+    }
+    
+    /**
+     * Запоминает текст
+     *
+     * @return false, если такой или почти такой текст уже встречался
+     */
+    synchronized boolean add(String text) {
+        String normalized = normalize(text);
+        if (normalized.isEmpty()) {
+            return true;
+        }
+        if (!texts.add(PageContentHash.of(normalized.getBytes(StandardCharsets.UTF_8)))) {
+            return false;
+        }
+        if (maxDistance == 0) {
+            return true;
+        }
+        List<Long> shingles = shingles(normalized);
+        if (shingles.size() < MIN_NEAR_SHINGLES) {
+            return true;
+        }
+        long fingerprint = simHash(shingles);
+        for (int i = 0; i < BLOCKS; i++) {
+            List<Long> candidates = blocks.get(i).get(block(fingerprint, i));
+            if (candidates == null) {
+                continue;
+            }
+            for (long candidate : candidates) {
+                if (Long.bitCount(candidate ^ fingerprint) <= maxDistance) {
+                    return false;
+                }
+            }
+        }
+        for (int i = 0; i < BLOCKS; i++) {
+            blocks.get(i).computeIfAbsent(block(fingerprint, i), key -> new ArrayList<>(1)).add(fingerprint);
+        }
+        return true;
+    }
+    
+    static long simHash(String text) {
+        return simHash(shingles(normalize(text)));
+    }
+    
+    private static long simHash(List<Long> shingles) {
+        int[] weights = new int[Long.SIZE];
+        for (long shingle : shingles) {
+            for (int bit = 0; bit < Long.SIZE; bit++) {
+                weights[bit] += (shingle >>> bit & 1) == 1 ? 1 : -1;
+            }
+        }
+        long fingerprint = 0;
+        for (int bit = 0; bit < Long.SIZE; bit++) {
+            if (weights[bit] > 0) {
+                fingerprint |= 1L << bit;
+            }
+        }
+        return fingerprint;
+    }
+    
+    /**
+     * Слова текста (буквы и цифры) в нижнем регистре через пробел
+     */
+    private static String normalize(String text) {
+        StringBuilder normalized = new StringBuilder(text.length());
+        boolean inWord = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (!inWord && normalized.length() > 0) {
+                    normalized.append(' ');
+                }
+                normalized.append(Character.toLowerCase(c));
+                inWord = true;
+            } else {
+                inWord = false;
+            }
+        }
+        return normalized.toString();
+    }
+    
+    /**
+     * Хеши шинглов: слова нормализованного текста по SHINGLE_WORDS подряд,
+     * или одно сочетание всех слов, если их меньше
+     */
+    private static List<Long> shingles(String normalized) {
+        List<Long> words = new ArrayList<>();
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < normalized.length(); i++) {
+            char c = normalized.charAt(i);
+            if (c == ' ') {
+                words.add(hash);
+                hash = 0xcbf29ce484222325L;
+            } else {
+                hash ^= c;
+                hash *= 0x100000001b3L;
+            }
+        }
+        if (!normalized.isEmpty()) {
+            words.add(hash);
+        }
+        
+        List<Long> shingles = new ArrayList<>(Math.max(0, words.size() - SHINGLE_WORDS + 1));
+        int width = Math.min(SHINGLE_WORDS, words.size());
+        for (int start = 0; width > 0 && start + width <= words.size(); start++) {
+            long shingle = 0;
+            for (int i = start; i < start + width; i++) {
+                shingle = shingle * 31 + words.get(i);
+            }
+            shingles.add(mix(shingle));
+        }
+        return shingles;
+    }
+    
+    /**
+     * Финализатор MurmurHash3: все биты хеша шингла равновероятны
+     */
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+    
+    private static int block(long fingerprint, int index) {
+        return (int) (fingerprint >>> (index * 16)) & 0xFFFF;
+    }
+}
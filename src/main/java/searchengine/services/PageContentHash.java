@@ -0,0 +1,31 @@
+package searchengine.services;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SHA-256 тела ответа в шестнадцатеричном виде. По нему повторный обход
+ * узнаёт страницы, которые сервер отдал заново, но не изменил.
+ */
+public final class PageContentHash {
+    
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    
+    private PageContentHash() {
+    }
+    
+    public static String of(byte[] body) {
+        byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256").digest(body);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+        char[] hex = new char[digest.length * 2];
+        for (int i = 0; i < digest.length; i++) {
+            hex[i * 2] = HEX[(digest[i] >> 4) & 0xF];
+            hex[i * 2 + 1] = HEX[digest[i] & 0xF];
+        }
+        return new String(hex);
+    }
+}
@@ -4,49 +4,198 @@
 import lombok.extern.slf4j.Slf4j;
 import org.jsoup.nodes.Document;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
 import searchengine.model.*;
 import searchengine.repository.*;
 
-import java.util.Map;
+import java.util.*;
 
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class PageIndexer {
     
+    private static final int LEMMA_CHUNK_SIZE = 1000;
+    
     private final LemmaRepository lemmaRepository;
     private final IndexRepository indexRepository;
+    private final PageRepository pageRepository;
+    private final IndexJdbcRepository indexJdbcRepository;
     private final LemmaService lemmaService;
+    private final InvertedIndex invertedIndex;
+    private final SiteDataPurger siteDataPurger;
+    private final IndexVersions indexVersions;
+    private final LemmaDictionary lemmaDictionary;
+    private final IndexingMetrics indexingMetrics;
     
     /**
      * Индексирует содержимое страницы: извлекает леммы и сохраняет в индекс
      */
+    @Transactional
     public void indexPageContent(PageEntity page, Document doc, SiteEntity site) {
         String text = doc.text();
-        Map<String, Integer> lemmas = lemmaService.getLemmas(text);
+        Map<String, Integer> lemmas = indexingMetrics.timeLemmatize(() -> lemmaService.getLemmas(text));
+        
+        indexingMetrics.timeIndex(false, () -> {
+            if (indexJdbcRepository.isSupported()) {
+                saveLemmasInBatch(page, site, lemmas);
+            } else {
+                saveLemmasOneByOne(page, site, lemmas);
+            }
+            updateLemmaCount(page, lemmas);
+        });
+        
+        invertedIndex.addPage(site.getId(), page.getId(), lemmas);
+        indexVersions.bumpSite(site.getId());
+    }
+    
+    /**
+     * Обновляет индекс изменившейся страницы по разнице со старым набором
+     * лемм: строки исчезнувших лемм удаляются с уменьшением частоты, новые
+     * леммы добавляются, у оставшихся меняется только ранг
+     */
+    @Transactional
+    public void reindexPageContent(PageEntity page, Document doc, SiteEntity site) {
+        Map<String, Integer> lemmas = indexingMetrics.timeLemmatize(() -> lemmaService.getLemmas(doc.text()));
+        indexingMetrics.timeIndex(true, () -> reindexLemmas(page, site, lemmas));
+    }
+    
+    private void reindexLemmas(PageEntity page, SiteEntity site, Map<String, Integer> lemmas) {
+        Map<String, Integer> added = new HashMap<>(lemmas);
+        Map<Integer, Float> changedRanks = new HashMap<>();
+        List<Integer> removedIds = new ArrayList<>();
+        List<String> removedLemmas = new ArrayList<>();
+        for (PageLemmaView old : indexRepository.findLemmaRanksByPageId(page.getId())) {
+            Integer count = added.remove(old.getLemma());
+            if (count == null) {
+                removedIds.add(old.getLemmaId());
+                removedLemmas.add(old.getLemma());
+            } else if (count.floatValue() != old.getRank()) {
+                changedRanks.put(old.getLemmaId(), count.floatValue());
+            }
+        }
+        
+        if (!removedIds.isEmpty()) {
+            indexRepository.deleteByPageIdAndLemmaIdIn(page.getId(), removedIds);
+            releaseLemmas(removedIds);
+            Map<String, Integer> released = new HashMap<>(removedLemmas.size() * 2);
+            for (String lemma : removedLemmas) {
+                released.put(lemma, 1);
+            }
+            lemmaDictionary.releaseOccurrences(site.getId(), released);
+        }
+        updateRanks(page, changedRanks);
+        if (indexJdbcRepository.isSupported()) {
+            saveLemmasInBatch(page, site, added);
+        } else {
+            saveLemmasOneByOne(page, site, added);
+        }
+        updateLemmaCount(page, lemmas);
+        
+        invertedIndex.removePage(site.getId(), page.getId(), removedLemmas);
+        invertedIndex.addPage(site.getId(), page.getId(), lemmas);
+        indexVersions.bumpSite(site.getId());
+        log.debug("Страница {} переиндексирована: +{} -{} ~{} лемм",
+                  page.getPath(), added.size(), removedIds.size(), changedRanks.size());
+    }
+    
+    /**
+     * Удаляет страницу вместе со строками индекса, уменьшая частоты её лемм
+     */
+    public void removePage(int siteId, int pageId) {
+        siteDataPurger.purgePages(siteId, List.of(pageId));
+    }
+    
+    /**
+     * Уменьшает частоты лемм, которые больше не встречаются на странице,
+     * и удаляет леммы, не встречающиеся ни на одной странице
+     */
+    private void releaseLemmas(List<Integer> lemmaIds) {
+        for (int from = 0; from < lemmaIds.size(); from += LEMMA_CHUNK_SIZE) {
+            List<Integer> chunk = lemmaIds.subList(from, Math.min(from + LEMMA_CHUNK_SIZE, lemmaIds.size()));
+            lemmaRepository.decrementFrequency(chunk);
+            lemmaRepository.deleteUnusedByIdIn(chunk);
+        }
+    }
+    
+    /**
+     * Запоминает длину страницы в леммах для ранжирования BM25
+     */
+    private void updateLemmaCount(PageEntity page, Map<String, Integer> lemmas) {
+        int lemmaCount = 0;
+        for (int count : lemmas.values()) {
+            lemmaCount += count;
+        }
+        if (lemmaCount != page.getLemmaCount()) {
+            page.setLemmaCount(lemmaCount);
+            pageRepository.updateLemmaCount(page.getId(), lemmaCount);
+        }
+    }
+    
+    private void updateRanks(PageEntity page, Map<Integer, Float> ranks) {
+        if (ranks.isEmpty()) {
+            return;
+        }
+        if (indexJdbcRepository.isSupported()) {
+            indexJdbcRepository.updateIndexRanks(page.getId(), ranks);
+        } else {
+            ranks.forEach((lemmaId, rank) -> indexRepository.updateRank(page.getId(), lemmaId, rank));
+        }
+    }
+    
+    /**
+     * Один upsert для всех лемм страницы и JDBC-пакет для строк индекса
+     */
+    private void saveLemmasInBatch(PageEntity page, SiteEntity site, Map<String, Integer> lemmas) {
+        if (lemmas.isEmpty()) {
+            return;
+        }
+        
+        Map<String, Integer> lemmaIds = indexJdbcRepository.upsertLemmas(site.getId(), lemmas.keySet());
+        lemmaDictionary.addOccurrences(site.getId(), lemmaIds);
         
+        Map<Integer, Float> ranks = new HashMap<>(lemmas.size() * 2);
         for (Map.Entry<String, Integer> entry : lemmas.entrySet()) {
-            String lemmaText = entry.getKey();
-            Integer count = entry.getValue();
-            
-            LemmaEntity lemma = findOrCreateLemma(site, lemmaText);
-            lemma.setFrequency(lemma.getFrequency() + 1);
-            lemma = lemmaRepository.save(lemma);
-            
-            saveIndex(page, lemma, count);
-        }
-    }
-    
-    private LemmaEntity findOrCreateLemma(SiteEntity site, String lemmaText) {
-        return lemmaRepository
-                .findBySiteAndLemma(site, lemmaText)
-                .orElseGet(() -> {
-                    LemmaEntity newLemma = new LemmaEntity();
-                    newLemma.setSite(site);
-                    newLemma.setLemma(lemmaText);
-                    newLemma.setFrequency(0);
-                    return newLemma;
-                });
+            // Леммы, которые БД считает одной, делят строку индекса
+            ranks.merge(lemmaIds.get(entry.getKey()), entry.getValue().floatValue(), Float::sum);
+        }
+        indexJdbcRepository.insertIndexes(page.getId(), ranks);
+    }
+    
+    /**
+     * Построчная запись через JPA для БД без upsert (например, H2 в тестах).
+     * Id известных лемм берутся из словаря сайта, если он загружен.
+     */
+    private void saveLemmasOneByOne(PageEntity page, SiteEntity site, Map<String, Integer> lemmas) {
+        Map<String, Integer> lemmaIds = new HashMap<>(lemmas.size() * 2);
+        for (Map.Entry<String, Integer> entry : lemmas.entrySet()) {
+            LemmaEntity lemma = incrementLemma(site, entry.getKey());
+            lemmaIds.put(entry.getKey(), lemma.getId());
+            saveIndex(page, lemma, entry.getValue());
+        }
+        lemmaDictionary.addOccurrences(site.getId(), lemmaIds);
+    }
+    
+    private LemmaEntity incrementLemma(SiteEntity site, String lemmaText) {
+        LemmaDictionary.Lemma known = lemmaDictionary.findLoaded(site.getId(), lemmaText);
+        if (known != null && known != LemmaDictionary.ABSENT
+                && lemmaRepository.incrementFrequency(known.getId()) == 1) {
+            return lemmaRepository.getReferenceById(known.getId());
+        }
+        
+        LemmaEntity lemma = known == LemmaDictionary.ABSENT
+                ? newLemma(site, lemmaText)
+                : lemmaRepository.findBySiteAndLemma(site, lemmaText).orElseGet(() -> newLemma(site, lemmaText));
+        lemma.setFrequency(lemma.getFrequency() + 1);
+        return lemmaRepository.save(lemma);
+    }
+    
+    private static LemmaEntity newLemma(SiteEntity site, String lemmaText) {
+        LemmaEntity lemma = new LemmaEntity();
+        lemma.setSite(site);
+        lemma.setLemma(lemmaText);
+        lemma.setFrequency(0);
+        return lemma;
     }
     
     private void saveIndex(PageEntity page, LemmaEntity lemma, Integer count) {
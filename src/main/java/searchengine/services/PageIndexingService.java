@@ -6,6 +6,7 @@
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import searchengine.config.Site;
 import searchengine.config.SitesList;
 import searchengine.exception.PageOutOfScopeException;
@@ -21,10 +22,17 @@ public class PageIndexingService {
     
     private final SiteRepository siteRepository;
     private final PageRepository pageRepository;
-    private final IndexRepository indexRepository;
     private final PageIndexer pageIndexer;
+    private final SiteStatistics siteStatistics;
     private final SitesList sitesList;
+    private final TransactionTemplate transactionTemplate;
     
+    /**
+     * Загружает страницу и записывает её вместе с индексом в одной
+     * транзакции: если индексация не удалась, не остаётся страницы с новым
+     * хешем содержимого и старыми строками индекса, которую повторный
+     * обход счёл бы неизменившейся
+     */
     public void indexPage(String url) {
         log.info("Запрос на индексацию страницы: {}", url);
         
@@ -36,7 +44,8 @@ public void indexPage(String url) {
             );
         }
         
-        Optional<SiteEntity> siteEntityOpt = siteRepository.findByUrl(configSite.getUrl());
+        Optional<SiteEntity> siteEntityOpt = siteRepository.findByUrlAndGenerationState(
+                configSite.getUrl(), GenerationState.ACTIVE);
         if (siteEntityOpt.isEmpty()) {
             log.warn("Сайт {} не найден в базе данных", configSite.getUrl());
             throw new PageOutOfScopeException(
@@ -50,42 +59,57 @@ public void indexPage(String url) {
             path = "/";
         }
         
-        final String finalPath = path;
         Optional<PageEntity> existingPage = pageRepository.findBySiteAndPath(site, path);
-        existingPage.ifPresent(page -> {
-            log.debug("Удаление существующих индексов для страницы: {}", finalPath);
-            indexRepository.findByPage(page).forEach(indexRepository::delete);
-            pageRepository.delete(page);
-        });
         
         try {
             log.debug("Загрузка страницы: {}", url);
             Connection.Response response = Jsoup.connect(url)
                     .userAgent("Mozilla/5.0")
                     .timeout(10000)
-                    .execute();
+                    .execute()
+                    .bufferUp();
             
             Document doc = response.parse();
-            
-            PageEntity page = new PageEntity();
-            page.setSite(site);
-            page.setPath(finalPath);
-            page.setCode(response.statusCode());
-            page.setContent(doc.html());
-            page = pageRepository.save(page);
-            log.debug("Страница сохранена с кодом: {}", response.statusCode());
-            
+            String pagePath = path;
+            transactionTemplate.executeWithoutResult(
+                    status -> savePage(site, pagePath, existingPage, response, doc));
             if (response.statusCode() == 200) {
-                pageIndexer.indexPageContent(page, doc, site);
                 log.info("Страница {} успешно проиндексирована", url);
             }
-            
+        
         } catch (Exception e) {
             log.error("Ошибка при индексации страницы {}: {}", url, e.getMessage(), e);
             throw new RuntimeException("Ошибка при индексации страницы: " + e.getMessage());
         }
     }
     
+    private void savePage(SiteEntity site, String path, Optional<PageEntity> existingPage,
+                          Connection.Response response, Document doc) {
+        PageEntity page = existingPage.orElseGet(PageEntity::new);
+        page.setSite(site);
+        page.setPath(path);
+        page.setCode(response.statusCode());
+        page.setContent(doc.html());
+        page.setEtag(response.header("ETag"));
+        page.setLastModified(response.header("Last-Modified"));
+        page.setContentHash(PageContentHash.of(response.bodyAsBytes()));
+        PageTextExtractor.fill(page, doc);
+        page = pageRepository.save(page);
+        if (existingPage.isEmpty()) {
+            siteStatistics.pageAdded(site.getId());
+        }
+        log.debug("Страница сохранена с кодом: {}", response.statusCode());
+        
+        if (response.statusCode() == 200) {
+            if (existingPage.isPresent()) {
+                log.debug("Обновление индекса существующей страницы: {}", path);
+                pageIndexer.reindexPageContent(page, doc, site);
+            } else {
+                pageIndexer.indexPageContent(page, doc, site);
+            }
+        }
+    }
+    
     private Site findSiteInConfig(String url) {
         for (Site site : sitesList.getSites()) {
             if (url.startsWith(site.getUrl())) {
@@ -0,0 +1,65 @@
+package searchengine.services;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.jsoup.Jsoup;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.model.PageEntity;
+import searchengine.repository.PageRepository;
+
+import java.util.List;
+
+/**
+ * Заполняет заголовок и текст у страниц, проиндексированных до появления
+ * этих колонок. Работает в фоне после старта приложения, пачками по id.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PageTextBackfillService {
+    
+    private static final int BATCH_SIZE = 100;
+    
+    private final PageRepository pageRepository;
+    private final TransactionTemplate transactionTemplate;
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void startBackfill() {
+        Thread thread = new Thread(this::backfill, "page-text-backfill");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    void backfill() {
+        int afterId = 0;
+        long processed = 0;
+        
+        try {
+            while (true) {
+                List<Integer> ids = pageRepository.findIdsWithoutText(afterId, PageRequest.of(0, BATCH_SIZE));
+                if (ids.isEmpty()) {
+                    break;
+                }
+                transactionTemplate.executeWithoutResult(status -> fillBatch(ids));
+                afterId = ids.get(ids.size() - 1);
+                processed += ids.size();
+            }
+        } catch (Exception e) {
+            log.error("Ошибка при заполнении текста страниц: {}", e.getMessage(), e);
+        }
+        
+        if (processed > 0) {
+            log.info("Заполнены заголовок и текст для {} страниц", processed);
+        }
+    }
+    
+    private void fillBatch(List<Integer> ids) {
+        for (PageEntity page : pageRepository.findAllById(ids)) {
+            PageTextExtractor.fill(page, Jsoup.parse(page.getContent()));
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package searchengine.services;
+
+import org.jsoup.nodes.Document;
+import searchengine.model.PageEntity;
+
+/**
+ * Извлекает заголовок и текст страницы при индексации, чтобы поиск
+ * строил сниппеты по готовому тексту и не разбирал HTML повторно
+ */
+public final class PageTextExtractor {
+    
+    private PageTextExtractor() {
+    }
+    
+    public static void fill(PageEntity page, Document doc) {
+        fill(page, doc, text(doc));
+    }
+    
+    /**
+     * @param text текст страницы, уже извлечённый {@link #text}
+     */
+    public static void fill(PageEntity page, Document doc, String text) {
+        page.setTitle(doc.title());
+        page.setText(text);
+    }
+    
+    public static String text(Document doc) {
+        return doc.body() == null ? doc.text() : doc.body().text();
+    }
+}
@@ -0,0 +1,290 @@
+package searchengine.services;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Arrays;
+
+/**
+ * Список вхождений одной леммы: отсортированные id страниц и их ранги.
+ * Хранится в одном массиве байт: для каждой страницы записываются
+ * разница с предыдущим id и ранг в формате varint. Каждые SKIP_INTERVAL
+ * записей запоминается указатель пропуска — смещение записи и id страницы
+ * перед ней, — поэтому курсор может перейти к нужной странице, не
+ * распаковывая список целиком.
+ */
+public class PostingList {
+    
+    private static final int INITIAL_CAPACITY = 16;
+    static final int SKIP_INTERVAL = 64;
+    
+    private byte[] data = new byte[INITIAL_CAPACITY];
+    private int length;
+    private int size;
+    private int lastPageId;
+    private int[] skipOffsets = new int[1];
+    private int[] skipBases = new int[1];
+    private int skipCount;
+    
+    /**
+     * Добавляет страницу в список. Ранг округляется до целого, так как
+     * в индексе хранится количество вхождений леммы на странице.
+     * Повторное добавление страницы заменяет её ранг.
+     */
+    public synchronized void add(int pageId, float rank) {
+        int intRank = Math.round(rank);
+        if (size == 0 || pageId > lastPageId) {
+            append(pageId, intRank);
+            return;
+        }
+        
+        Postings postings = decode();
+        int position = Arrays.binarySearch(postings.getPageIds(), 0, postings.getSize(), pageId);
+        if (position >= 0) {
+            postings.getRanks()[position] = intRank;
+            encode(postings.getPageIds(), postings.getRanks(), postings.getSize());
+            return;
+        }
+        
+        int insertAt = -position - 1;
+        int[] pageIds = new int[postings.getSize() + 1];
+        int[] ranks = new int[postings.getSize() + 1];
+        System.arraycopy(postings.getPageIds(), 0, pageIds, 0, insertAt);
+        System.arraycopy(postings.getRanks(), 0, ranks, 0, insertAt);
+        pageIds[insertAt] = pageId;
+        ranks[insertAt] = intRank;
+        System.arraycopy(postings.getPageIds(), insertAt, pageIds, insertAt + 1, postings.getSize() - insertAt);
+        System.arraycopy(postings.getRanks(), insertAt, ranks, insertAt + 1, postings.getSize() - insertAt);
+        encode(pageIds, ranks, pageIds.length);
+    }
+    
+    /**
+     * Удаляет страницу из списка
+     *
+     * @return true, если страница была в списке
+     */
+    public synchronized boolean remove(int pageId) {
+        if (size == 0 || pageId > lastPageId) {
+            return false;
+        }
+        
+        Postings postings = decode();
+        int position = Arrays.binarySearch(postings.getPageIds(), 0, postings.getSize(), pageId);
+        if (position < 0) {
+            return false;
+        }
+        
+        System.arraycopy(postings.getPageIds(), position + 1, postings.getPageIds(), position, postings.getSize() - position - 1);
+        System.arraycopy(postings.getRanks(), position + 1, postings.getRanks(), position, postings.getSize() - position - 1);
+        encode(postings.getPageIds(), postings.getRanks(), postings.getSize() - 1);
+        return true;
+    }
+    
+    public synchronized int size() {
+        return size;
+    }
+    
+    public synchronized boolean isEmpty() {
+        return size == 0;
+    }
+    
+    /**
+     * Распаковывает список в массивы id страниц и рангов
+     */
+    public synchronized Postings decode() {
+        int[] pageIds = new int[size];
+        int[] ranks = new int[size];
+        int position = 0;
+        int pageId = 0;
+        
+        for (int i = 0; i < size; i++) {
+            int delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[position++];
+                delta |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            
+            int rank = 0;
+            shift = 0;
+            do {
+                b = data[position++];
+                rank |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            
+            pageId += delta;
+            pageIds[i] = pageId;
+            ranks[i] = rank;
+        }
+        
+        return new Postings(pageIds, ranks, size);
+    }
+    
+    /**
+     * Курсор по текущему содержимому списка. Последующие изменения списка
+     * курсор не видит: дописывание идёт за пределы прочитанной части,
+     * а перестроение создаёт новые массивы.
+     */
+    public synchronized Cursor cursor() {
+        return new Cursor(data, size, skipOffsets, skipBases, skipCount);
+    }
+    
+    /**
+     * Объём памяти, занимаемый сжатыми данными, в байтах
+     */
+    public synchronized int sizeInBytes() {
+        return length;
+    }
+    
+    private void append(int pageId, int rank) {
+        if (size % SKIP_INTERVAL == 0) {
+            addSkip();
+        }
+        ensureCapacity(length + 10);
+        writeVarInt(pageId - lastPageId);
+        writeVarInt(rank);
+        lastPageId = pageId;
+        size++;
+    }
+    
+    private void encode(int[] pageIds, int[] ranks, int count) {
+        data = new byte[Math.max(INITIAL_CAPACITY, count * 3)];
+        length = 0;
+        size = 0;
+        lastPageId = 0;
+        skipOffsets = new int[Math.max(1, (count + SKIP_INTERVAL - 1) / SKIP_INTERVAL)];
+        skipBases = new int[skipOffsets.length];
+        skipCount = 0;
+        for (int i = 0; i < count; i++) {
+            append(pageIds[i], ranks[i]);
+        }
+    }
+    
+    private void addSkip() {
+        if (skipCount == skipOffsets.length) {
+            skipOffsets = Arrays.copyOf(skipOffsets, skipCount * 2);
+            skipBases = Arrays.copyOf(skipBases, skipCount * 2);
+        }
+        skipOffsets[skipCount] = length;
+        skipBases[skipCount] = lastPageId;
+        skipCount++;
+    }
+    
+    private void writeVarInt(int value) {
+        while ((value & ~0x7F) != 0) {
+            data[length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data[length++] = (byte) value;
+    }
+    
+    private void ensureCapacity(int required) {
+        if (required > data.length) {
+            data = Arrays.copyOf(data, Math.max(required, data.length * 2));
+        }
+    }
+    
+    /**
+     * Последовательный проход по списку с переходом вперёд по указателям пропуска
+     */
+    public static final class Cursor {
+        private final byte[] data;
+        private final int size;
+        private final int[] skipOffsets;
+        private final int[] skipBases;
+        private final int skipCount;
+        private int position;
+        private int index;
+        private int pageId;
+        private int rank;
+        
+        private Cursor(byte[] data, int size, int[] skipOffsets, int[] skipBases, int skipCount) {
+            this.data = data;
+            this.size = size;
+            this.skipOffsets = skipOffsets;
+            this.skipBases = skipBases;
+            this.skipCount = skipCount;
+        }
+        
+        /**
+         * Переходит к первой странице с id не меньше target, пропуская
+         * целые блоки, в которых её быть не может
+         *
+         * @return false, если таких страниц в списке нет
+         */
+        public boolean advanceTo(int target) {
+            if (index > 0 && pageId >= target) {
+                return true;
+            }
+            int block = lastBlockBefore(target);
+            if (block * SKIP_INTERVAL > index) {
+                index = block * SKIP_INTERVAL;
+                position = skipOffsets[block];
+                pageId = skipBases[block];
+            }
+            while (index < size) {
+                pageId += readVarInt();
+                rank = readVarInt();
+                index++;
+                if (pageId >= target) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        
+        public int pageId() {
+            return pageId;
+        }
+        
+        public int rank() {
+            return rank;
+        }
+        
+        /**
+         * Последний блок, перед которым стоит страница с id меньше target
+         */
+        private int lastBlockBefore(int target) {
+            int low = 0;
+            int high = skipCount - 1;
+            while (low < high) {
+                int middle = (low + high + 1) >>> 1;
+                if (skipBases[middle] < target) {
+                    low = middle;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            return low;
+        }
+        
+        private int readVarInt() {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[position++];
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+    }
+    
+    /**
+     * Распакованное содержимое списка вхождений
+     */
+    @Getter
+    @RequiredArgsConstructor(access = AccessLevel.PACKAGE)
+    public static class Postings {
+        static final Postings EMPTY = new Postings(new int[0], new int[0], 0);
+        
+        private final int[] pageIds;
+        private final int[] ranks;
+        private final int size;
+    }
+}
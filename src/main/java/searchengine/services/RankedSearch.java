@@ -0,0 +1,34 @@
+package searchengine.services;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import searchengine.model.SiteEntity;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ранжированная часть выдачи до загрузки текстов страниц и построения сниппетов
+ */
+@Getter
+@RequiredArgsConstructor
+public class RankedSearch {
+    
+    private final List<SiteEntity> sites;
+    private final Map<String, Integer> queryLemmas;
+    private final List<ScoredPage> pages;
+    private final int total;
+    /**
+     * Ответили ли все сайты до истечения срока поиска
+     */
+    private final boolean complete;
+    /**
+     * Курсор следующей части выдачи или null, если она последняя
+     */
+    private final String nextCursor;
+    
+    static RankedSearch empty(Map<String, Integer> queryLemmas) {
+        return new RankedSearch(Collections.emptyList(), queryLemmas, Collections.emptyList(), 0, true, null);
+    }
+}
@@ -4,26 +4,52 @@
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 
+/**
+ * Правила robots.txt сайта для нашего агента. Правила Allow и Disallow
+ * группы, подходящей агенту (или группы «*»), собираются в префиксное
+ * дерево по символам пути; «*» в шаблоне — узел, который поглощает любое
+ * число символов, «$» — признак конца пути. Путь проверяется одним проходом
+ * по дереву, и из подошедших правил действует самое длинное, а при равной
+ * длине — Allow. Кроме правил читаются Crawl-delay группы и адреса карт
+ * сайта из строк Sitemap.
+ */
 public class RobotsTxtParser {
     
     private static final Logger logger = LoggerFactory.getLogger(RobotsTxtParser.class);
-    private final List<String> disallowedPaths;
+    private static final String DEFAULT_USER_AGENT = "Mozilla/5.0";
+    
     private final String siteUrl;
+    private final String agentToken;
+    private final Node root = new Node();
+    private long crawlDelayMs;
+    private final List<String> sitemaps = new ArrayList<>();
     
     public RobotsTxtParser(String siteUrl) {
+        this(siteUrl, DEFAULT_USER_AGENT);
+    }
+    
+    public RobotsTxtParser(String siteUrl, String userAgent) {
+        this.siteUrl = siteUrl;
+        this.agentToken = agentToken(userAgent);
+        loadRobotsTxt(userAgent);
+    }
+    
+    /**
+     * Правила из готового текста robots.txt, без загрузки
+     */
+    RobotsTxtParser(String siteUrl, String userAgent, String content) {
         this.siteUrl = siteUrl;
-        this.disallowedPaths = new ArrayList<>();
-        loadRobotsTxt();
+        this.agentToken = agentToken(userAgent);
+        parseRobotsTxt(content);
     }
     
-    private void loadRobotsTxt() {
+    private void loadRobotsTxt(String userAgent) {
         try {
             String robotsUrl = siteUrl + "/robots.txt";
             String content = Jsoup.connect(robotsUrl)
-                    .userAgent("Mozilla/5.0")
+                    .userAgent(userAgent)
                     .timeout(5000)
                     .ignoreContentType(true)
                     .execute()
@@ -31,43 +57,230 @@ private void loadRobotsTxt() {
             
             parseRobotsTxt(content);
             logger.info("Loaded robots.txt for {}", siteUrl);
-            
+        
         } catch (Exception e) {
             logger.warn("Could not load robots.txt for {}: {}", siteUrl, e.getMessage());
         }
     }
     
+    /**
+     * Группа — подряд идущие строки User-agent и правила после них.
+     * Действуют все группы с нашим агентом, а если таких нет — группы «*».
+     */
     private void parseRobotsTxt(String content) {
-        String[] lines = content.split("\n");
-        boolean relevantSection = false;
+        List<Group> groups = new ArrayList<>();
+        Group group = null;
+        boolean readingAgents = false;
         
-        for (String line : lines) {
-            line = line.trim();
+        for (String line : content.split("\r?\n|\r")) {
+            int comment = line.indexOf('#');
+            if (comment >= 0) {
+                line = line.substring(0, comment);
+            }
+            int colon = line.indexOf(':');
+            if (colon < 0) {
+                continue;
+            }
+            String key = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            String value = line.substring(colon + 1).trim();
             
-            if (line.toLowerCase().startsWith("user-agent:")) {
-                String agent = line.substring(11).trim();
-                relevantSection = agent.equals("*");
-            } else if (relevantSection && line.toLowerCase().startsWith("disallow:")) {
-                String path = line.substring(9).trim();
-                if (!path.isEmpty()) {
-                    disallowedPaths.add(path);
+            if (key.equals("user-agent")) {
+                if (!readingAgents) {
+                    group = new Group();
+                    groups.add(group);
+                    readingAgents = true;
                 }
+                group.agents.add(value.toLowerCase(Locale.ROOT));
+                continue;
+            }
+            readingAgents = false;
+            if (key.equals("sitemap")) {
+                if (!value.isEmpty()) {
+                    sitemaps.add(value);
+                }
+            } else if (group != null && (key.equals("allow") || key.equals("disallow"))) {
+                if (!value.isEmpty()) {
+                    group.rules.add(new String[]{key, value});
+                }
+            } else if (group != null && key.equals("crawl-delay")) {
+                group.crawlDelayMs = parseDelay(value);
             }
         }
+        
+        boolean matched = groups.stream().anyMatch(g -> g.agents.contains(agentToken));
+        String selected = matched ? agentToken : "*";
+        for (Group g : groups) {
+            if (!g.agents.contains(selected)) {
+                continue;
+            }
+            for (String[] rule : g.rules) {
+                addRule(rule[1], rule[0].equals("allow"));
+            }
+            crawlDelayMs = Math.max(crawlDelayMs, g.crawlDelayMs);
+        }
     }
     
     public boolean isAllowed(String url) {
-        String path = url.replace(siteUrl, "");
-        if (path.isEmpty()) {
-            path = "/";
+        String path = pathOf(url);
+        if (path.equals("/robots.txt")) {
+            return true;
         }
         
-        for (String disallowed : disallowedPaths) {
-            if (path.startsWith(disallowed)) {
+        // Узлы дерева, в которые приводит прочитанная часть пути
+        List<Node> active = new ArrayList<>();
+        enter(root, active);
+        // Длина и действие самого сильного подошедшего правила
+        int bestLength = -1;
+        boolean bestAllow = true;
+        for (int i = 0; ; i++) {
+            for (Node node : active) {
+                if (stronger(node.prefixLength, node.prefixAllow, bestLength, bestAllow)) {
+                    bestLength = node.prefixLength;
+                    bestAllow = node.prefixAllow;
+                }
+            }
+            if (i == path.length() || active.isEmpty()) {
+                break;
+            }
+            char c = path.charAt(i);
+            List<Node> next = new ArrayList<>(active.size());
+            for (Node node : active) {
+                if (node.wildcard) {
+                    addOnce(node, next);
+                }
+                Node child = node.children.get(c);
+                if (child != null) {
+                    enter(child, next);
+                }
+            }
+            active = next;
+        }
+        for (Node node : active) {
+            if (stronger(node.endLength, node.endAllow, bestLength, bestAllow)) {
+                bestLength = node.endLength;
+                bestAllow = node.endAllow;
+            }
+        }
+        return bestAllow;
+    }
+    
+    /**
+     * Crawl-delay группы в миллисекундах; 0, если не задан
+     */
+    public long getCrawlDelayMs() {
+        return crawlDelayMs;
+    }
+    
+    /**
+     * Адреса карт сайта из строк Sitemap
+     */
+    public List<String> getSitemaps() {
+        return Collections.unmodifiableList(sitemaps);
+    }
+    
+    private void addRule(String pattern, boolean allow) {
+        Node node = root;
+        boolean anchored = pattern.endsWith("$");
+        String body = anchored ? pattern.substring(0, pattern.length() - 1) : pattern;
+        for (int i = 0; i < body.length(); i++) {
+            char c = body.charAt(i);
+            if (c == '*') {
+                if (node.star == null) {
+                    node.star = new Node();
+                    node.star.wildcard = true;
+                }
+                node = node.star;
+                // Несколько «*» подряд равносильны одной
+                while (i + 1 < body.length() && body.charAt(i + 1) == '*') {
+                    i++;
+                }
+            } else {
+                node = node.children.computeIfAbsent(c, key -> new Node());
+            }
+        }
+        int length = pattern.length();
+        if (anchored) {
+            if (stronger(length, allow, node.endLength, node.endAllow)) {
+                node.endLength = length;
+                node.endAllow = allow;
+            }
+        } else if (stronger(length, allow, node.prefixLength, node.prefixAllow)) {
+            node.prefixLength = length;
+            node.prefixAllow = allow;
+        }
+    }
+    
+    /**
+     * Сильнее ли правило текущего: длиннее — сильнее, при равной длине
+     * сильнее Allow. Длина -1 означает, что правила нет.
+     */
+    private static boolean stronger(int length, boolean allow, int currentLength, boolean currentAllow) {
+        return length >= 0 && (length > currentLength || length == currentLength && allow && !currentAllow);
+    }
+    
+    /**
+     * Добавляет узел и узлы, куда из него ведёт «*», совпавшая с пустой строкой
+     */
+    private static void enter(Node node, List<Node> active) {
+        while (node != null && addOnce(node, active)) {
+            node = node.star;
+        }
+    }
+    
+    private static boolean addOnce(Node node, List<Node> active) {
+        for (Node present : active) {
+            if (present == node) {
                 return false;
             }
         }
-        
+        active.add(node);
         return true;
     }
+    
+    /**
+     * Путь с запросом, без схемы, хоста и фрагмента
+     */
+    private static String pathOf(String url) {
+        int scheme = url.indexOf("://");
+        int start = url.indexOf('/', scheme < 0 ? 0 : scheme + 3);
+        String path = start < 0 ? "/" : url.substring(start);
+        int fragment = path.indexOf('#');
+        return fragment < 0 ? path : path.substring(0, fragment);
+    }
+    
+    /**
+     * Название продукта из User-Agent: «Mozilla/5.0 (...)» → «mozilla»
+     */
+    private static String agentToken(String userAgent) {
+        String token = userAgent.trim().split("[/\\s]", 2)[0];
+        return token.toLowerCase(Locale.ROOT);
+    }
+    
+    private static long parseDelay(String value) {
+        try {
+            double seconds = Double.parseDouble(value);
+            return seconds > 0 ? Math.round(seconds * 1000) : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+    
+    private static final class Group {
+        private final Set<String> agents = new HashSet<>();
+        private final List<String[]> rules = new ArrayList<>();
+        private long crawlDelayMs;
+    }
+    
+    private static final class Node {
+        private final Map<Character, Node> children = new HashMap<>(4);
+        // Узел после «*» шаблона: остаётся активным на любом символе
+        private boolean wildcard;
+        private Node star;
+        // Длина и действие самого сильного правила, оканчивающегося здесь; -1 — нет
+        private int prefixLength = -1;
+        private boolean prefixAllow;
+        // То же для правил с «$», которые действуют только в конце пути
+        private int endLength = -1;
+        private boolean endAllow;
+    }
 }
@@ -0,0 +1,15 @@
+package searchengine.services;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Найденная страница и её релевантность без загрузки сущности из БД
+ */
+@Getter
+@RequiredArgsConstructor
+public class ScoredPage {
+    private final int siteId;
+    private final int pageId;
+    private final double relevance;
+}
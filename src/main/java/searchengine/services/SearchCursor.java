@@ -0,0 +1,49 @@
+package searchengine.services;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import searchengine.exception.InvalidSearchCursorException;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+
+/**
+ * Позиция в выдаче для продолжения поиска: релевантность, сайт и страница
+ * последнего отданного результата и версия выдачи, по которой они посчитаны.
+ * Клиенту передаётся непрозрачной строкой.
+ */
+@Getter
+@RequiredArgsConstructor
+public class SearchCursor {
+    
+    private static final int BYTES = Double.BYTES + Integer.BYTES * 2 + Long.BYTES;
+    
+    private final ScoredPage last;
+    private final long version;
+    
+    public String encode() {
+        ByteBuffer buffer = ByteBuffer.allocate(BYTES)
+                .putDouble(last.getRelevance())
+                .putInt(last.getSiteId())
+                .putInt(last.getPageId())
+                .putLong(version);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+    
+    public static SearchCursor decode(String value) {
+        byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(value);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidSearchCursorException("Некорректный курсор поиска");
+        }
+        if (bytes.length != BYTES) {
+            throw new InvalidSearchCursorException("Некорректный курсор поиска");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        double relevance = buffer.getDouble();
+        int siteId = buffer.getInt();
+        int pageId = buffer.getInt();
+        return new SearchCursor(new ScoredPage(siteId, pageId, relevance), buffer.getLong());
+    }
+}
@@ -0,0 +1,97 @@
+package searchengine.services;
+
+import io.micrometer.core.instrument.*;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Метрики поиска: время каждого этапа, общее время запроса, размер множества
+ * кандидатов и число SQL-запросов на поисковый запрос, а также счётчики кэша
+ * результатов. Доступны через /actuator/prometheus.
+ */
+@Component
+public class SearchMetrics {
+    
+    public enum Stage {
+        /** Лемматизация запроса */
+        LEMMATIZE,
+        /** Поиск лемм запроса в словарях сайтов */
+        LEMMAS,
+        /** Пересечение списков вхождений */
+        INTERSECT,
+        /** Расчёт релевантности */
+        SCORE,
+        /** Слияние выдачи сайтов */
+        MERGE,
+        /** Загрузка текстов страниц */
+        TEXTS,
+        /** Построение сниппетов */
+        SNIPPETS
+    }
+    
+    private final MeterRegistry registry;
+    private final Map<Stage, Timer> stages = new EnumMap<>(Stage.class);
+    private final Map<String, Timer> latencies = new ConcurrentHashMap<>();
+    private final DistributionSummary candidates;
+    private final DistributionSummary queries;
+    private final Counter partialResponses;
+    
+    public SearchMetrics(MeterRegistry registry, SearchResultCache searchResultCache) {
+        this.registry = registry;
+        for (Stage stage : Stage.values()) {
+            stages.put(stage, Timer.builder("search.stage")
+                    .description("Время этапа поиска")
+                    .tag("stage", stage.name().toLowerCase(Locale.ROOT))
+                    .publishPercentileHistogram()
+                    .register(registry));
+        }
+        candidates = DistributionSummary.builder("search.candidates")
+                .description("Страницы самого редкого списка вхождений, проверенные на всех сайтах")
+                .publishPercentileHistogram()
+                .register(registry);
+        queries = DistributionSummary.builder("search.db.queries")
+                .description("SQL-запросы на один поисковый запрос")
+                .publishPercentileHistogram()
+                .register(registry);
+        partialResponses = Counter.builder("search.partial")
+                .description("Ответы без сайтов, не уложившихся в срок")
+                .register(registry);
+        FunctionCounter.builder("search.cache.hits", searchResultCache, SearchResultCache::getHits)
+                .register(registry);
+        FunctionCounter.builder("search.cache.misses", searchResultCache, SearchResultCache::getMisses)
+                .register(registry);
+        Gauge.builder("search.cache.size", searchResultCache, SearchResultCache::size)
+                .register(registry);
+    }
+    
+    public <T> T time(Stage stage, Supplier<T> action) {
+        return stages.get(stage).record(action);
+    }
+    
+    /**
+     * @param mode offset, cursor или stream
+     */
+    public void recordRequest(String mode, long nanos, int queryCount) {
+        latencies.computeIfAbsent(mode, m -> Timer.builder("search.latency")
+                        .description("Время поискового запроса")
+                        .tag("mode", m)
+                        .publishPercentileHistogram()
+                        .register(registry))
+                .record(nanos, TimeUnit.NANOSECONDS);
+        queries.record(queryCount);
+    }
+    
+    public void recordCandidates(long count) {
+        candidates.record(count);
+    }
+    
+    public void recordPartialResponse() {
+        partialResponses.increment();
+    }
+}
@@ -0,0 +1,186 @@
+package searchengine.services;
+
+import org.springframework.stereotype.Component;
+import searchengine.config.SearchSettings;
+import searchengine.dto.search.SearchResponse;
+import searchengine.model.SiteEntity;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Кэш ответов поиска. Ключ — отсортированный набор лемм запроса, сайт
+ * и окно выдачи, поэтому разные формулировки с одними леммами попадают
+ * в одну запись. Размер ограничен (вытесняются давно не запрошенные),
+ * записи живут не дольше cacheTtlSeconds и сбрасываются, как только
+ * меняется версия индекса любого из сайтов, по которым искали.
+ */
+@Component
+public class SearchResultCache {
+    
+    private final IndexVersions indexVersions;
+    private final long ttlNanos;
+    private final Map<Key, Entry> entries;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    
+    public SearchResultCache(SearchSettings searchSettings, IndexVersions indexVersions) {
+        this.indexVersions = indexVersions;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(searchSettings.getCacheTtlSeconds());
+        int maxSize = searchSettings.getCacheSize();
+        this.entries = new LinkedHashMap<>(Math.min(maxSize, 1024), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+    
+    public static Key key(Collection<String> lemmas, String siteUrl, int offset, int limit) {
+        List<String> sorted = new ArrayList<>(lemmas);
+        Collections.sort(sorted);
+        return new Key(sorted, siteUrl == null || siteUrl.isEmpty() ? null : siteUrl, offset, limit);
+    }
+    
+    /**
+     * Начинает снимок версий индекса; снимать нужно до выбора сайтов,
+     * а версии сайтов — до поиска по ним
+     */
+    public Versions snapshot() {
+        return new Versions(indexVersions.getSiteSetVersion());
+    }
+    
+    public SearchResponse get(Key key) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        if (entry != null && isValid(entry)) {
+            hits.increment();
+            return entry.response;
+        }
+        misses.increment();
+        if (entry != null) {
+            synchronized (this) {
+                entries.remove(key, entry);
+            }
+        }
+        return null;
+    }
+    
+    public void put(Key key, Versions versions, SearchResponse response) {
+        Entry entry = new Entry(response, versions.siteSetVersion, versions.siteIds, versions.siteVersions,
+                                System.nanoTime());
+        synchronized (this) {
+            entries.put(key, entry);
+        }
+    }
+    
+    public long getHits() {
+        return hits.sum();
+    }
+    
+    public long getMisses() {
+        return misses.sum();
+    }
+    
+    public double getHitRate() {
+        long total = getHits() + getMisses();
+        return total == 0 ? 0 : (double) getHits() / total;
+    }
+    
+    public synchronized int size() {
+        return entries.size();
+    }
+    
+    public synchronized void clear() {
+        entries.clear();
+    }
+    
+    private boolean isValid(Entry entry) {
+        if (System.nanoTime() - entry.createdAt >= ttlNanos) {
+            return false;
+        }
+        if (entry.siteSetVersion != indexVersions.getSiteSetVersion()) {
+            return false;
+        }
+        for (int i = 0; i < entry.siteIds.length; i++) {
+            if (entry.siteVersions[i] != indexVersions.getSiteVersion(entry.siteIds[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    public static final class Key {
+        private final List<String> lemmas;
+        private final String siteUrl;
+        private final int offset;
+        private final int limit;
+        
+        private Key(List<String> lemmas, String siteUrl, int offset, int limit) {
+            this.lemmas = lemmas;
+            this.siteUrl = siteUrl;
+            this.offset = offset;
+            this.limit = limit;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return offset == other.offset && limit == other.limit
+                    && lemmas.equals(other.lemmas) && Objects.equals(siteUrl, other.siteUrl);
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hash(lemmas, siteUrl, offset, limit);
+        }
+    }
+    
+    /**
+     * Версии индекса на момент начала поиска, по ним запись проверяется при чтении
+     */
+    public final class Versions {
+        private final long siteSetVersion;
+        private int[] siteIds = new int[0];
+        private long[] siteVersions = new long[0];
+        
+        private Versions(long siteSetVersion) {
+            this.siteSetVersion = siteSetVersion;
+        }
+        
+        public void captureSites(List<SiteEntity> sites) {
+            siteIds = new int[sites.size()];
+            siteVersions = new long[sites.size()];
+            for (int i = 0; i < sites.size(); i++) {
+                siteIds[i] = sites.get(i).getId();
+                siteVersions[i] = indexVersions.getSiteVersion(siteIds[i]);
+            }
+        }
+    }
+    
+    private static final class Entry {
+        private final SearchResponse response;
+        private final long siteSetVersion;
+        private final int[] siteIds;
+        private final long[] siteVersions;
+        private final long createdAt;
+        
+        private Entry(SearchResponse response, long siteSetVersion, int[] siteIds, long[] siteVersions,
+                      long createdAt) {
+            this.response = response;
+            this.siteSetVersion = siteSetVersion;
+            this.siteIds = siteIds;
+            this.siteVersions = siteVersions;
+            this.createdAt = createdAt;
+        }
+    }
+}
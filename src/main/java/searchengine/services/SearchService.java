@@ -1,15 +1,23 @@
 package searchengine.services;
 
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.jsoup.Jsoup;
 import org.springframework.stereotype.Service;
+import searchengine.config.SearchSettings;
 import searchengine.dto.search.*;
 import searchengine.exception.EmptySearchQueryException;
+import searchengine.exception.InvalidSearchCursorException;
 import searchengine.model.*;
 import searchengine.repository.*;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -17,31 +25,215 @@
 @RequiredArgsConstructor
 public class SearchService {
     
+    private static final int STREAM_BATCH_SIZE = 5;
+    
     private final SiteRepository siteRepository;
-    private final LemmaRepository lemmaRepository;
-    private final IndexRepository indexRepository;
     private final PageRepository pageRepository;
     private final LemmaService lemmaService;
+    private final LemmaDictionary lemmaDictionary;
+    private final InvertedIndex invertedIndex;
+    private final SnippetGenerator snippetGenerator;
+    private final SearchResultCache searchResultCache;
+    private final IndexVersions indexVersions;
+    private final SearchSettings searchSettings;
+    private final SearchMetrics searchMetrics;
+    
+    private ExecutorService siteSearchExecutor;
+    
+    @PostConstruct
+    public void startExecutor() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        siteSearchExecutor = new ThreadPoolExecutor(
+                searchSettings.getSiteThreads(), searchSettings.getSiteThreads(), 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(searchSettings.getSiteQueueCapacity()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "site-search-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+    
+    @PreDestroy
+    public void shutdownExecutor() {
+        siteSearchExecutor.shutdownNow();
+    }
     
     public SearchResponse search(String query, String siteUrl, int offset, int limit) {
+        return measure("offset", () -> searchByOffset(query, siteUrl, offset, limit));
+    }
+    
+    private SearchResponse searchByOffset(String query, String siteUrl, int offset, int limit) {
         log.info("Поисковый запрос: '{}', сайт: {}, offset: {}, limit: {}", query, siteUrl, offset, limit);
         
         validateQuery(query);
         
-        Map<String, Integer> queryLemmas = lemmaService.getLemmas(query);
+        Map<String, Integer> queryLemmas = lemmatize(query);
         log.debug("Извлечено {} лемм из запроса", queryLemmas.size());
         
         if (queryLemmas.isEmpty()) {
             return createEmptyResponse();
         }
         
+        SearchResultCache.Key key = SearchResultCache.key(queryLemmas.keySet(), siteUrl, offset, limit);
+        SearchResponse cached = searchResultCache.get(key);
+        if (cached != null) {
+            log.debug("Ответ взят из кэша результатов");
+            return cached;
+        }
+        
+        SearchResultCache.Versions versions = searchResultCache.snapshot();
         List<SiteEntity> sites = getSites(siteUrl);
         if (sites.isEmpty()) {
             return createEmptyResponse();
         }
+        versions.captureSites(sites);
         
-        List<SearchItem> results = performSearch(sites, queryLemmas);
-        return createPaginatedResponse(results, offset, limit);
+        RankedSearch ranked = rank(sites, queryLemmas, null, offset, limit, null);
+        SearchResponse response = createPaginatedResponse(createSearchItems(ranked, ranked.getPages()),
+                                                          ranked.getTotal());
+        if (ranked.isComplete()) {
+            searchResultCache.put(key, versions, response);
+        }
+        return response;
+    }
+    
+    /**
+     * Поиск с продолжением по курсору: на каждом сайте в куче держится
+     * только limit страниц, стоящих в выдаче после курсора, поэтому дальние
+     * части выдачи обходятся не дороже первой. Ответ содержит курсор
+     * следующей части.
+     *
+     * @param cursor курсор из предыдущего ответа или null для начала выдачи
+     */
+    public SearchResponse searchAfter(String query, String siteUrl, String cursor, int limit) {
+        return measure("cursor", () -> {
+            RankedSearch ranked = rankByCursor(query, siteUrl, cursor, limit);
+            SearchResponse response = createPaginatedResponse(createSearchItems(ranked, ranked.getPages()),
+                                                              ranked.getTotal());
+            response.setNextCursor(ranked.getNextCursor());
+            return response;
+        });
+    }
+    
+    /**
+     * Ранжирует часть выдачи после курсора, не строя сниппетов.
+     * Курсор, выданный по другой версии индекса или другому запросу,
+     * отклоняется: релевантности с тех пор могли измениться.
+     */
+    public RankedSearch rankAfter(String query, String siteUrl, String cursor, int limit) {
+        return measure("stream", () -> rankByCursor(query, siteUrl, cursor, limit));
+    }
+    
+    private RankedSearch rankByCursor(String query, String siteUrl, String cursor, int limit) {
+        log.info("Поисковый запрос: '{}', сайт: {}, курсор: {}, limit: {}", query, siteUrl, cursor, limit);
+        
+        validateQuery(query);
+        
+        Map<String, Integer> queryLemmas = lemmatize(query);
+        if (queryLemmas.isEmpty()) {
+            log.warn("Не удалось извлечь леммы из запроса");
+            return RankedSearch.empty(queryLemmas);
+        }
+        
+        List<SiteEntity> sites = getSites(siteUrl);
+        long version = resultVersion(sites, queryLemmas.keySet());
+        ScoredPage after = null;
+        if (cursor != null && !cursor.isEmpty()) {
+            SearchCursor decoded = SearchCursor.decode(cursor);
+            if (decoded.getVersion() != version) {
+                throw new InvalidSearchCursorException("Индекс изменился, начните поиск заново");
+            }
+            after = decoded.getLast();
+        }
+        if (sites.isEmpty()) {
+            return RankedSearch.empty(queryLemmas);
+        }
+        return rank(sites, queryLemmas, after, 0, limit, version);
+    }
+    
+    /**
+     * Загружает тексты и строит сниппеты небольшими порциями, передавая
+     * каждый результат, как только он готов
+     */
+    public void streamItems(RankedSearch ranked, Consumer<SearchItem> consumer) {
+        List<ScoredPage> pages = ranked.getPages();
+        for (int from = 0; from < pages.size(); from += STREAM_BATCH_SIZE) {
+            List<ScoredPage> batch = pages.subList(from, Math.min(from + STREAM_BATCH_SIZE, pages.size()));
+            createSearchItems(ranked, batch).forEach(consumer);
+        }
+    }
+    
+    /**
+     * Выполняет поиск, записывая его время и число SQL-запросов, в том числе
+     * сделанных потоками поиска по сайтам
+     *
+     * @param mode способ запроса для метки метрики
+     */
+    private <T> T measure(String mode, Supplier<T> search) {
+        long start = System.nanoTime();
+        AtomicInteger queries = QueryCounter.begin();
+        try {
+            return search.get();
+        } finally {
+            QueryCounter.end();
+            searchMetrics.recordRequest(mode, System.nanoTime() - start, queries.get());
+        }
+    }
+    
+    private Map<String, Integer> lemmatize(String query) {
+        return searchMetrics.time(SearchMetrics.Stage.LEMMATIZE, () -> lemmaService.getLemmas(query));
+    }
+    
+    /**
+     * @param after   последняя отданная страница или null
+     * @param version версия выдачи для курсора следующей части или null, если курсор не нужен
+     */
+    private RankedSearch rank(List<SiteEntity> sites, Map<String, Integer> queryLemmas, ScoredPage after,
+                              int offset, int limit, Long version) {
+        int topCount = (int) Math.min(Integer.MAX_VALUE, (long) offset + limit);
+        Bm25Scorer scorer = searchSettings.getScoring() == SearchSettings.Scoring.BM25
+                ? createScorer(sites, queryLemmas.keySet())
+                : null;
+        List<SiteRanking> rankings = rankSites(sites, queryLemmas, scorer, after, topCount);
+        
+        List<List<ScoredPage>> pages = new ArrayList<>(rankings.size());
+        int total = 0;
+        long candidates = 0;
+        for (SiteRanking ranking : rankings) {
+            pages.add(ranking.getPages());
+            total += ranking.getTotal();
+            candidates += ranking.getCandidates();
+        }
+        log.info("Найдено {} результатов", total);
+        searchMetrics.recordCandidates(candidates);
+        
+        boolean complete = rankings.size() == sites.size();
+        if (!complete) {
+            searchMetrics.recordPartialResponse();
+            log.warn("Частичный ответ: {} из {} сайтов не ответили за {} мс",
+                     sites.size() - rankings.size(), sites.size(), searchSettings.getDeadlineMs());
+        }
+        
+        List<ScoredPage> slice = searchMetrics.time(SearchMetrics.Stage.MERGE,
+                                                    () -> TopPages.merge(pages, offset, limit));
+        String nextCursor = version != null && limit > 0 && slice.size() == limit
+                ? new SearchCursor(slice.get(slice.size() - 1), version).encode()
+                : null;
+        return new RankedSearch(sites, queryLemmas, slice, total, complete, nextCursor);
+    }
+    
+    /**
+     * Версия выдачи: версии индекса сайтов поиска вместе с леммами запроса
+     * и моделью релевантности. Курсор действителен, пока она не изменилась.
+     */
+    private long resultVersion(List<SiteEntity> sites, Set<String> lemmas) {
+        long version = indexVersions.getSiteSetVersion();
+        for (SiteEntity site : sites) {
+            version = version * 31 + site.getId();
+            version = version * 31 + indexVersions.getSiteVersion(site.getId());
+        }
+        version = version * 31 + lemmas.hashCode();
+        return version * 31 + searchSettings.getScoring().ordinal();
     }
     
     private void validateQuery(String query) {
@@ -60,77 +252,155 @@ private SearchResponse createEmptyResponse() {
         return response;
     }
     
-    private List<SearchItem> performSearch(List<SiteEntity> sites, Map<String, Integer> queryLemmas) {
-        List<SearchItem> results = new ArrayList<>();
-        
+    /**
+     * Статистика BM25 по всем сайтам поиска. Частота леммы — число страниц
+     * с ней, то же, что lemma.frequency, но берётся из обратного индекса
+     * в памяти, чтобы не загружать словари лемм до параллельного поиска.
+     */
+    private Bm25Scorer createScorer(List<SiteEntity> sites, Set<String> lemmas) {
+        long pageCount = 0;
+        long totalLength = 0;
+        Map<String, Long> documentFrequencies = new HashMap<>();
         for (SiteEntity site : sites) {
-            log.debug("Поиск на сайте: {}", site.getUrl());
-            results.addAll(searchInSite(site, queryLemmas));
+            pageCount += invertedIndex.getPageCount(site.getId());
+            totalLength += invertedIndex.getTotalLength(site.getId());
+            for (String lemma : lemmas) {
+                documentFrequencies.merge(lemma, (long) invertedIndex.getDocumentFrequency(site.getId(), lemma),
+                                          Long::sum);
+            }
+        }
+        return new Bm25Scorer(searchSettings.getBm25K1(), searchSettings.getBm25B(), pageCount, totalLength,
+                              documentFrequencies);
+    }
+    
+    /**
+     * Ищет по сайтам параллельно на отдельном ограниченном пуле. Сайты,
+     * не уложившиеся в deadlineMs от начала поиска, в ответ не попадают.
+     */
+    private List<SiteRanking> rankSites(List<SiteEntity> sites, Map<String, Integer> queryLemmas,
+                                        Bm25Scorer scorer, ScoredPage after, int topCount) {
+        if (sites.size() == 1) {
+            return List.of(searchInSite(sites.get(0), queryLemmas, scorer, after, topCount));
         }
         
-        results.sort((a, b) -> Double.compare(b.getRelevance(), a.getRelevance()));
-        log.info("Найдено {} результатов", results.size());
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(searchSettings.getDeadlineMs());
+        List<Future<SiteRanking>> futures = new ArrayList<>(sites.size());
+        for (SiteEntity site : sites) {
+            try {
+                futures.add(siteSearchExecutor.submit(QueryCounter.propagate(
+                        () -> searchInSite(site, queryLemmas, scorer, after, topCount))));
+            } catch (RejectedExecutionException e) {
+                log.warn("Пул поиска переполнен, сайт {} пропущен", site.getUrl());
+            }
+        }
         
-        return results;
+        List<SiteRanking> rankings = new ArrayList<>(futures.size());
+        for (Future<SiteRanking> future : futures) {
+            try {
+                rankings.add(future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+            } catch (TimeoutException e) {
+                future.cancel(true);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                future.cancel(true);
+            } catch (ExecutionException e) {
+                log.error("Ошибка поиска по сайту: {}", e.getCause().getMessage(), e.getCause());
+            }
+        }
+        return rankings;
     }
     
-    private SearchResponse createPaginatedResponse(List<SearchItem> results, int offset, int limit) {
-        int toIndex = Math.min(offset + limit, results.size());
-        List<SearchItem> paginatedResults = results.subList(
-            Math.min(offset, results.size()), 
-            toIndex
-        );
-        
+    private SearchResponse createPaginatedResponse(List<SearchItem> items, int total) {
         SearchResponse response = new SearchResponse();
         response.setResult(true);
-        response.setCount(results.size());
-        response.setData(paginatedResults);
+        response.setCount(total);
+        response.setData(items);
         return response;
     }
     
+    /**
+     * Загружает сохранённые при индексации заголовок и текст и строит
+     * сниппеты только для страниц возвращаемой части выдачи
+     */
+    private List<SearchItem> createSearchItems(RankedSearch ranked, List<ScoredPage> slice) {
+        if (slice.isEmpty()) {
+            return new ArrayList<>();
+        }
+        
+        Map<Integer, SiteEntity> sitesById = ranked.getSites().stream()
+                .collect(Collectors.toMap(SiteEntity::getId, site -> site));
+        List<Integer> pageIds = slice.stream().map(ScoredPage::getPageId).collect(Collectors.toList());
+        Map<Integer, PageTextView> pages = searchMetrics.time(SearchMetrics.Stage.TEXTS,
+                () -> pageRepository.findTextsByIdIn(pageIds).stream()
+                        .collect(Collectors.toMap(PageTextView::getId, page -> page)));
+        
+        return searchMetrics.time(SearchMetrics.Stage.SNIPPETS, () -> {
+            List<SearchItem> items = new ArrayList<>(slice.size());
+            for (ScoredPage scoredPage : slice) {
+                PageTextView page = pages.get(scoredPage.getPageId());
+                if (page != null) {
+                    SiteEntity site = sitesById.get(scoredPage.getSiteId());
+                    items.add(createSearchItem(site, page, scoredPage.getRelevance(), ranked.getQueryLemmas()));
+                }
+            }
+            return items;
+        });
+    }
+    
     private List<SiteEntity> getSites(String siteUrl) {
         if (siteUrl != null && !siteUrl.isEmpty()) {
-            return siteRepository.findByUrl(siteUrl)
+            return siteRepository.findByUrlAndGenerationState(siteUrl, GenerationState.ACTIVE)
                     .map(Collections::singletonList)
                     .orElse(Collections.emptyList());
         }
-        return siteRepository.findAll();
+        return siteRepository.findByGenerationState(GenerationState.ACTIVE);
     }
     
-    private List<SearchItem> searchInSite(SiteEntity site, Map<String, Integer> queryLemmas) {
-        long totalPages = pageRepository.countBySite(site);
+    /**
+     * Ранжирует страницы сайта, не загружая их: возвращает topCount лучших
+     * пар (страница, релевантность) и общее количество найденных страниц
+     *
+     * @param scorer модель BM25 или null для относительной релевантности
+     * @param after  последняя отданная страница или null
+     */
+    private SiteRanking searchInSite(SiteEntity site, Map<String, Integer> queryLemmas, Bm25Scorer scorer,
+                                     ScoredPage after, int topCount) {
+        log.debug("Поиск на сайте: {}", site.getUrl());
+        // Число страниц из обратного индекса в памяти, как и для BM25, без COUNT по таблице page
+        long totalPages = invertedIndex.getPageCount(site.getId());
         if (totalPages == 0) {
             log.debug("На сайте {} нет страниц", site.getUrl());
-            return Collections.emptyList();
+            return SiteRanking.EMPTY;
         }
         
-        List<LemmaEntity> lemmas = filterAndSortLemmas(site, queryLemmas, totalPages);
+        List<LemmaDictionary.Lemma> lemmas = searchMetrics.time(SearchMetrics.Stage.LEMMAS,
+                () -> filterAndSortLemmas(site, queryLemmas, totalPages));
         if (lemmas.isEmpty()) {
-            return Collections.emptyList();
+            return SiteRanking.EMPTY;
         }
         
-        Set<PageEntity> pages = findPagesWithAllLemmas(lemmas);
-        if (pages.isEmpty()) {
-            return Collections.emptyList();
+        InvertedIndex.Matches matches = searchMetrics.time(SearchMetrics.Stage.INTERSECT,
+                () -> findPagesWithAllLemmas(site, lemmas));
+        if (matches.getSize() == 0) {
+            return new SiteRanking(Collections.emptyList(), 0, matches.getCandidates());
         }
         
-        Map<PageEntity, Double> relevanceMap = calculateRelevance(pages, lemmas);
-        
-        return relevanceMap.entrySet().stream()
-                .map(entry -> createSearchItem(entry.getKey(), entry.getValue(), queryLemmas))
-                .collect(Collectors.toList());
+        List<ScoredPage> pages = searchMetrics.time(SearchMetrics.Stage.SCORE, () -> scorer == null
+                ? calculateRelevance(site, matches, after, topCount)
+                : calculateBm25(site, matches, scorer, after, topCount));
+        return new SiteRanking(pages, matches.getSize(), matches.getCandidates());
     }
     
-    private List<LemmaEntity> filterAndSortLemmas(SiteEntity site, Map<String, Integer> queryLemmas, long totalPages) {
+    private List<LemmaDictionary.Lemma> filterAndSortLemmas(SiteEntity site, Map<String, Integer> queryLemmas,
+                                                            long totalPages) {
         int frequencyThreshold = (int) (totalPages * 0.8);
         log.debug("Порог частоты для сайта {}: {} (80% от {} страниц)", 
                   site.getUrl(), frequencyThreshold, totalPages);
         
-        List<LemmaEntity> lemmas = new ArrayList<>();
+        List<LemmaDictionary.Lemma> lemmas = new ArrayList<>();
         for (String lemmaText : queryLemmas.keySet()) {
-            Optional<LemmaEntity> lemmaOpt = lemmaRepository.findBySiteAndLemma(site, lemmaText);
-            if (lemmaOpt.isPresent()) {
-                LemmaEntity lemma = lemmaOpt.get();
+            LemmaDictionary.Lemma lemma = lemmaDictionary.find(site.getId(), lemmaText);
+            if (lemma != null) {
                 if (lemma.getFrequency() <= frequencyThreshold) {
                     lemmas.add(lemma);
                     log.debug("Лемма '{}' добавлена (частота: {})", lemmaText, lemma.getFrequency());
@@ -146,7 +416,7 @@ private List<LemmaEntity> filterAndSortLemmas(SiteEntity site, Map<String, Integ
             return Collections.emptyList();
         }
         
-        lemmas.sort(Comparator.comparingInt(LemmaEntity::getFrequency));
+        lemmas.sort(Comparator.comparingInt(LemmaDictionary.Lemma::getFrequency));
         log.debug("Леммы отсортированы по частоте: {}", 
                   lemmas.stream().map(l -> l.getLemma() + "(" + l.getFrequency() + ")")
                         .collect(Collectors.joining(", ")));
@@ -154,138 +424,119 @@ private List<LemmaEntity> filterAndSortLemmas(SiteEntity site, Map<String, Integ
         return lemmas;
     }
     
-    private Set<PageEntity> findPagesWithAllLemmas(List<LemmaEntity> lemmas) {
-        if (lemmas.isEmpty()) {
-            return Collections.emptySet();
+    private InvertedIndex.Matches findPagesWithAllLemmas(SiteEntity site, List<LemmaDictionary.Lemma> lemmas) {
+        List<String> lemmaTexts = lemmas.stream()
+                .map(LemmaDictionary.Lemma::getLemma)
+                .collect(Collectors.toList());
+        InvertedIndex.Matches matches = invertedIndex.findMatches(site.getId(), lemmaTexts);
+        log.debug("Пересечение списков вхождений на сайте {}: {} страниц", site.getUrl(), matches.getSize());
+        return matches;
+    }
+    
+    /**
+     * Абсолютная релевантность страницы — сумма рангов лемм запроса на ней,
+     * относительная — абсолютная, делённая на максимальную по сайту.
+     * Сортировка всех страниц не нужна: в куче остаются только topCount лучших.
+     */
+    private List<ScoredPage> calculateRelevance(SiteEntity site, InvertedIndex.Matches matches, ScoredPage after,
+                                                int topCount) {
+        int[] pageIds = matches.getPageIds();
+        int[][] ranks = matches.getRanks();
+        
+        int[] relevance = new int[matches.getSize()];
+        int maxRelevance = 0;
+        for (int[] termRanks : ranks) {
+            for (int i = 0; i < relevance.length; i++) {
+                relevance[i] += termRanks[i];
+            }
         }
-        
-        Set<PageEntity> pages = indexRepository.findByLemma(lemmas.get(0))
-                .stream()
-                .map(IndexEntity::getPage)
-                .collect(Collectors.toSet());
-        
-        for (int i = 1; i < lemmas.size(); i++) {
-            Set<PageEntity> currentPages = indexRepository.findByLemma(lemmas.get(i))
-                    .stream()
-                    .map(IndexEntity::getPage)
-                    .collect(Collectors.toSet());
-            pages.retainAll(currentPages);
+        for (int value : relevance) {
+            maxRelevance = Math.max(maxRelevance, value);
         }
         
-        return pages;
+        double divisor = maxRelevance == 0 ? 1.0 : maxRelevance;
+        TopPages topPages = new TopPages(topCount, after);
+        for (int i = 0; i < relevance.length; i++) {
+            topPages.offer(site.getId(), pageIds[i], relevance[i] / divisor);
+        }
+        return topPages.toList();
     }
     
-    private Map<PageEntity, Double> calculateRelevance(Set<PageEntity> pages, List<LemmaEntity> lemmas) {
-        Map<PageEntity, Double> relevanceMap = new HashMap<>();
-        
-        for (PageEntity page : pages) {
-            double absoluteRelevance = 0.0;
-            
-            for (LemmaEntity lemma : lemmas) {
-                List<IndexEntity> indexes = indexRepository.findByPageAndLemma(page, lemma);
-                for (IndexEntity index : indexes) {
-                    absoluteRelevance += index.getRank();
-                }
+    /**
+     * Релевантность BM25 с отсечением max-score: для каждой леммы известна
+     * верхняя граница её вклада, и страница перестаёт оцениваться, как только
+     * набранная сумма вместе с границами оставшихся лемм не превосходит
+     * худшую страницу в заполненной куче. Если не проходят даже границы всех
+     * лемм, остальные страницы сайта не оцениваются вовсе.
+     */
+    private List<ScoredPage> calculateBm25(SiteEntity site, InvertedIndex.Matches matches, Bm25Scorer scorer,
+                                           ScoredPage after, int topCount) {
+        int[] pageIds = matches.getPageIds();
+        int[][] ranks = matches.getRanks();
+        int terms = ranks.length;
+        
+        double[] idf = new double[terms];
+        double[] remainingBound = new double[terms + 1];
+        for (int t = terms - 1; t >= 0; t--) {
+            idf[t] = scorer.idf(matches.getLemmas().get(t));
+            int maxRank = 0;
+            for (int i = 0; i < matches.getSize(); i++) {
+                maxRank = Math.max(maxRank, ranks[t][i]);
             }
-            
-            relevanceMap.put(page, absoluteRelevance);
+            remainingBound[t] = remainingBound[t + 1] + scorer.maxTermScore(idf[t], maxRank);
         }
         
-        double maxRelevance = relevanceMap.values().stream()
-                .max(Double::compare)
-                .orElse(1.0);
-        
-        relevanceMap.replaceAll((page, value) -> value / maxRelevance);
-        
-        return relevanceMap;
+        TopPages topPages = new TopPages(topCount, after);
+        int scored = 0;
+        for (int i = 0; i < matches.getSize(); i++) {
+            double threshold = topPages.threshold();
+            if (remainingBound[0] <= threshold) {
+                break;
+            }
+            int length = invertedIndex.getPageLength(site.getId(), pageIds[i]);
+            double score = 0;
+            int t = 0;
+            while (t < terms && score + remainingBound[t] > threshold) {
+                score += scorer.termScore(idf[t], ranks[t][i], length);
+                t++;
+            }
+            if (t == terms) {
+                topPages.offer(site.getId(), pageIds[i], score);
+                scored++;
+            }
+        }
+        log.debug("BM25 на сайте {}: полностью оценено {} из {} страниц", site.getUrl(), scored, matches.getSize());
+        return topPages.toList();
     }
     
-    private SearchItem createSearchItem(PageEntity page, double relevance, Map<String, Integer> queryLemmas) {
+    private SearchItem createSearchItem(SiteEntity site, PageTextView page, double relevance,
+                                        Map<String, Integer> queryLemmas) {
         SearchItem item = new SearchItem();
-        item.setSite(page.getSite().getUrl());
-        item.setSiteName(page.getSite().getName());
+        item.setSite(site.getUrl());
+        item.setSiteName(site.getName());
         item.setUri(page.getPath());
         item.setRelevance(relevance);
         
-        String content = page.getContent();
-        org.jsoup.nodes.Document doc = Jsoup.parse(content);
-        
-        String title = doc.title();
-        if (title.isEmpty()) {
+        String title = page.getTitle();
+        if (title == null || title.isEmpty()) {
             title = "Без названия";
         }
         item.setTitle(title);
         
-        String text = doc.body().text();
-        String snippet = generateSnippet(text, queryLemmas);
+        String text = page.getText() == null ? "" : page.getText();
+        String snippet = snippetGenerator.generate(page.getId(), text, queryLemmas.keySet());
         item.setSnippet(snippet);
         
         return item;
     }
     
-    private String generateSnippet(String text, Map<String, Integer> queryLemmas) {
-        List<String> relevantSentences = findRelevantSentences(text, queryLemmas);
-        String snippet = String.join(". ", relevantSentences);
-        snippet = highlightQueryWords(snippet, queryLemmas);
-        
-        return truncateSnippet(snippet, 300);
-    }
-    
-    private List<String> findRelevantSentences(String text, Map<String, Integer> queryLemmas) {
-        String[] sentences = text.split("\\. ");
-        List<String> relevantSentences = new ArrayList<>();
-        
-        for (String sentence : sentences) {
-            if (containsQueryLemma(sentence, queryLemmas)) {
-                relevantSentences.add(sentence);
-                if (relevantSentences.size() >= 3) {
-                    break;
-                }
-            }
-        }
-        
-        if (relevantSentences.isEmpty() && sentences.length > 0) {
-            relevantSentences.add(sentences[0]);
-        }
-        
-        return relevantSentences;
-    }
-    
-    private boolean containsQueryLemma(String sentence, Map<String, Integer> queryLemmas) {
-        Map<String, Integer> sentenceLemmas = lemmaService.getLemmas(sentence);
-        return sentenceLemmas.keySet().stream()
-                .anyMatch(queryLemmas::containsKey);
-    }
-    
-    private String highlightQueryWords(String text, Map<String, Integer> queryLemmas) {
-        for (String lemma : queryLemmas.keySet()) {
-            text = highlightLemma(text, lemma);
-        }
-        return text;
-    }
-    
-    private String truncateSnippet(String snippet, int maxLength) {
-        if (snippet.length() > maxLength) {
-            return snippet.substring(0, maxLength - 3) + "...";
-        }
-        return snippet;
-    }
-    
-    private String highlightLemma(String text, String lemma) {
-        String[] words = text.split("\\s+");
-        StringBuilder result = new StringBuilder();
-        
-        for (String word : words) {
-            String cleanWord = word.replaceAll("[^а-яa-zА-ЯA-Z]", "").toLowerCase();
-            Map<String, Integer> wordLemmas = lemmaService.getLemmas(cleanWord);
-            
-            if (wordLemmas.containsKey(lemma)) {
-                result.append("<b>").append(word).append("</b> ");
-            } else {
-                result.append(word).append(" ");
-            }
-        }
-        
-        return result.toString().trim();
+    @Getter
+    @RequiredArgsConstructor
+    private static class SiteRanking {
+        static final SiteRanking EMPTY = new SiteRanking(Collections.emptyList(), 0, 0);
+        
+        private final List<ScoredPage> pages;
+        private final int total;
+        private final int candidates;
     }
 }
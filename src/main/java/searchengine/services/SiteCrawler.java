@@ -0,0 +1,678 @@
+package searchengine.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.jsoup.Connection;
+import org.jsoup.HttpStatusException;
+import org.jsoup.Jsoup;
+import org.jsoup.UnsupportedMimeTypeException;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import searchengine.config.CrawlerSettings;
+import searchengine.model.PageEntity;
+import searchengine.model.SiteEntity;
+import searchengine.repository.PageFetchView;
+import searchengine.repository.PageRepository;
+import searchengine.services.CrawlProgress.ErrorType;
+import searchengine.services.CrawlProgress.Stage;
+
+import java.net.SocketTimeoutException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Обход одного сайта конвейером из трёх стадий: загрузка, разбор и запись
+ * в БД. Адреса ожидают загрузки в очереди-фронтире; планировщик выдаёт их
+ * загрузчикам не чаще, чем раз в politenessDelayMs или в Crawl-delay из
+ * robots.txt, если он больше, поэтому потоки не спят между запросами.
+ * Стадии связаны ограниченными очередями: если разбор или запись не
+ * успевают, загрузчики ждут места в очереди, а планировщик перестаёт
+ * выдавать новые адреса.
+ * <p>
+ * Одновременных загрузок сайта не больше fetchWorkers, а всех сайтов
+ * вместе — не больше числа разрешений общего семафора globalFetchSlots.
+ * <p>
+ * При повторном обходе известные страницы запрашиваются условно
+ * (If-None-Match, If-Modified-Since) и сравниваются по хешу содержимого:
+ * неизменившиеся пропускаются, изменившиеся переиндексируются по разнице
+ * лемм.
+ * <p>
+ * Кроме главной страницы фронтир пополняется адресами из карт сайта,
+ * указанных в robots.txt; карты читает отдельный поток, пока идёт обход.
+ * Загрузку карты, как и страницы, разрешает планировщик, и ждущая карта
+ * получает очередь раньше адресов из фронтира.
+ * <p>
+ * Ссылки приводятся к каноническому виду {@link UrlCanonicalizer} до
+ * проверки, посещён ли адрес. Страница, указавшая в rel=canonical другой
+ * адрес сайта, не сохраняется — обходится указанный адрес. Страница,
+ * текст которой совпадает или почти совпадает с уже найденной
+ * ({@link NearDuplicates}), не лемматизируется и не сохраняется; ссылки
+ * таких страниц всё равно обходятся.
+ * <p>
+ * Ход обхода — загруженные страницы и байты, фронтир, время стадий
+ * и ошибки по типам — учитывается в {@link CrawlProgress}.
+ */
+@Slf4j
+public class SiteCrawler {
+    
+    private static final long IDLE_POLL_MS = 20;
+    private static final long STAGE_POLL_MS = 100;
+    private static final long STAGE_SHUTDOWN_TIMEOUT_SECONDS = 30;
+    
+    private final SiteEntity site;
+    private final CrawlerSettings settings;
+    private final PageRepository pageRepository;
+    private final PageIndexer pageIndexer;
+    private final SiteStatistics siteStatistics;
+    private final RobotsTxtParser robotsTxtParser;
+    private final BooleanSupplier running;
+    private final Semaphore globalFetchSlots;
+    // Страницы сайта из прошлого обхода по пути; пусто при полной индексации
+    private final Map<String, PageFetchView> knownPages;
+    private final CrawlProgress progress;
+    
+    private final UrlCanonicalizer canonicalizer;
+    // Канонический адрес главной страницы и он же без косой черты в конце
+    private final String startUrl;
+    private final String siteRoot;
+    // Интервал между выдачей адресов с учётом Crawl-delay
+    private final long politenessDelayMs;
+    private final VisitedUrlSet visitedUrls;
+    // null, если поиск дубликатов отключён
+    private final NearDuplicates duplicates;
+    private final Queue<String> frontier = new ConcurrentLinkedQueue<>();
+    // Адреса, добавленные во фронтир и ещё не прошедшие конвейер до конца
+    private final AtomicInteger pending = new AtomicInteger();
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+    // Пути, которые по-прежнему есть на сайте: загружены или недоступны временно
+    private final Set<String> alivePaths = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger newPages = new AtomicInteger();
+    private final AtomicInteger changedPages = new AtomicInteger();
+    private final AtomicInteger unchangedPages = new AtomicInteger();
+    private final AtomicInteger duplicatePages = new AtomicInteger();
+    private final AtomicInteger aliasPages = new AtomicInteger();
+    
+    private final Semaphore fetchSlots;
+    // Очередь загрузки карты сайта: ждёт ли её поток карт и выдана ли она
+    private final Object sitemapTurn = new Object();
+    private boolean sitemapWaiting;
+    private boolean sitemapGranted;
+    private final BlockingQueue<FetchedPage> parseQueue;
+    private final BlockingQueue<ParsedPage> persistQueue;
+    
+    private ScheduledExecutorService scheduler;
+    private ExecutorService fetchers;
+    private ExecutorService stageWorkers;
+    private ExecutorService sitemapReader;
+    
+    public SiteCrawler(SiteEntity site, CrawlerSettings settings,
+                       PageRepository pageRepository, PageIndexer pageIndexer,
+                       SiteStatistics siteStatistics, RobotsTxtParser robotsTxtParser,
+                       BooleanSupplier running, Semaphore globalFetchSlots,
+                       Map<String, PageFetchView> knownPages, CrawlProgress progress) {
+        this.site = site;
+        this.settings = settings;
+        this.pageRepository = pageRepository;
+        this.pageIndexer = pageIndexer;
+        this.siteStatistics = siteStatistics;
+        this.robotsTxtParser = robotsTxtParser;
+        this.running = running;
+        this.globalFetchSlots = globalFetchSlots;
+        this.knownPages = knownPages;
+        this.progress = progress;
+        this.canonicalizer = new UrlCanonicalizer(settings);
+        String canonicalStart = canonicalizer.canonicalize(site.getUrl());
+        this.startUrl = canonicalStart != null ? canonicalStart : site.getUrl();
+        this.siteRoot = startUrl.replaceAll("/+$", "");
+        long crawlDelayMs = Math.min(robotsTxtParser.getCrawlDelayMs(), settings.getMaxCrawlDelayMs());
+        this.politenessDelayMs = Math.max(settings.getPolitenessDelayMs(), crawlDelayMs);
+        this.duplicates = settings.getDuplicateMaxDistance() >= 0
+                ? new NearDuplicates(settings.getDuplicateMaxDistance())
+                : null;
+        this.visitedUrls = new VisitedUrlSet(settings.getVisitedMaxFingerprints(),
+                                             settings.getVisitedBloomBits());
+        this.fetchSlots = new Semaphore(settings.getFetchWorkers());
+        this.parseQueue = new ArrayBlockingQueue<>(settings.getStageQueueCapacity());
+        this.persistQueue = new ArrayBlockingQueue<>(settings.getStageQueueCapacity());
+    }
+    
+    /**
+     * Обходит сайт, начиная с его главной страницы, и возвращает управление,
+     * когда все найденные страницы записаны или обход остановлен
+     */
+    public void crawl() throws InterruptedException {
+        String name = "crawler-" + site.getId();
+        scheduler = Executors.newSingleThreadScheduledExecutor(threads(name + "-scheduler"));
+        fetchers = Executors.newFixedThreadPool(settings.getFetchWorkers(), threads(name + "-fetch"));
+        stageWorkers = Executors.newFixedThreadPool(settings.getParseWorkers() + settings.getPersistWorkers(),
+                                                    threads(name + "-stage"));
+        try {
+            for (int i = 0; i < settings.getParseWorkers(); i++) {
+                stageWorkers.execute(() -> runStage(parseQueue, ErrorType.PARSE, this::parse));
+            }
+            for (int i = 0; i < settings.getPersistWorkers(); i++) {
+                stageWorkers.execute(progress.bind(() -> runStage(persistQueue, ErrorType.PERSIST, parsed -> {
+                    persist(parsed);
+                    return false;
+                })));
+            }
+            
+            enqueue(startUrl);
+            if (!robotsTxtParser.getSitemaps().isEmpty() && settings.getSitemapMaxFiles() > 0) {
+                // Обход не завершится, пока карты сайта не прочитаны
+                pending.incrementAndGet();
+                sitemapReader = Executors.newSingleThreadExecutor(threads(name + "-sitemap"));
+                sitemapReader.execute(this::readSitemaps);
+            }
+            if (politenessDelayMs > settings.getPolitenessDelayMs()) {
+                log.info("Сайт {} задаёт Crawl-delay: запросы не чаще раза в {} мс",
+                         site.getUrl(), politenessDelayMs);
+            }
+            scheduler.execute(this::dispatch);
+            completion.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            shutdown();
+            progress.finish();
+        }
+        log.info("Обход сайта {} завершён: посещено {} адресов, новых страниц {}, изменённых {}, "
+                         + "без изменений {}, дубликатов {}, с другим каноническим адресом {}",
+                 site.getUrl(), visitedUrls.size(), newPages.get(), changedPages.get(), unchangedPages.get(),
+                 duplicatePages.get(), aliasPages.get());
+    }
+    
+    /**
+     * Пути страниц, найденных на сайте при этом обходе. Известная страница,
+     * которой здесь нет, удалена с сайта или на неё больше нет ссылок.
+     */
+    public Set<String> getAlivePaths() {
+        return Collections.unmodifiableSet(alivePaths);
+    }
+    
+    /**
+     * Прерывает обход: новые адреса не выдаются, страницы, уже попавшие
+     * в запись, дописываются, остальные отбрасываются
+     */
+    public void stop() {
+        completion.complete(null);
+    }
+    
+    /**
+     * Загрузчики прерываются сразу, а потоки стадий дописывают текущую
+     * страницу и выходят из цикла сами, чтобы не обрывать транзакции
+     */
+    private void shutdown() throws InterruptedException {
+        scheduler.shutdownNow();
+        fetchers.shutdownNow();
+        if (sitemapReader != null) {
+            sitemapReader.shutdownNow();
+        }
+        stageWorkers.shutdown();
+        if (!stageWorkers.awaitTermination(STAGE_SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            log.warn("Потоки обхода сайта {} не завершились за {} с",
+                     site.getUrl(), STAGE_SHUTDOWN_TIMEOUT_SECONDS);
+            stageWorkers.shutdownNow();
+        }
+    }
+    
+    /**
+     * Выдаёт загрузчику следующий адрес и планирует себя снова: через
+     * politenessDelayMs после выданного адреса или чуть позже, если
+     * фронтир пуст или исчерпан лимит загрузок сайта либо общий
+     */
+    private void dispatch() {
+        if (completion.isDone()) {
+            return;
+        }
+        if (!running.getAsBoolean()) {
+            stop();
+            return;
+        }
+        
+        long delay = IDLE_POLL_MS;
+        if (grantSitemapTurn()) {
+            delay = politenessDelayMs;
+        } else if (!frontier.isEmpty() && acquireFetchSlot()) {
+            String url = frontier.poll();
+            if (url == null) {
+                releaseFetchSlot();
+            } else {
+                progress.dequeued();
+                fetchers.execute(() -> fetch(url));
+                delay = politenessDelayMs;
+            }
+        }
+        scheduler.schedule(this::dispatch, delay, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Общее разрешение освобождается сразу после загрузки, а разрешение
+     * сайта — только когда ответ передан разбору, чтобы при заторе
+     * в конвейере сайт не брал новые адреса. Для уже известных страниц
+     * запрос условный: сервер может ответить 304 без тела.
+     */
+    private void fetch(String url) {
+        String path = getPath(url);
+        PageFetchView known = knownPages.get(path);
+        boolean globalSlotReleased = false;
+        boolean handedOver = false;
+        long start = System.nanoTime();
+        try {
+            Connection connection = Jsoup.connect(url)
+                    .userAgent(settings.getUserAgent())
+                    .timeout(settings.getFetchTimeoutMs());
+            if (known != null && known.getEtag() != null) {
+                connection.header("If-None-Match", known.getEtag());
+            }
+            if (known != null && known.getLastModified() != null) {
+                connection.header("If-Modified-Since", known.getLastModified());
+            }
+            Connection.Response response = connection.execute().bufferUp();
+            globalFetchSlots.release();
+            globalSlotReleased = true;
+            progress.recordStage(Stage.FETCH, System.nanoTime() - start);
+            progress.recordFetched(response.bodyAsBytes().length);
+            handedOver = handOver(parseQueue, new FetchedPage(url, path, known, response));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (HttpStatusException e) {
+            if (e.getStatusCode() != 404 && e.getStatusCode() != 410) {
+                alivePaths.add(path);
+            }
+            progress.recordError(e.getStatusCode() >= 500 ? ErrorType.HTTP_SERVER : ErrorType.HTTP_CLIENT);
+            log.debug("Не удалось загрузить {}: код {}", url, e.getStatusCode());
+        } catch (Exception e) {
+            // Временная ошибка не означает, что страница удалена с сайта
+            alivePaths.add(path);
+            progress.recordError(fetchErrorType(e));
+            log.debug("Не удалось загрузить {}: {}", url, e.getMessage());
+        } finally {
+            if (!globalSlotReleased) {
+                globalFetchSlots.release();
+            }
+            fetchSlots.release();
+            if (!handedOver) {
+                done();
+            }
+        }
+    }
+    
+    /**
+     * Добавляет во фронтир адреса сайта из карт, указанных в robots.txt
+     */
+    private void readSitemaps() {
+        try {
+            SitemapReader.FetchTurns turns = new SitemapReader.FetchTurns() {
+                @Override
+                public void acquire() throws InterruptedException {
+                    awaitSitemapTurn();
+                }
+                
+                @Override
+                public void release() {
+                    releaseFetchSlot();
+                }
+            };
+            SitemapReader reader = new SitemapReader(settings, turns,
+                                                     () -> running.getAsBoolean() && !completion.isDone());
+            int urls = reader.read(robotsTxtParser.getSitemaps(), this::enqueueLink);
+            log.info("Из карт сайта {} прочитано {} адресов", site.getUrl(), urls);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("Ошибка чтения карт сайта {}: {}", site.getUrl(), e.getMessage(), e);
+        } finally {
+            done();
+        }
+    }
+    
+    /**
+     * Разбирает страницу и добавляет её ссылки во фронтир. Страница, не
+     * изменившаяся с прошлого обхода (ответ 304 или то же содержимое),
+     * дальше не передаётся; для 304 ссылки берутся из сохранённого HTML.
+     * Не передаются и страницы с другим каноническим адресом и дубликаты;
+     * их пути не считаются живыми, так что сохранённые раньше удалятся.
+     * Текст запоминается до обхода ссылок, чтобы дубликат, найденный по
+     * ссылке со страницы, не опередил её. Если разобрать страницу не
+     * удалось, её путь считается живым, как при временной ошибке загрузки:
+     * сервер её отдал, и сохранённая страница не должна удалиться.
+     */
+    private boolean parse(FetchedPage fetched) throws Exception {
+        try {
+            return parseFetched(fetched);
+        } catch (Exception e) {
+            alivePaths.add(fetched.path);
+            throw e;
+        }
+    }
+    
+    private boolean parseFetched(FetchedPage fetched) throws Exception {
+        long start = System.nanoTime();
+        Connection.Response response = fetched.response;
+        PageFetchView known = fetched.known;
+        
+        Document doc;
+        String contentHash = null;
+        boolean unchanged;
+        if (response.statusCode() == 304 && known != null) {
+            doc = Jsoup.parse(pageRepository.findContentById(known.getId()), fetched.url);
+            unchanged = true;
+        } else {
+            contentHash = PageContentHash.of(response.bodyAsBytes());
+            doc = response.parse();
+            unchanged = known != null && contentHash.equals(known.getContentHash());
+        }
+        String text = PageTextExtractor.text(doc);
+        String canonical = canonicalLink(doc);
+        boolean alias = canonical != null && !canonical.equals(fetched.url);
+        // Неизменившаяся страница уже в индексе: её текст только запоминается
+        boolean duplicate = !alias && duplicates != null && !duplicates.add(text) && !unchanged;
+        
+        for (Element link : doc.select("a[href]")) {
+            enqueueLink(link.absUrl("href"));
+        }
+        
+        progress.recordStage(Stage.PARSE, System.nanoTime() - start);
+        
+        if (alias) {
+            aliasPages.incrementAndGet();
+            enqueue(canonical);
+            log.debug("Страница {} указывает канонический адрес {}", fetched.url, canonical);
+            return false;
+        }
+        if (duplicate) {
+            duplicatePages.incrementAndGet();
+            log.debug("Страница {} повторяет текст уже найденной", fetched.url);
+            return false;
+        }
+        alivePaths.add(fetched.path);
+        if (unchanged) {
+            unchangedPages.incrementAndGet();
+            refreshValidators(known, response);
+            return false;
+        }
+        return handOver(persistQueue, new ParsedPage(fetched, doc, text, contentHash));
+    }
+    
+    private void persist(ParsedPage parsed) {
+        long start = System.nanoTime();
+        FetchedPage fetched = parsed.fetched;
+        int code = fetched.response.statusCode();
+        PageEntity page = fetched.known == null
+                ? new PageEntity()
+                : pageRepository.findById(fetched.known.getId()).orElseGet(PageEntity::new);
+        boolean isNew = page.getId() == null;
+        
+        page.setSite(site);
+        page.setPath(fetched.path);
+        page.setCode(code);
+        page.setContent(parsed.doc.html());
+        page.setEtag(fetched.response.header("ETag"));
+        page.setLastModified(fetched.response.header("Last-Modified"));
+        page.setContentHash(parsed.contentHash);
+        PageTextExtractor.fill(page, parsed.doc, parsed.text);
+        page = pageRepository.save(page);
+        if (isNew) {
+            siteStatistics.pageAdded(site.getId());
+        }
+        
+        if (code == 200) {
+            if (isNew) {
+                newPages.incrementAndGet();
+                pageIndexer.indexPageContent(page, parsed.doc, site);
+            } else {
+                changedPages.incrementAndGet();
+                pageIndexer.reindexPageContent(page, parsed.doc, site);
+            }
+        }
+        progress.recordSaved();
+        progress.recordStage(Stage.PERSIST, System.nanoTime() - start);
+    }
+    
+    /**
+     * Запоминает новые ETag и Last-Modified неизменившейся страницы,
+     * чтобы следующий обход получил 304
+     */
+    private void refreshValidators(PageFetchView known, Connection.Response response) {
+        if (response.statusCode() == 304) {
+            return;
+        }
+        String etag = response.header("ETag");
+        String lastModified = response.header("Last-Modified");
+        if (!Objects.equals(etag, known.getEtag())
+                || !Objects.equals(lastModified, known.getLastModified())) {
+            pageRepository.updateValidators(known.getId(), etag, lastModified);
+        }
+    }
+    
+    /**
+     * Цикл потока стадии: берёт элементы из очереди, пока обход не завершён.
+     * Обработчик возвращает true, если передал элемент следующей стадии;
+     * иначе элемент считается прошедшим конвейер. Ошибка обработки
+     * учитывается как ошибка типа errorType и пишется в лог, обход
+     * продолжается.
+     */
+    private <T extends StageItem> void runStage(BlockingQueue<T> queue, ErrorType errorType,
+                                                StageHandler<T> handler) {
+        while (!completion.isDone()) {
+            T item;
+            try {
+                item = queue.poll(STAGE_POLL_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (item == null) {
+                continue;
+            }
+            if (!running.getAsBoolean()) {
+                stop();
+                return;
+            }
+            
+            boolean handedOver = false;
+            try {
+                handedOver = handler.handle(item);
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                progress.recordError(errorType);
+                log.warn("Ошибка обработки {}: {}", item.url(), e.getMessage(), e);
+            } finally {
+                if (!handedOver) {
+                    done();
+                }
+            }
+        }
+    }
+    
+    /**
+     * Кладёт элемент в очередь следующей стадии, ожидая места, пока обход
+     * не остановлен
+     *
+     * @return false, если обход остановлен раньше, чем освободилось место
+     */
+    private <T> boolean handOver(BlockingQueue<T> queue, T item) throws InterruptedException {
+        while (!queue.offer(item, STAGE_POLL_MS, TimeUnit.MILLISECONDS)) {
+            if (completion.isDone()) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static ErrorType fetchErrorType(Exception e) {
+        if (e instanceof SocketTimeoutException) {
+            return ErrorType.TIMEOUT;
+        }
+        if (e instanceof UnsupportedMimeTypeException) {
+            return ErrorType.UNSUPPORTED_CONTENT;
+        }
+        return ErrorType.NETWORK;
+    }
+    
+    private boolean acquireFetchSlot() {
+        if (!fetchSlots.tryAcquire()) {
+            return false;
+        }
+        if (!globalFetchSlots.tryAcquire()) {
+            fetchSlots.release();
+            return false;
+        }
+        return true;
+    }
+    
+    private void releaseFetchSlot() {
+        globalFetchSlots.release();
+        fetchSlots.release();
+    }
+    
+    /**
+     * Ждёт, пока планировщик выдаст потоку карт очередь загрузки вместе
+     * с разрешениями сайта и общим. Если поток прерван, когда очередь уже
+     * выдана, разрешения возвращаются.
+     */
+    private void awaitSitemapTurn() throws InterruptedException {
+        synchronized (sitemapTurn) {
+            sitemapWaiting = true;
+            try {
+                while (!sitemapGranted) {
+                    sitemapTurn.wait();
+                }
+            } catch (InterruptedException e) {
+                sitemapWaiting = false;
+                if (sitemapGranted) {
+                    sitemapGranted = false;
+                    releaseFetchSlot();
+                }
+                throw e;
+            }
+            sitemapGranted = false;
+        }
+    }
+    
+    /**
+     * Выдаёт очередь ждущему потоку карт, если есть свободные разрешения
+     */
+    private boolean grantSitemapTurn() {
+        synchronized (sitemapTurn) {
+            if (!sitemapWaiting || !acquireFetchSlot()) {
+                return false;
+            }
+            sitemapWaiting = false;
+            sitemapGranted = true;
+            sitemapTurn.notifyAll();
+            return true;
+        }
+    }
+    
+    /**
+     * Канонический адрес из rel=canonical, если он ведёт на этот сайт
+     */
+    private String canonicalLink(Document doc) {
+        if (!settings.isFollowCanonicalLink()) {
+            return null;
+        }
+        Element link = doc.selectFirst("link[rel=canonical][href]");
+        if (link == null) {
+            return null;
+        }
+        String canonical = canonicalizer.canonicalize(link.absUrl("href"));
+        return canonical != null && isValidUrl(canonical) ? canonical : null;
+    }
+    
+    private void enqueueLink(String url) {
+        String canonical = canonicalizer.canonicalize(url);
+        if (canonical != null && isValidUrl(canonical)) {
+            enqueue(canonical);
+        }
+    }
+    
+    private void enqueue(String url) {
+        if (visitedUrls.add(url)) {
+            pending.incrementAndGet();
+            progress.enqueued();
+            frontier.add(url);
+        }
+    }
+    
+    private void done() {
+        if (pending.decrementAndGet() == 0) {
+            completion.complete(null);
+        }
+    }
+    
+    /**
+     * @param url канонический адрес страницы сайта
+     */
+    private String getPath(String url) {
+        String path = url.substring(siteRoot.length());
+        return path.isEmpty() ? "/" : path;
+    }
+    
+    /**
+     * @param url канонический адрес
+     */
+    private boolean isValidUrl(String url) {
+        return (url.equals(siteRoot) || url.startsWith(siteRoot + "/"))
+                && !url.matches(".*\\.(jpg|jpeg|png|gif|pdf|zip)$")
+                && robotsTxtParser.isAllowed(url);
+    }
+    
+    private static ThreadFactory threads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+    
+    @FunctionalInterface
+    private interface StageHandler<T> {
+        boolean handle(T item) throws Exception;
+    }
+    
+    private interface StageItem {
+        String url();
+    }
+    
+    private static final class FetchedPage implements StageItem {
+        private final String url;
+        private final String path;
+        private final PageFetchView known;
+        private final Connection.Response response;
+        
+        FetchedPage(String url, String path, PageFetchView known, Connection.Response response) {
+            this.url = url;
+            this.path = path;
+            this.known = known;
+            this.response = response;
+        }
+        
+        @Override
+        public String url() {
+            return url;
+        }
+    }
+    
+    private static final class ParsedPage implements StageItem {
+        private final FetchedPage fetched;
+        private final Document doc;
+        private final String text;
+        private final String contentHash;
+        
+        ParsedPage(FetchedPage fetched, Document doc, String text, String contentHash) {
+            this.fetched = fetched;
+            this.doc = doc;
+            this.text = text;
+            this.contentHash = contentHash;
+        }
+        
+        @Override
+        public String url() {
+            return fetched.url;
+        }
+    }
+}
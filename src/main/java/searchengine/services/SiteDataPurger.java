@@ -0,0 +1,125 @@
+package searchengine.services;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import searchengine.repository.*;
+
+import java.util.*;
+
+/**
+ * Удаляет данные сайтов и отдельных страниц множественными запросами:
+ * по одному DELETE на таблицу вместо загрузки и удаления каждой сущности,
+ * частоты лемм уменьшаются одним UPDATE. Вся операция выполняется
+ * в одной транзакции, время каждого шага пишется в лог.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SiteDataPurger {
+    
+    private static final int PAGE_CHUNK_SIZE = 1000;
+    private static final int LEMMA_CHUNK_SIZE = 1000;
+    
+    private final SiteRepository siteRepository;
+    private final PageRepository pageRepository;
+    private final LemmaRepository lemmaRepository;
+    private final IndexRepository indexRepository;
+    private final IndexJdbcRepository indexJdbcRepository;
+    private final InvertedIndex invertedIndex;
+    private final IndexVersions indexVersions;
+    private final LemmaDictionary lemmaDictionary;
+    private final SiteStatistics siteStatistics;
+    
+    /**
+     * Удаляет сайты со всеми страницами, леммами и индексами. Обратный
+     * индекс в памяти не трогает: сайты к этому моменту уже исключены из поиска.
+     */
+    @Transactional
+    public void purgeSites(Collection<Integer> siteIds) {
+        if (siteIds.isEmpty()) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        int indexes = indexRepository.deleteBySiteIdIn(siteIds);
+        long indexesDone = System.currentTimeMillis();
+        int lemmas = lemmaRepository.deleteBySiteIdIn(siteIds);
+        long lemmasDone = System.currentTimeMillis();
+        int pages = pageRepository.deleteBySiteIdIn(siteIds);
+        siteRepository.deleteAllByIdInBatch(siteIds);
+        siteIds.forEach(lemmaDictionary::evict);
+        siteStatistics.sitesRemoved(siteIds);
+        long done = System.currentTimeMillis();
+        log.info("Удалены данные сайтов {} за {} мс: {} индексов ({} мс), {} лемм ({} мс), {} страниц ({} мс)",
+                 siteIds, done - start, indexes, indexesDone - start, lemmas, lemmasDone - indexesDone,
+                 pages, done - lemmasDone);
+    }
+    
+    /**
+     * Удаляет страницы сайта вместе со строками индекса, уменьшает частоты
+     * их лемм и удаляет леммы, не встречающиеся больше ни на одной странице
+     */
+    @Transactional
+    public void purgePages(int siteId, Collection<Integer> pageIds) {
+        if (pageIds.isEmpty()) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        List<Integer> ids = new ArrayList<>(pageIds);
+        int indexes = 0;
+        int lemmas = 0;
+        // Леммы, частоты которых уменьшились: только среди них могут быть неиспользуемые
+        Set<Integer> releasedIds = new HashSet<>();
+        for (int from = 0; from < ids.size(); from += PAGE_CHUNK_SIZE) {
+            List<Integer> chunk = ids.subList(from, Math.min(from + PAGE_CHUNK_SIZE, ids.size()));
+            releasedIds.addAll(removeFromMemory(siteId, chunk));
+            lemmas += indexJdbcRepository.isSupported()
+                    ? indexJdbcRepository.releaseLemmasOfPages(chunk)
+                    : lemmaRepository.releaseByPageIdIn(chunk);
+            indexes += indexRepository.deleteByPageIdIn(chunk);
+            pageRepository.deleteAllByIdInBatch(chunk);
+        }
+        indexVersions.bumpSite(siteId);
+        siteStatistics.pagesRemoved(siteId, ids.size());
+        long released = System.currentTimeMillis();
+        int unused = deleteUnused(new ArrayList<>(releasedIds));
+        long done = System.currentTimeMillis();
+        log.info("Удалено {} страниц сайта {} за {} мс: {} индексов, частоты {} лемм уменьшены, " +
+                 "{} лемм удалено ({} мс)", ids.size(), siteId, done - start, indexes, lemmas, unused,
+                 done - released);
+    }
+    
+    /**
+     * Убирает страницы из обратного индекса и словаря лемм в памяти;
+     * оба применяют изменения после коммита транзакции
+     *
+     * @return id лемм удаляемых страниц
+     */
+    private Set<Integer> removeFromMemory(int siteId, List<Integer> pageIds) {
+        Map<Integer, List<String>> lemmasByPage = new HashMap<>();
+        Map<String, Integer> released = new HashMap<>();
+        Set<Integer> lemmaIds = new HashSet<>();
+        for (PostingView posting : indexRepository.findPostingsByPageIdIn(pageIds)) {
+            lemmasByPage.computeIfAbsent(posting.getPageId(), id -> new ArrayList<>()).add(posting.getLemma());
+            released.merge(posting.getLemma(), 1, Integer::sum);
+            lemmaIds.add(posting.getLemmaId());
+        }
+        lemmasByPage.forEach((pageId, lemmas) -> invertedIndex.deletePage(siteId, pageId, lemmas));
+        lemmaDictionary.releaseOccurrences(siteId, released);
+        return lemmaIds;
+    }
+    
+    /**
+     * Удаляет леммы с нулевой частотой среди указанных, не просматривая
+     * остальные леммы сайта
+     */
+    private int deleteUnused(List<Integer> lemmaIds) {
+        int deleted = 0;
+        for (int from = 0; from < lemmaIds.size(); from += LEMMA_CHUNK_SIZE) {
+            List<Integer> chunk = lemmaIds.subList(from, Math.min(from + LEMMA_CHUNK_SIZE, lemmaIds.size()));
+            deleted += lemmaRepository.deleteUnusedByIdIn(chunk);
+        }
+        return deleted;
+    }
+}
@@ -0,0 +1,216 @@
+package searchengine.services;
+
+import java.util.*;
+
+/**
+ * Словарь лемм одного сайта: лемма → id и частота. Основная часть хранится
+ * компактно — тексты всех лемм в одном массиве символов в порядке
+ * сортировки, рядом массивы смещений, id и частот, поиск двоичный. Новые
+ * леммы сначала попадают в небольшую хеш-таблицу и вливаются в основную
+ * часть, когда их становится много. Леммы с нулевой частотой считаются
+ * отсутствующими и выбрасываются при слиянии.
+ */
+class SiteLemmas {
+    
+    private static final int MIN_MERGE_THRESHOLD = 1024;
+    
+    private char[] chars;
+    private int[] offsets;
+    private int[] ids;
+    private int[] frequencies;
+    private int size;
+    // Леммы с ненулевой частотой в обеих частях
+    private int live;
+    private final Map<String, int[]> added = new HashMap<>();
+    
+    /**
+     * @param lemmas леммы в любом порядке, ids и frequencies — в том же
+     */
+    SiteLemmas(List<String> lemmas, int[] ids, int[] frequencies) {
+        Integer[] order = new Integer[lemmas.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparing(lemmas::get));
+        
+        List<String> sorted = new ArrayList<>(order.length);
+        int[] sortedIds = new int[order.length];
+        int[] sortedFrequencies = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            sorted.add(lemmas.get(order[i]));
+            sortedIds[i] = ids[order[i]];
+            sortedFrequencies[i] = frequencies[order[i]];
+        }
+        build(sorted, sortedIds, sortedFrequencies);
+    }
+    
+    /**
+     * @return пара {id, частота} или null, если леммы на сайте нет
+     */
+    synchronized int[] find(String lemma) {
+        int position = indexOf(lemma);
+        if (position >= 0) {
+            return frequencies[position] > 0 ? new int[]{ids[position], frequencies[position]} : null;
+        }
+        int[] entry = added.get(lemma);
+        return entry != null && entry[1] > 0 ? entry.clone() : null;
+    }
+    
+    /**
+     * Увеличивает частоты лемм на единицу, добавляя отсутствующие
+     *
+     * @param lemmaIds id по тексту леммы
+     */
+    synchronized void addOccurrences(Map<String, Integer> lemmaIds) {
+        for (Map.Entry<String, Integer> entry : lemmaIds.entrySet()) {
+            int position = indexOf(entry.getKey());
+            if (position >= 0) {
+                ids[position] = entry.getValue();
+                if (frequencies[position]++ == 0) {
+                    live++;
+                }
+                continue;
+            }
+            int[] value = added.get(entry.getKey());
+            if (value == null) {
+                added.put(entry.getKey(), new int[]{entry.getValue(), 1});
+                live++;
+            } else {
+                value[0] = entry.getValue();
+                value[1]++;
+            }
+        }
+        if (added.size() > Math.max(MIN_MERGE_THRESHOLD, size / 8)) {
+            merge();
+        }
+    }
+    
+    /**
+     * Уменьшает частоты лемм
+     *
+     * @param counts на сколько уменьшить частоту каждой леммы
+     */
+    synchronized void releaseOccurrences(Map<String, Integer> counts) {
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            int position = indexOf(entry.getKey());
+            if (position >= 0) {
+                int frequency = frequencies[position];
+                frequencies[position] = Math.max(0, frequency - entry.getValue());
+                if (frequency > 0 && frequencies[position] == 0) {
+                    live--;
+                }
+                continue;
+            }
+            int[] value = added.get(entry.getKey());
+            if (value != null) {
+                value[1] -= entry.getValue();
+                if (value[1] <= 0) {
+                    added.remove(entry.getKey());
+                    live--;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Число лемм с ненулевой частотой — столько строк у сайта в таблице lemma
+     */
+    synchronized int size() {
+        return live;
+    }
+    
+    private void merge() {
+        List<String> lemmas = new ArrayList<>(size + added.size());
+        for (int i = 0; i < size; i++) {
+            if (frequencies[i] > 0) {
+                lemmas.add(lemmaAt(i));
+            }
+        }
+        lemmas.addAll(added.keySet());
+        Collections.sort(lemmas);
+        
+        int[] mergedIds = new int[lemmas.size()];
+        int[] mergedFrequencies = new int[lemmas.size()];
+        for (int i = 0; i < lemmas.size(); i++) {
+            String lemma = lemmas.get(i);
+            int position = indexOf(lemma);
+            int[] value = position >= 0 ? new int[]{ids[position], frequencies[position]} : added.get(lemma);
+            mergedIds[i] = value[0];
+            mergedFrequencies[i] = value[1];
+        }
+        added.clear();
+        build(lemmas, mergedIds, mergedFrequencies);
+    }
+    
+    /**
+     * @param lemmas леммы в порядке String.compareTo
+     */
+    private void build(List<String> lemmas, int[] ids, int[] frequencies) {
+        int size = lemmas.size();
+        int length = 0;
+        for (String lemma : lemmas) {
+            length += lemma.length();
+        }
+        char[] chars = new char[length];
+        int[] offsets = new int[size + 1];
+        int position = 0;
+        for (int i = 0; i < size; i++) {
+            String lemma = lemmas.get(i);
+            lemma.getChars(0, lemma.length(), chars, position);
+            offsets[i] = position;
+            position += lemma.length();
+        }
+        offsets[size] = position;
+        int live = added.size();
+        for (int frequency : frequencies) {
+            if (frequency > 0) {
+                live++;
+            }
+        }
+        
+        this.chars = chars;
+        this.offsets = offsets;
+        this.ids = ids;
+        this.frequencies = frequencies;
+        this.size = size;
+        this.live = live;
+    }
+    
+    private int indexOf(String lemma) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = compareAt(middle, lemma);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Сравнивает лемму в позиции с текстом так же, как String.compareTo
+     */
+    private int compareAt(int position, String lemma) {
+        int start = offsets[position];
+        int length = offsets[position + 1] - start;
+        int common = Math.min(length, lemma.length());
+        for (int i = 0; i < common; i++) {
+            char c = chars[start + i];
+            char other = lemma.charAt(i);
+            if (c != other) {
+                return c - other;
+            }
+        }
+        return length - lemma.length();
+    }
+    
+    private String lemmaAt(int position) {
+        return new String(chars, offsets[position], offsets[position + 1] - offsets[position]);
+    }
+}
@@ -0,0 +1,148 @@
+package searchengine.services;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import searchengine.model.GenerationState;
+import searchengine.model.SiteEntity;
+import searchengine.repository.*;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Текущие сайты и число их страниц и лемм в памяти, чтобы статистика
+ * не выполняла SQL. Страницы считаются по мере записи и удаления, леммы
+ * берутся из словаря сайта, если он загружен. Раз в reconcile-interval-ms
+ * и после каждой индексации всё сверяется с БД групповыми запросами сразу
+ * по всем сайтам, так что ошибка счётчиков не накапливается.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SiteStatistics {
+    
+    private final SiteRepository siteRepository;
+    private final PageRepository pageRepository;
+    private final LemmaRepository lemmaRepository;
+    private final LemmaDictionary lemmaDictionary;
+    
+    // Текущее поколение каждого сайта по адресу
+    private volatile Map<String, SiteEntity> sites = new ConcurrentHashMap<>();
+    private final Map<Integer, PageCount> pages = new ConcurrentHashMap<>();
+    // Число лемм при последней сверке, для сайтов без загруженного словаря
+    private final Map<Integer, Long> lemmas = new ConcurrentHashMap<>();
+    private volatile boolean reconciled;
+    
+    /**
+     * Сайты, которые сейчас видны пользователю: строящееся поколение,
+     * если оно есть, иначе активное
+     */
+    public List<SiteEntity> getCurrentSites() {
+        if (!reconciled) {
+            reconcile();
+        }
+        List<SiteEntity> current = new ArrayList<>(sites.values());
+        current.sort(Comparator.comparing(SiteEntity::getId));
+        return current;
+    }
+    
+    public long getPages(int siteId) {
+        PageCount count = pages.get(siteId);
+        return count == null ? 0 : count.get();
+    }
+    
+    public long getLemmas(int siteId) {
+        Integer loaded = lemmaDictionary.countLoaded(siteId);
+        return loaded != null ? loaded : lemmas.getOrDefault(siteId, 0L);
+    }
+    
+    /**
+     * Сайт создан или изменился его статус
+     */
+    public void siteSaved(SiteEntity site) {
+        if (site.getGenerationState() == GenerationState.RETIRED) {
+            sites.computeIfPresent(site.getUrl(),
+                                   (url, current) -> current.getId().equals(site.getId()) ? null : current);
+            return;
+        }
+        sites.merge(site.getUrl(), site, (current, saved) ->
+                current.getGenerationState() == GenerationState.BUILDING
+                        && saved.getGenerationState() != GenerationState.BUILDING ? current : saved);
+    }
+    
+    public void pageAdded(int siteId) {
+        AfterCommit.run(() -> pageCount(siteId).delta.increment());
+    }
+    
+    public void pagesRemoved(int siteId, int count) {
+        AfterCommit.run(() -> pageCount(siteId).delta.add(-count));
+    }
+    
+    public void sitesRemoved(Collection<Integer> siteIds) {
+        AfterCommit.run(() -> siteIds.forEach(siteId -> {
+            pages.remove(siteId);
+            lemmas.remove(siteId);
+        }));
+    }
+    
+    /**
+     * Перечитывает текущие сайты и число их страниц и лемм из БД.
+     * Страницы, записанные во время подсчёта, могут быть учтены дважды
+     * или не учтены до следующей сверки.
+     */
+    @Scheduled(fixedDelayString = "${statistics.reconcile-interval-ms:60000}")
+    public synchronized void reconcile() {
+        long start = System.currentTimeMillis();
+        Map<String, SiteEntity> current = new ConcurrentHashMap<>();
+        Set<Integer> currentIds = new HashSet<>();
+        for (SiteEntity site : IndexGenerations.currentOf(siteRepository.findByGenerationStateIn(
+                List.of(GenerationState.ACTIVE, GenerationState.BUILDING)))) {
+            current.put(site.getUrl(), site);
+            currentIds.add(site.getId());
+        }
+        
+        Map<Integer, Long> deltas = new HashMap<>();
+        pages.forEach((siteId, count) -> deltas.put(siteId, count.delta.sum()));
+        Map<Integer, Long> pageCounts = toMap(pageRepository.countGroupedBySite());
+        Map<Integer, Long> lemmaCounts = toMap(lemmaRepository.countGroupedBySite());
+        
+        for (SiteEntity site : current.values()) {
+            PageCount count = pageCount(site.getId());
+            count.base = pageCounts.getOrDefault(site.getId(), 0L);
+            count.delta.add(-deltas.getOrDefault(site.getId(), 0L));
+        }
+        pages.keySet().retainAll(currentIds);
+        lemmas.clear();
+        lemmas.putAll(lemmaCounts);
+        sites = current;
+        reconciled = true;
+        log.debug("Статистика сайтов сверена с БД за {} мс", System.currentTimeMillis() - start);
+    }
+    
+    private PageCount pageCount(int siteId) {
+        return pages.computeIfAbsent(siteId, id -> new PageCount());
+    }
+    
+    private static Map<Integer, Long> toMap(List<SiteCountView> counts) {
+        Map<Integer, Long> map = new HashMap<>();
+        for (SiteCountView count : counts) {
+            map.put(count.getSiteId(), count.getCount());
+        }
+        return map;
+    }
+    
+    /**
+     * Число страниц при последней сверке и изменение после неё
+     */
+    private static final class PageCount {
+        private volatile long base;
+        private final LongAdder delta = new LongAdder();
+        
+        long get() {
+            return Math.max(0, base + delta.sum());
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package searchengine.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.jsoup.Connection;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.parser.Parser;
+import searchengine.config.CrawlerSettings;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Читает карты сайта (sitemap.xml) и отдаёт адреса страниц из них, чтобы
+ * обход большого сайта находил страницы, не проходя длинные цепочки
+ * ссылок. Индексы карт (sitemapindex) раскрываются в ширину; сжатые карты
+ * (.gz) распаковываются. Читается не больше sitemapMaxFiles файлов
+ * и sitemapMaxUrls адресов. Каждая загрузка ждёт очереди у планировщика
+ * обхода сайта, как загрузка страницы, поэтому соблюдает politenessDelayMs,
+ * Crawl-delay и лимиты одновременных загрузок.
+ */
+@Slf4j
+class SitemapReader {
+    
+    private final CrawlerSettings settings;
+    private final FetchTurns turns;
+    private final BooleanSupplier running;
+    
+    SitemapReader(CrawlerSettings settings, FetchTurns turns, BooleanSupplier running) {
+        this.settings = settings;
+        this.turns = turns;
+        this.running = running;
+    }
+    
+    /**
+     * @param sitemaps адреса карт из robots.txt
+     * @param pages    получает адреса страниц в порядке карт
+     * @return сколько адресов страниц прочитано
+     */
+    int read(List<String> sitemaps, Consumer<String> pages) throws InterruptedException {
+        Deque<String> queue = new ArrayDeque<>(sitemaps);
+        Set<String> seen = new HashSet<>(sitemaps);
+        int files = 0;
+        int urls = 0;
+        while (!queue.isEmpty() && files < settings.getSitemapMaxFiles() && running.getAsBoolean()) {
+            String sitemapUrl = queue.poll();
+            files++;
+            Document doc;
+            try {
+                doc = fetch(sitemapUrl);
+            } catch (IOException e) {
+                log.debug("Не удалось загрузить карту сайта {}: {}", sitemapUrl, e.getMessage());
+                continue;
+            }
+            for (Element loc : doc.select("sitemap > loc")) {
+                String child = loc.text().trim();
+                if (!child.isEmpty() && seen.add(child)) {
+                    queue.add(child);
+                }
+            }
+            for (Element loc : doc.select("url > loc")) {
+                if (urls >= settings.getSitemapMaxUrls()) {
+                    return urls;
+                }
+                String url = loc.text().trim();
+                if (!url.isEmpty()) {
+                    pages.accept(url);
+                    urls++;
+                }
+            }
+        }
+        return urls;
+    }
+    
+    private Document fetch(String sitemapUrl) throws IOException, InterruptedException {
+        turns.acquire();
+        byte[] body;
+        try {
+            Connection.Response response = Jsoup.connect(sitemapUrl)
+                    .userAgent(settings.getUserAgent())
+                    .timeout(settings.getFetchTimeoutMs())
+                    .ignoreContentType(true)
+                    .maxBodySize(0)
+                    .execute();
+            body = response.bodyAsBytes();
+        } finally {
+            turns.release();
+        }
+        if (isGzip(body)) {
+            try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+                body = in.readAllBytes();
+            }
+        }
+        return Jsoup.parse(new String(body, StandardCharsets.UTF_8), sitemapUrl, Parser.xmlParser());
+    }
+    
+    private static boolean isGzip(byte[] body) {
+        return body.length > 2 && (body[0] & 0xFF) == 0x1F && (body[1] & 0xFF) == 0x8B;
+    }
+    
+    /**
+     * Очередь загрузок сайта
+     */
+    interface FetchTurns {
+        
+        /**
+         * Ждёт, пока планировщик разрешит загрузку
+         */
+        void acquire() throws InterruptedException;
+        
+        /**
+         * Возвращает разрешение после загрузки
+         */
+        void release();
+    }
+}
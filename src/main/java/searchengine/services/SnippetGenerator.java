@@ -0,0 +1,284 @@
+package searchengine.services;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * Строит сниппеты с выделением слов запроса. Текст страницы разбивается
+ * на слова и лемматизируется один раз, результат — компактные массивы
+ * (смещение, длина, id леммы) — кэшируется по id страницы. Для каждого
+ * запроса выбирается окно текста с наибольшим числом совпадений, и HTML
+ * собирается за один проход.
+ */
+@Component
+@RequiredArgsConstructor
+public class SnippetGenerator {
+    
+    static final int MAX_LENGTH = 300;
+    private static final int LEADING_CONTEXT = 60;
+    private static final int CACHE_SIZE = 2000;
+    
+    private final LemmaService lemmaService;
+    
+    private final Map<Integer, TokenizedText> cache = Collections.synchronizedMap(
+            new LinkedHashMap<>(CACHE_SIZE, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, TokenizedText> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            });
+    
+    public String generate(int pageId, String text, Set<String> queryLemmas) {
+        TokenizedText tokens = cache.get(pageId);
+        if (tokens == null || !tokens.text.equals(text)) {
+            tokens = tokenize(text);
+            cache.put(pageId, tokens);
+        }
+        return build(tokens, queryLemmas);
+    }
+    
+    /**
+     * Разбивает текст на слова и сохраняет позиции только индексируемых слов
+     */
+    TokenizedText tokenize(String text) {
+        int capacity = 16;
+        int[] offsets = new int[capacity];
+        int[] lengths = new int[capacity];
+        int[] lemmaIds = new int[capacity];
+        int size = 0;
+        Map<String, Integer> localIds = new HashMap<>();
+        
+        int length = text.length();
+        int position = 0;
+        while (position < length) {
+            while (position < length && !isWordChar(text.charAt(position))) {
+                position++;
+            }
+            int start = position;
+            while (position < length && isWordChar(text.charAt(position))) {
+                position++;
+            }
+            if (start == position) {
+                continue;
+            }
+            
+            String lemma = lemmaService.getLemma(text, start, position);
+            if (lemma == null) {
+                continue;
+            }
+            if (size == capacity) {
+                capacity *= 2;
+                offsets = Arrays.copyOf(offsets, capacity);
+                lengths = Arrays.copyOf(lengths, capacity);
+                lemmaIds = Arrays.copyOf(lemmaIds, capacity);
+            }
+            Integer lemmaId = localIds.get(lemma);
+            if (lemmaId == null) {
+                lemmaId = localIds.size();
+                localIds.put(lemma, lemmaId);
+            }
+            offsets[size] = start;
+            lengths[size] = position - start;
+            lemmaIds[size] = lemmaId;
+            size++;
+        }
+        
+        String[] lemmas = new String[localIds.size()];
+        localIds.forEach((lemma, id) -> lemmas[id] = lemma);
+        return new TokenizedText(text, Arrays.copyOf(offsets, size), Arrays.copyOf(lengths, size),
+                                 Arrays.copyOf(lemmaIds, size), lemmas);
+    }
+    
+    String build(TokenizedText tokens, Set<String> queryLemmas) {
+        int[] queryIndex = new int[tokens.lemmas.length];
+        Arrays.fill(queryIndex, -1);
+        int queryCount = 0;
+        for (int i = 0; i < tokens.lemmas.length; i++) {
+            if (queryLemmas.contains(tokens.lemmas[i])) {
+                queryIndex[i] = queryCount++;
+            }
+        }
+        
+        int[] matches = new int[tokens.size()];
+        int matchCount = 0;
+        for (int i = 0; i < tokens.size(); i++) {
+            if (queryIndex[tokens.lemmaIds[i]] >= 0) {
+                matches[matchCount++] = i;
+            }
+        }
+        
+        if (matchCount == 0) {
+            int end = wordBoundaryBefore(tokens.text, Math.min(tokens.text.length(), MAX_LENGTH), 0);
+            return render(tokens, queryIndex, 0, end);
+        }
+        
+        int[] window = bestWindow(tokens, queryIndex, queryCount, matches, matchCount);
+        int first = tokens.offsets[matches[window[0]]];
+        int last = tokens.offsets[matches[window[1]]] + tokens.lengths[matches[window[1]]];
+        
+        int lead = Math.max(0, Math.min(LEADING_CONTEXT, (MAX_LENGTH - (last - first)) / 2));
+        int start = wordBoundaryAfter(tokens.text, Math.max(0, first - lead), first);
+        int end = wordBoundaryBefore(tokens.text,
+                Math.min(tokens.text.length(), Math.max(last, start + MAX_LENGTH)), last);
+        return render(tokens, queryIndex, start, end);
+    }
+    
+    /**
+     * Окно совпадений не длиннее MAX_LENGTH символов с наибольшим числом
+     * разных лемм запроса, а при равенстве — с наибольшим числом совпадений
+     *
+     * @return индексы первого и последнего совпадения окна в массиве matches
+     */
+    private static int[] bestWindow(TokenizedText tokens, int[] queryIndex, int queryCount,
+                                    int[] matches, int matchCount) {
+        int[] counts = new int[queryCount];
+        int distinct = 0;
+        int bestDistinct = -1;
+        int bestSize = -1;
+        int[] best = new int[2];
+        
+        int left = 0;
+        for (int right = 0; right < matchCount; right++) {
+            if (counts[queryIndex[tokens.lemmaIds[matches[right]]]]++ == 0) {
+                distinct++;
+            }
+            int rightEnd = tokens.offsets[matches[right]] + tokens.lengths[matches[right]];
+            while (rightEnd - tokens.offsets[matches[left]] > MAX_LENGTH) {
+                if (--counts[queryIndex[tokens.lemmaIds[matches[left]]]] == 0) {
+                    distinct--;
+                }
+                left++;
+            }
+            
+            int windowSize = right - left + 1;
+            if (distinct > bestDistinct || (distinct == bestDistinct && windowSize > bestSize)) {
+                bestDistinct = distinct;
+                bestSize = windowSize;
+                best[0] = left;
+                best[1] = right;
+            }
+        }
+        return best;
+    }
+    
+    private static String render(TokenizedText tokens, int[] queryIndex, int start, int end) {
+        String text = tokens.text;
+        StringBuilder snippet = new StringBuilder(end - start + 64);
+        if (start > 0) {
+            snippet.append("...");
+        }
+        
+        int position = start;
+        int token = firstTokenAtOrAfter(tokens, start);
+        for (; token < tokens.size() && tokens.offsets[token] < end; token++) {
+            if (queryIndex[tokens.lemmaIds[token]] < 0) {
+                continue;
+            }
+            int tokenStart = tokens.offsets[token];
+            int tokenEnd = tokenStart + tokens.lengths[token];
+            appendEscaped(snippet, text, position, tokenStart);
+            snippet.append("<b>");
+            appendEscaped(snippet, text, tokenStart, tokenEnd);
+            snippet.append("</b>");
+            position = tokenEnd;
+        }
+        appendEscaped(snippet, text, position, end);
+        
+        if (end < text.length()) {
+            snippet.append("...");
+        }
+        return snippet.toString();
+    }
+    
+    private static int firstTokenAtOrAfter(TokenizedText tokens, int offset) {
+        int position = Arrays.binarySearch(tokens.offsets, offset);
+        return position >= 0 ? position : -position - 1;
+    }
+    
+    /**
+     * Сдвигает начало окна вперёд к началу слова, но не дальше limit
+     */
+    private static int wordBoundaryAfter(String text, int position, int limit) {
+        if (position == 0) {
+            return 0;
+        }
+        int start = position;
+        while (start < limit && !Character.isWhitespace(text.charAt(start - 1))) {
+            start++;
+        }
+        while (start < limit && Character.isWhitespace(text.charAt(start))) {
+            start++;
+        }
+        return start;
+    }
+    
+    /**
+     * Сдвигает конец окна назад к концу слова, но не раньше limit
+     */
+    private static int wordBoundaryBefore(String text, int position, int limit) {
+        if (position >= text.length()) {
+            return text.length();
+        }
+        int end = position;
+        while (end > limit && !Character.isWhitespace(text.charAt(end))) {
+            end--;
+        }
+        while (end > limit && Character.isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+        return end;
+    }
+    
+    private static void appendEscaped(StringBuilder builder, String text, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '<':
+                    builder.append("&lt;");
+                    break;
+                case '>':
+                    builder.append("&gt;");
+                    break;
+                case '&':
+                    builder.append("&amp;");
+                    break;
+                case '"':
+                    builder.append("&quot;");
+                    break;
+                default:
+                    builder.append(c);
+            }
+        }
+    }
+    
+    private static boolean isWordChar(char c) {
+        char lower = Character.toLowerCase(c);
+        return (lower >= 'а' && lower <= 'я') || lower == 'ё' || (lower >= 'a' && lower <= 'z');
+    }
+    
+    /**
+     * Текст страницы с позициями индексируемых слов. Леммы пронумерованы
+     * в пределах одного текста, id указывает на элемент массива lemmas.
+     */
+    static class TokenizedText {
+        private final String text;
+        private final int[] offsets;
+        private final int[] lengths;
+        private final int[] lemmaIds;
+        private final String[] lemmas;
+        
+        TokenizedText(String text, int[] offsets, int[] lengths, int[] lemmaIds, String[] lemmas) {
+            this.text = text;
+            this.offsets = offsets;
+            this.lengths = lengths;
+            this.lemmaIds = lemmaIds;
+            this.lemmas = lemmas;
+        }
+        
+        int size() {
+            return offsets.length;
+        }
+    }
+}
@@ -4,23 +4,25 @@
 import org.springframework.stereotype.Service;
 import searchengine.dto.statistics.*;
 import searchengine.model.SiteEntity;
-import searchengine.repository.*;
 
 import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * Статистика собирается из счётчиков в памяти ({@link SiteStatistics})
+ * и не выполняет SQL, поэтому её можно опрашивать часто
+ */
 @Service
 @RequiredArgsConstructor
 public class StatisticsService {
     
-    private final SiteRepository siteRepository;
-    private final PageRepository pageRepository;
-    private final LemmaRepository lemmaRepository;
     private final IndexingService indexingService;
+    private final SiteStatistics siteStatistics;
+    private final SearchResultCache searchResultCache;
     
     public StatisticsResponse getStatistics() {
-        List<SiteEntity> sites = siteRepository.findAll();
+        List<SiteEntity> sites = siteStatistics.getCurrentSites();
         
         TotalStatistics total = new TotalStatistics();
         total.setSites(sites.size());
@@ -38,8 +40,8 @@ public StatisticsResponse getStatistics() {
             item.setStatusTime(site.getStatusTime().toEpochSecond(ZoneOffset.UTC));
             item.setError(site.getLastError());
             
-            long pages = pageRepository.countBySite(site);
-            long lemmas = lemmaRepository.countBySite(site);
+            long pages = siteStatistics.getPages(site.getId());
+            long lemmas = siteStatistics.getLemmas(site.getId());
             
             item.setPages(pages);
             item.setLemmas(lemmas);
@@ -56,6 +58,7 @@ public StatisticsResponse getStatistics() {
         StatisticsData data = new StatisticsData();
         data.setTotal(total);
         data.setDetailed(detailed);
+        data.setSearchCache(getSearchCacheStatistics());
         
         StatisticsResponse response = new StatisticsResponse();
         response.setResult(true);
@@ -63,4 +66,13 @@ public StatisticsResponse getStatistics() {
         
         return response;
     }
+    
+    private SearchCacheStatistics getSearchCacheStatistics() {
+        SearchCacheStatistics cache = new SearchCacheStatistics();
+        cache.setHits(searchResultCache.getHits());
+        cache.setMisses(searchResultCache.getMisses());
+        cache.setHitRate(searchResultCache.getHitRate());
+        cache.setSize(searchResultCache.size());
+        return cache;
+    }
 }
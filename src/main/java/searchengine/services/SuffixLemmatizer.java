@@ -0,0 +1,76 @@
+package searchengine.services;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Упрощенная лемматизация для русского языка: отбрасывает окончание слова.
+ * Для продакшена рекомендуется Apache Lucene Morphology — достаточно
+ * подключить другую реализацию Lemmatizer.
+ */
+@Component
+@ConditionalOnProperty(prefix = "lemmatizer", name = "backend", havingValue = "suffix", matchIfMissing = true)
+public class SuffixLemmatizer implements Lemmatizer {
+    
+    // Окончания в порядке приоритета: побеждает первое подходящее
+    private static final String[][] ENDINGS = {
+        // Существительные множественного числа
+        {"ами", "ями", "ах", "ях", "ам", "ям"},
+        // Прилагательные
+        {"ого", "его", "ому", "ему", "ыми", "ими"},
+        // Глаголы
+        {"ешь", "ете", "ишь", "ите", "ать", "ять", "еть", "ить", "ыть"},
+        // Существительные и прилагательные
+        {"ом", "ем", "им", "ой", "ей", "ий", "ый", "ая", "яя", "ое", "ее", "ые", "ие"},
+        // Короткие окончания
+        {"ов", "ев", "ам", "ми", "ах", "ой", "ей"},
+        // Самые короткие
+        {"а", "я", "у", "ю", "о", "е", "и", "ы", "ь"}
+    };
+    
+    private static final int MIN_STEM_LENGTH = 3;
+    private static final int MIN_STEMMED_WORD_LENGTH = 4;
+    
+    private static final LetterTrie ENDING_TRIE = buildEndingTrie();
+    
+    /**
+     * Обходит дерево перевёрнутых окончаний от конца слова и отбрасывает
+     * окончание с наивысшим приоритетом, после которого остаётся основа
+     * не короче MIN_STEM_LENGTH
+     */
+    @Override
+    public String lemmatize(String word) {
+        int wordLength = word.length();
+        if (wordLength < MIN_STEMMED_WORD_LENGTH) {
+            return word;
+        }
+        
+        int bestPriority = Integer.MAX_VALUE;
+        int bestLength = 0;
+        int node = LetterTrie.ROOT;
+        int maxEnding = wordLength - MIN_STEM_LENGTH;
+        for (int endingLength = 1; endingLength <= maxEnding; endingLength++) {
+            node = ENDING_TRIE.child(node, word.charAt(wordLength - endingLength));
+            if (node < 0) {
+                break;
+            }
+            int priority = ENDING_TRIE.value(node);
+            if (priority >= 0 && priority < bestPriority) {
+                bestPriority = priority;
+                bestLength = endingLength;
+            }
+        }
+        return bestLength == 0 ? word : word.substring(0, wordLength - bestLength);
+    }
+    
+    private static LetterTrie buildEndingTrie() {
+        LetterTrie trie = new LetterTrie();
+        int priority = 0;
+        for (String[] endingGroup : ENDINGS) {
+            for (String ending : endingGroup) {
+                trie.put(ending, true, priority++);
+            }
+        }
+        return trie;
+    }
+}
@@ -0,0 +1,122 @@
+package searchengine.services;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Ограниченная куча, хранящая только лучшие страницы по релевантности.
+ * При равной релевантности выше стоит страница с меньшим id сайта и страницы.
+ * Если задана страница after, принимаются только страницы, стоящие в выдаче
+ * после неё: так продолжается выдача по курсору.
+ */
+public class TopPages {
+    
+    static final Comparator<ScoredPage> BEST_FIRST = Comparator
+            .comparingDouble(ScoredPage::getRelevance).reversed()
+            .thenComparingInt(ScoredPage::getSiteId)
+            .thenComparingInt(ScoredPage::getPageId);
+    
+    private final int capacity;
+    private final ScoredPage after;
+    private final PriorityQueue<ScoredPage> heap;
+    
+    public TopPages(int capacity) {
+        this(capacity, null);
+    }
+    
+    /**
+     * @param after последняя уже отданная страница или null
+     */
+    public TopPages(int capacity, ScoredPage after) {
+        this.capacity = capacity;
+        this.after = after;
+        this.heap = new PriorityQueue<>(Math.max(1, capacity) + 1, BEST_FIRST.reversed());
+    }
+    
+    public void offer(int siteId, int pageId, double relevance) {
+        if (capacity <= 0) {
+            return;
+        }
+        ScoredPage candidate = new ScoredPage(siteId, pageId, relevance);
+        if (after != null && BEST_FIRST.compare(candidate, after) <= 0) {
+            return;
+        }
+        if (heap.size() < capacity) {
+            heap.add(candidate);
+            return;
+        }
+        if (BEST_FIRST.compare(candidate, heap.peek()) < 0) {
+            heap.poll();
+            heap.add(candidate);
+        }
+    }
+    
+    /**
+     * Релевантность, которую нужно превзойти, чтобы попасть в кучу:
+     * пока куча не заполнена — минус бесконечность
+     */
+    public double threshold() {
+        if (capacity <= 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return heap.size() < capacity ? Double.NEGATIVE_INFINITY : heap.peek().getRelevance();
+    }
+    
+    /**
+     * Страницы в порядке убывания релевантности
+     */
+    public List<ScoredPage> toList() {
+        List<ScoredPage> pages = new ArrayList<>(heap);
+        pages.sort(BEST_FIRST);
+        return pages;
+    }
+    
+    /**
+     * Слияние нескольких отсортированных по релевантности списков через кучу
+     * из их голов: пропускает первые offset страниц и возвращает следующие limit
+     */
+    public static List<ScoredPage> merge(List<List<ScoredPage>> rankings, int offset, int limit) {
+        PriorityQueue<Head> heads = new PriorityQueue<>(Math.max(1, rankings.size()),
+                (a, b) -> BEST_FIRST.compare(a.current, b.current));
+        for (List<ScoredPage> ranking : rankings) {
+            Iterator<ScoredPage> iterator = ranking.iterator();
+            if (iterator.hasNext()) {
+                heads.add(new Head(iterator));
+            }
+        }
+        
+        List<ScoredPage> result = new ArrayList<>(Math.max(0, Math.min(limit, 1000)));
+        int position = 0;
+        while (!heads.isEmpty() && result.size() < limit) {
+            Head head = heads.poll();
+            if (position++ >= offset) {
+                result.add(head.current);
+            }
+            if (head.advance()) {
+                heads.add(head);
+            }
+        }
+        return result;
+    }
+    
+    private static class Head {
+        private final Iterator<ScoredPage> iterator;
+        private ScoredPage current;
+        
+        Head(Iterator<ScoredPage> iterator) {
+            this.iterator = iterator;
+            this.current = iterator.next();
+        }
+        
+        boolean advance() {
+            if (!iterator.hasNext()) {
+                return false;
+            }
+            current = iterator.next();
+            return true;
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package searchengine.services;
+
+import searchengine.config.CrawlerSettings;
+
+import java.net.IDN;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Приводит адрес к каноническому виду, чтобы одна страница не обходилась
+ * под разными адресами: схема и хост в нижнем регистре, без порта по
+ * умолчанию, без фрагмента, сегментов «.» и «..» и идентификатора сессии
+ * в пути, без параметров из canonicalStripParameters (имя с «*» на конце
+ * задаёт префикс), с остальными параметрами в порядке сортировки и, если
+ * включено canonicalStripTrailingSlash, без косой черты в конце пути.
+ * <p>
+ * Адрес разбирается вручную, а не через java.net.URI: URI не находит хост
+ * с подчёркиванием или не в ASCII (домены .рф) и отвергает адреса с «|»
+ * и пробелами, которые браузеры принимают. Хост не в ASCII переводится
+ * в punycode, а недопустимые в адресе символы ASCII кодируются как %XX.
+ */
+public class UrlCanonicalizer {
+    
+    private static final Pattern SESSION_PATH_PARAMETER = Pattern.compile("(?i);jsessionid=[^/?]*");
+    // Символы ASCII, которые нельзя оставлять в адресе как есть
+    private static final String UNSAFE = " \"<>\\^`{|}";
+    
+    private final Set<String> strippedNames = new HashSet<>();
+    private final List<String> strippedPrefixes = new ArrayList<>();
+    private final boolean stripTrailingSlash;
+    
+    public UrlCanonicalizer(CrawlerSettings settings) {
+        for (String name : settings.getCanonicalStripParameters()) {
+            String normalized = name.trim().toLowerCase(Locale.ROOT);
+            if (normalized.endsWith("*")) {
+                strippedPrefixes.add(normalized.substring(0, normalized.length() - 1));
+            } else if (!normalized.isEmpty()) {
+                strippedNames.add(normalized);
+            }
+        }
+        this.stripTrailingSlash = settings.isCanonicalStripTrailingSlash();
+    }
+    
+    /**
+     * @return канонический адрес или null, если адрес не http(s) или в нём нет хоста
+     */
+    public String canonicalize(String url) {
+        String rest = url.trim();
+        int fragment = rest.indexOf('#');
+        if (fragment >= 0) {
+            rest = rest.substring(0, fragment);
+        }
+        int schemeEnd = rest.indexOf("://");
+        if (schemeEnd < 0) {
+            return null;
+        }
+        String scheme = rest.substring(0, schemeEnd).toLowerCase(Locale.ROOT);
+        if (!scheme.equals("http") && !scheme.equals("https")) {
+            return null;
+        }
+        rest = rest.substring(schemeEnd + 3);
+        
+        int authorityEnd = 0;
+        while (authorityEnd < rest.length() && "/?\\".indexOf(rest.charAt(authorityEnd)) < 0) {
+            authorityEnd++;
+        }
+        String authority = rest.substring(0, authorityEnd);
+        String pathAndQuery = rest.substring(authorityEnd);
+        authority = authority.substring(authority.lastIndexOf('@') + 1);
+        
+        String host = authority;
+        int port = -1;
+        int colon = authority.lastIndexOf(':');
+        if (colon >= 0 && colon > authority.lastIndexOf(']')) {
+            host = authority.substring(0, colon);
+            String portText = authority.substring(colon + 1);
+            if (!portText.isEmpty()) {
+                try {
+                    port = Integer.parseInt(portText);
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            }
+        }
+        host = canonicalHost(host);
+        if (host == null) {
+            return null;
+        }
+        
+        StringBuilder canonical = new StringBuilder(url.length());
+        canonical.append(scheme).append("://").append(host);
+        if (port != -1 && !(port == 80 && scheme.equals("http")) && !(port == 443 && scheme.equals("https"))) {
+            canonical.append(':').append(port);
+        }
+        int queryStart = pathAndQuery.indexOf('?');
+        String rawPath = queryStart < 0 ? pathAndQuery : pathAndQuery.substring(0, queryStart);
+        String rawQuery = queryStart < 0 ? null : pathAndQuery.substring(queryStart + 1);
+        canonical.append(canonicalPath(escape(rawPath.replace('\\', '/'))));
+        String query = canonicalQuery(rawQuery == null ? null : escape(rawQuery));
+        if (!query.isEmpty()) {
+            canonical.append('?').append(query);
+        }
+        return canonical.toString();
+    }
+    
+    /**
+     * Хост в нижнем регистре, не-ASCII — в punycode; null, если хоста нет
+     * или его нельзя перевести
+     */
+    private static String canonicalHost(String host) {
+        if (host.endsWith(".")) {
+            host = host.substring(0, host.length() - 1);
+        }
+        if (host.isEmpty() || host.indexOf(' ') >= 0) {
+            return null;
+        }
+        for (int i = 0; i < host.length(); i++) {
+            if (host.charAt(i) >= 0x80) {
+                try {
+                    return IDN.toASCII(host, IDN.ALLOW_UNASSIGNED).toLowerCase(Locale.ROOT);
+                } catch (IllegalArgumentException e) {
+                    return null;
+                }
+            }
+        }
+        return host.toLowerCase(Locale.ROOT);
+    }
+    
+    /**
+     * Кодирует недопустимые символы ASCII как %XX; буквы не из ASCII
+     * остаются как есть
+     */
+    private static String escape(String value) {
+        StringBuilder escaped = null;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            boolean unsafe = c < 0x20 || c == 0x7F || UNSAFE.indexOf(c) >= 0;
+            if (unsafe && escaped == null) {
+                escaped = new StringBuilder(value.length() + 8).append(value, 0, i);
+            }
+            if (escaped != null) {
+                if (unsafe) {
+                    escaped.append('%').append(Character.toUpperCase(Character.forDigit(c >> 4, 16)))
+                            .append(Character.toUpperCase(Character.forDigit(c & 0xF, 16)));
+                } else {
+                    escaped.append(c);
+                }
+            }
+        }
+        return escaped == null ? value : escaped.toString();
+    }
+    
+    private String canonicalPath(String rawPath) {
+        String path = removeDotSegments(SESSION_PATH_PARAMETER.matcher(rawPath).replaceAll(""));
+        if (stripTrailingSlash) {
+            int end = path.length();
+            while (end > 1 && path.charAt(end - 1) == '/') {
+                end--;
+            }
+            path = path.substring(0, end);
+        }
+        return path;
+    }
+    
+    /**
+     * Убирает сегменты «.» и «..» (RFC 3986, 5.2.4); «..» выше корня
+     * отбрасываются. Результат всегда начинается с «/».
+     */
+    private static String removeDotSegments(String path) {
+        Deque<String> segments = new ArrayDeque<>();
+        String[] parts = path.split("/", -1);
+        for (int i = 0; i < parts.length; i++) {
+            String part = parts[i];
+            boolean last = i == parts.length - 1;
+            if (part.equals(".") || part.equals("..")) {
+                if (part.equals("..") && !segments.isEmpty()) {
+                    segments.removeLast();
+                }
+                if (last) {
+                    segments.addLast("");
+                }
+            } else if (i > 0 || !part.isEmpty()) {
+                segments.addLast(part);
+            }
+        }
+        return "/" + String.join("/", segments);
+    }
+    
+    private String canonicalQuery(String rawQuery) {
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return "";
+        }
+        List<String> kept = new ArrayList<>();
+        for (String parameter : rawQuery.split("&")) {
+            if (parameter.isEmpty()) {
+                continue;
+            }
+            int equals = parameter.indexOf('=');
+            String name = (equals < 0 ? parameter : parameter.substring(0, equals)).toLowerCase(Locale.ROOT);
+            if (!isStripped(name)) {
+                kept.add(parameter);
+            }
+        }
+        Collections.sort(kept);
+        return String.join("&", kept);
+    }
+    
+    private boolean isStripped(String name) {
+        if (strippedNames.contains(name)) {
+            return true;
+        }
+        for (String prefix : strippedPrefixes) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,265 @@
+package searchengine.services;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Множество адресов, уже найденных при обходе сайта. Вместо строк хранятся
+ * 64-битные отпечатки адресов в таблице с открытой адресацией поверх
+ * AtomicLongArray: {@link #add} за один проход проверяет и добавляет адрес
+ * без блокировок, так что два потока не могут оба получить true для одного
+ * адреса. Отпечатки совпадают у разных адресов с вероятностью порядка 2^-64.
+ * <p>
+ * Таблица удваивается, когда заполнена наполовину. Элементы переносятся
+ * участками, которые разбирают все потоки, пришедшие во время переноса;
+ * пустые ячейки старой таблицы помечаются MOVED, и вставка, встретившая
+ * такую ячейку, продолжается в новой. Занятая ячейка не меняется никогда,
+ * поэтому цепочка поиска отпечатка в старой таблице не может потерять уже
+ * вставленный отпечаток. Пока перенос не закончен, новая таблица принимает
+ * новые адреса только до четверти ёмкости, чтобы в ней хватило места для
+ * всех переносимых; дальше вставка сначала помогает закончить перенос.
+ * <p>
+ * Таблица растёт, пока в ней не больше maxFingerprints отпечатков. Дальше
+ * первая пустая ячейка цепочки нового адреса помечается SEALED, а адрес
+ * записывается в блочный фильтр Блума: все его биты лежат в одном
+ * 64-битном слове и ставятся одним CAS. Фильтр изредка принимает новый
+ * адрес за уже найденный, и такая страница пропускается, — это цена
+ * ограниченной памяти на сайтах с миллионами адресов.
+ */
+public class VisitedUrlSet {
+    
+    private static final long EMPTY = 0;
+    private static final long MOVED = Long.MIN_VALUE;
+    private static final long SEALED = Long.MIN_VALUE + 1;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int TRANSFER_CHUNK = 1024;
+    private static final int BLOOM_HASHES = 6;
+    // Таблица на 2^30 ячеек — предел AtomicLongArray с запасом на удвоение
+    private static final int MAX_FINGERPRINTS = 1 << 28;
+    
+    private final int maxFingerprints;
+    private final int maxCapacity;
+    private final int bloomWords;
+    private final AtomicReference<Table> table;
+    private final AtomicReference<AtomicLongArray> bloom = new AtomicReference<>();
+    private final LongAdder overflow = new LongAdder();
+    
+    /**
+     * @param maxFingerprints сколько адресов хранить точно
+     * @param bloomBits       размер фильтра для адресов сверх этого
+     */
+    public VisitedUrlSet(int maxFingerprints, long bloomBits) {
+        this.maxFingerprints = Math.min(maxFingerprints, MAX_FINGERPRINTS);
+        this.maxCapacity = Integer.highestOneBit(Math.max(1, this.maxFingerprints - 1)) << 2;
+        this.bloomWords = (int) Math.max(1, Math.min(Integer.MAX_VALUE, bloomBits / Long.SIZE));
+        Table initial = new Table(Math.min(INITIAL_CAPACITY, maxCapacity), null);
+        initial.ready = true;
+        this.table = new AtomicReference<>(initial);
+    }
+    
+    /**
+     * Добавляет адрес
+     *
+     * @return true, если адрес раньше не встречался
+     */
+    public boolean add(String url) {
+        return add(fingerprint(url));
+    }
+    
+    /**
+     * Адресов найдено: точно учтённых и записанных в фильтр
+     */
+    public long size() {
+        return table.get().count.get() + overflow.sum();
+    }
+    
+    boolean add(long fingerprint) {
+        Table current = table.get();
+        while (true) {
+            AtomicLongArray slots = current.slots;
+            int mask = slots.length() - 1;
+            int i = (int) fingerprint & mask;
+            Table next = null;
+            for (int probes = 0; probes <= mask; ) {
+                long value = slots.get(i);
+                if (value == fingerprint) {
+                    return false;
+                }
+                if (value == EMPTY) {
+                    if (!current.ready && current.count.get() >= current.slots.length() / 4) {
+                        finishTransfer(current);
+                        continue;
+                    }
+                    long claim = current.isSealed() ? SEALED : fingerprint;
+                    if (slots.compareAndSet(i, EMPTY, claim)) {
+                        if (claim == SEALED) {
+                            return addToBloom(fingerprint);
+                        }
+                        onInserted(current);
+                        return true;
+                    }
+                    // Ячейку заняли раньше нас — смотрим её заново
+                    continue;
+                }
+                if (value == SEALED) {
+                    return addToBloom(fingerprint);
+                }
+                if (value == MOVED) {
+                    next = current.next.get();
+                    break;
+                }
+                i = (i + 1) & mask;
+                probes++;
+            }
+            if (next == null) {
+                // Таблица заполнена целиком, пока идёт перенос из неё
+                next = current.next.get();
+                if (next == null) {
+                    Thread.yield();
+                    current = table.get();
+                    continue;
+                }
+                finishTransfer(next);
+            }
+            current = next;
+        }
+    }
+    
+    private void onInserted(Table current) {
+        int count = current.count.incrementAndGet();
+        if (count > current.slots.length() / 2 && current.ready && current.slots.length() < maxCapacity) {
+            Table next = new Table(current.slots.length() * 2, current);
+            if (current.next.compareAndSet(null, next)) {
+                transfer(current, next);
+            }
+        }
+    }
+    
+    /**
+     * Помогает перенести отпечатки в таблицу и ждёт, пока перенос закончится
+     */
+    private void finishTransfer(Table to) {
+        transfer(to.from, to);
+        while (!to.ready) {
+            Thread.yield();
+        }
+    }
+    
+    /**
+     * Разбирает и переносит ещё не взятые участки старой таблицы. Новая
+     * таблица публикуется до того, как появится первая ячейка MOVED,
+     * поэтому вставка, встретившая MOVED, всегда находит, куда идти дальше.
+     */
+    private void transfer(Table from, Table to) {
+        AtomicLongArray slots = from.slots;
+        int length = slots.length();
+        while (true) {
+            int start = from.transferIndex.getAndAdd(TRANSFER_CHUNK);
+            if (start >= length) {
+                return;
+            }
+            int end = Math.min(start + TRANSFER_CHUNK, length);
+            for (int i = start; i < end; i++) {
+                long value = slots.get(i);
+                while (value == EMPTY && !slots.compareAndSet(i, EMPTY, MOVED)) {
+                    value = slots.get(i);
+                }
+                if (value != EMPTY) {
+                    to.copy(value);
+                }
+            }
+            if (from.transferred.addAndGet(end - start) == length) {
+                to.ready = true;
+                table.compareAndSet(from, to);
+            }
+        }
+    }
+    
+    private boolean addToBloom(long fingerprint) {
+        AtomicLongArray words = bloom.get();
+        if (words == null) {
+            bloom.compareAndSet(null, new AtomicLongArray(bloomWords));
+            words = bloom.get();
+        }
+        long hash = fingerprint * 0x9E3779B97F4A7C15L;
+        int word = (int) Long.remainderUnsigned(Long.rotateLeft(fingerprint, 32), bloomWords);
+        long bits = 0;
+        for (int j = 0; j < BLOOM_HASHES; j++) {
+            bits |= 1L << ((hash >>> (j * 6)) & 63);
+        }
+        while (true) {
+            long current = words.get(word);
+            if ((current & bits) == bits) {
+                return false;
+            }
+            if (words.compareAndSet(word, current, current | bits)) {
+                overflow.increment();
+                return true;
+            }
+        }
+    }
+    
+    /**
+     * 64-битный отпечаток адреса: FNV-1a по символам и перемешивание
+     * финализатором MurmurHash3, чтобы младшие биты годились для индекса
+     */
+    static long fingerprint(String url) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < url.length(); i++) {
+            hash ^= url.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash == EMPTY || hash == MOVED || hash == SEALED ? 1 : hash;
+    }
+    
+    private final class Table {
+        private final AtomicLongArray slots;
+        // Отпечатки в таблице, включая перенесённые
+        private final AtomicInteger count = new AtomicInteger();
+        // Таблица, из которой переносятся отпечатки в эту
+        private final Table from;
+        private final AtomicReference<Table> next = new AtomicReference<>();
+        private final AtomicInteger transferIndex = new AtomicInteger();
+        private final AtomicInteger transferred = new AtomicInteger();
+        // Перенос в таблицу закончен
+        private volatile boolean ready;
+        
+        Table(int capacity, Table from) {
+            this.slots = new AtomicLongArray(capacity);
+            this.from = from;
+        }
+        
+        /**
+         * Последняя таблица заполнена до предела: новые адреса уходят в фильтр
+         */
+        boolean isSealed() {
+            return ready && slots.length() >= maxCapacity && count.get() >= maxFingerprints;
+        }
+        
+        void copy(long fingerprint) {
+            int mask = slots.length() - 1;
+            int i = (int) fingerprint & mask;
+            while (true) {
+                long value = slots.get(i);
+                if (value == fingerprint) {
+                    return;
+                }
+                if (value == EMPTY) {
+                    if (slots.compareAndSet(i, EMPTY, fingerprint)) {
+                        count.incrementAndGet();
+                        return;
+                    }
+                    continue;
+                }
+                i = (i + 1) & mask;
+            }
+        }
+    }
+}
@@ -5,7 +5,9 @@
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import static org.hamcrest.Matchers.endsWith;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -24,6 +26,14 @@ void testStatisticsEndpoint() throws Exception {
                 .andExpect(jsonPath("$.statistics").exists());
     }
     
+    @Test
+    void testIndexingProgressEndpoint() throws Exception {
+        mockMvc.perform(get("/api/indexingProgress"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.result").value(true))
+                .andExpect(jsonPath("$.sites").isArray());
+    }
+    
     @Test
     void testSearchWithEmptyQuery() throws Exception {
         mockMvc.perform(get("/api/search").param("query", ""))
@@ -43,6 +53,37 @@ void testSearchWithValidQuery() throws Exception {
                 .andExpect(jsonPath("$.data").isArray());
     }
     
+    @Test
+    void testSearchCursorWithValidQuery() throws Exception {
+        mockMvc.perform(get("/api/searchCursor")
+                        .param("query", "тест")
+                        .param("limit", "20"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.result").value(true))
+                .andExpect(jsonPath("$.data").isArray());
+    }
+    
+    @Test
+    void testSearchCursorWithInvalidCursor() throws Exception {
+        mockMvc.perform(get("/api/searchCursor")
+                        .param("query", "тест")
+                        .param("cursor", "не курсор"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.result").value(false));
+    }
+    
+    @Test
+    void testSearchStreamEndsWithSummary() throws Exception {
+        MvcResult result = mockMvc.perform(get("/api/searchStream").param("query", "тест"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("application/x-ndjson"))
+                .andExpect(content().string(endsWith("\"count\":0,\"nextCursor\":null}\n")));
+    }
+    
     @Test
     void testStartIndexingEndpoint() throws Exception {
         mockMvc.perform(get("/api/startIndexing"))
@@ -0,0 +1,70 @@
+package searchengine.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Запись лемм по пути MySQL на H2 в режиме MySQL. Сортировка первого уровня,
+ * как utf8mb4_0900_ai_ci по умолчанию, считает «ё» и «е» одной буквой.
+ */
+class IndexJdbcRepositoryTest {
+    
+    private JdbcTemplate jdbcTemplate;
+    private IndexJdbcRepository repository;
+    
+    @BeforeEach
+    void createTables() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+                "jdbc:h2:mem:index-jdbc;MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", ""));
+        jdbcTemplate.execute("SET COLLATION RUSSIAN STRENGTH PRIMARY");
+        jdbcTemplate.execute("CREATE TABLE lemma (id INT AUTO_INCREMENT PRIMARY KEY, site_id INT NOT NULL, "
+                                     + "lemma VARCHAR(255) NOT NULL, frequency INT NOT NULL, "
+                                     + "CONSTRAINT uk_lemma_site_lemma UNIQUE (site_id, lemma))");
+        jdbcTemplate.execute("CREATE TABLE `index` (id INT AUTO_INCREMENT PRIMARY KEY, page_id INT NOT NULL, "
+                                     + "lemma_id INT NOT NULL, `rank` FLOAT NOT NULL)");
+        repository = IndexJdbcRepository.withDialect(jdbcTemplate, IndexJdbcRepository.Dialect.MYSQL);
+    }
+    
+    @AfterEach
+    void dropDatabase() {
+        jdbcTemplate.execute("DROP ALL OBJECTS");
+    }
+    
+    @Test
+    void testUpsertCreatesAndIncrementsLemmas() {
+        Map<String, Integer> first = repository.upsertLemmas(1, List.of("дом", "кот"));
+        Map<String, Integer> second = repository.upsertLemmas(1, List.of("кот", "лес"));
+        
+        assertEquals(first.get("кот"), second.get("кот"));
+        assertEquals(2, frequency(second.get("кот")));
+        assertEquals(1, frequency(first.get("дом")));
+        assertEquals(1, frequency(second.get("лес")));
+    }
+    
+    @Test
+    void testLemmasEqualUnderCollationShareOneRow() {
+        repository.upsertLemmas(1, List.of("елка"));
+        Map<String, Integer> ids = repository.upsertLemmas(1, List.of("ёлка", "ёж", "еж"));
+        
+        assertNotNull(ids.get("ёлка"));
+        assertEquals(ids.get("ёж"), ids.get("еж"));
+        assertEquals(2, frequency(ids.get("ёлка")));
+        assertEquals(1, frequency(ids.get("ёж")));
+        
+        repository.insertIndexes(10, Map.of(ids.get("ёлка"), 1f, ids.get("ёж"), 3f));
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM `index` WHERE lemma_id IS NULL", Integer.class));
+    }
+    
+    private int frequency(int lemmaId) {
+        return jdbcTemplate.queryForObject("SELECT frequency FROM lemma WHERE id = ?", Integer.class, lemmaId);
+    }
+}
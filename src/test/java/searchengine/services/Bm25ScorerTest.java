@@ -0,0 +1,36 @@
+package searchengine.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Bm25ScorerTest {
+    
+    @Test
+    void testRareLemmaOnShortPageScoresHigher() {
+        Bm25Scorer scorer = new Bm25Scorer(1.2, 0.75, 1000, 100_000, Map.of("редк", 5L, "част", 900L));
+        
+        double rare = scorer.idf("редк");
+        double common = scorer.idf("част");
+        
+        assertTrue(rare > common);
+        assertTrue(common > 0);
+        assertTrue(scorer.termScore(rare, 2, 50) > scorer.termScore(rare, 2, 500));
+        assertTrue(scorer.termScore(rare, 3, 100) > scorer.termScore(rare, 1, 100));
+    }
+    
+    @Test
+    void testMaxTermScoreBoundsEveryPage() {
+        Bm25Scorer scorer = new Bm25Scorer(1.2, 0.75, 100, 10_000, Map.of("слов", 10L));
+        double idf = scorer.idf("слов");
+        double bound = scorer.maxTermScore(idf, 5);
+        
+        for (int rank = 1; rank <= 5; rank++) {
+            for (int length : new int[]{0, rank, 10, 100, 10_000}) {
+                assertTrue(scorer.termScore(idf, rank, length) <= bound, rank + "/" + length);
+            }
+        }
+    }
+}
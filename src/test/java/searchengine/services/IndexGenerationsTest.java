@@ -0,0 +1,84 @@
+package searchengine.services;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import searchengine.model.GenerationState;
+import searchengine.model.IndexingStatus;
+import searchengine.model.PageEntity;
+import searchengine.model.SiteEntity;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class IndexGenerationsTest extends IndexTestSupport {
+    
+    @Autowired
+    private IndexGenerations indexGenerations;
+    
+    @Autowired
+    private InvertedIndex invertedIndex;
+    
+    @Test
+    void testPublishSwapsGenerationAndPurgesPrevious() throws InterruptedException {
+        String url = "https://www.swap.test";
+        SiteEntity previous = createSite(url, 1, GenerationState.ACTIVE, IndexingStatus.INDEXED);
+        PageEntity oldPage = createPage(previous, "/", "кошка");
+        SiteEntity next = createSite(url, 2, GenerationState.BUILDING, IndexingStatus.INDEXED);
+        createPage(next, "/", "собака");
+        
+        assertEquals(previous.getId(), activeSite(url).getId());
+        
+        indexGenerations.publish(List.of(next));
+        
+        assertEquals(next.getId(), activeSite(url).getId());
+        assertEquals(0, invertedIndex.getDocumentFrequency(previous.getId(), "кошк"));
+        assertEquals(1, invertedIndex.getDocumentFrequency(next.getId(), "собак"));
+        awaitDeleted(previous.getId());
+        assertTrue(pageRepository.findById(oldPage.getId()).isEmpty());
+    }
+    
+    @Test
+    void testUnfinishedBuildKeepsPreviousGeneration() throws InterruptedException {
+        String url = "https://www.unfinished.test";
+        SiteEntity previous = createSite(url, 1, GenerationState.ACTIVE, IndexingStatus.INDEXED);
+        SiteEntity next = createSite(url, 2, GenerationState.BUILDING, IndexingStatus.FAILED);
+        next.setLastError("Индексация остановлена пользователем");
+        
+        indexGenerations.publish(List.of(next));
+        
+        SiteEntity active = activeSite(url);
+        assertEquals(previous.getId(), active.getId());
+        assertEquals(IndexingStatus.INDEXED, active.getStatus());
+        assertEquals("Индексация остановлена пользователем", active.getLastError());
+        awaitDeleted(next.getId());
+    }
+    
+    @Test
+    void testCurrentSitesPreferBuildingGeneration() {
+        String url = "https://www.current.test";
+        createSite(url, 1, GenerationState.ACTIVE, IndexingStatus.INDEXED);
+        SiteEntity next = createSite(url, 2, GenerationState.BUILDING, IndexingStatus.INDEXING);
+        
+        List<SiteEntity> current = indexGenerations.findCurrentSites();
+        
+        assertEquals(List.of(next.getId()), current.stream()
+                .filter(site -> site.getUrl().equals(url))
+                .map(SiteEntity::getId)
+                .collect(Collectors.toList()));
+    }
+    
+    private SiteEntity activeSite(String url) {
+        return siteRepository.findByUrlAndGenerationState(url, GenerationState.ACTIVE).orElseThrow();
+    }
+    
+    private void awaitDeleted(int siteId) throws InterruptedException {
+        for (int i = 0; i < 100 && siteRepository.existsById(siteId); i++) {
+            Thread.sleep(50);
+        }
+        assertFalse(siteRepository.existsById(siteId));
+    }
+}
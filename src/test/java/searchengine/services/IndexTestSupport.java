@@ -0,0 +1,81 @@
+package searchengine.services;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import searchengine.model.*;
+import searchengine.repository.LemmaRepository;
+import searchengine.repository.PageRepository;
+import searchengine.repository.SiteRepository;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Общие данные для тестов индексации на H2: сайты, страницы и частоты лемм
+ */
+abstract class IndexTestSupport {
+    
+    @Autowired
+    protected PageIndexer pageIndexer;
+    
+    @Autowired
+    protected SiteRepository siteRepository;
+    
+    @Autowired
+    protected PageRepository pageRepository;
+    
+    @Autowired
+    protected LemmaRepository lemmaRepository;
+    
+    protected SiteEntity createSite(String url) {
+        return createSite(url, 1, GenerationState.ACTIVE, IndexingStatus.INDEXED);
+    }
+    
+    protected SiteEntity createSite(String url, int generation, GenerationState state, IndexingStatus status) {
+        SiteEntity site = new SiteEntity();
+        site.setUrl(url);
+        site.setName(url);
+        site.setGeneration(generation);
+        site.setGenerationState(state);
+        site.setStatus(status);
+        site.setStatusTime(LocalDateTime.now());
+        return siteRepository.save(site);
+    }
+    
+    /**
+     * Сохраняет страницу без индексации
+     */
+    protected PageEntity savePage(SiteEntity site, String path, String text) {
+        PageEntity page = new PageEntity();
+        page.setSite(site);
+        page.setPath(path);
+        page.setCode(200);
+        page.setContent(html(text).html());
+        return pageRepository.save(page);
+    }
+    
+    /**
+     * Сохраняет и индексирует страницу
+     */
+    protected PageEntity createPage(SiteEntity site, String path, String text) {
+        PageEntity page = savePage(site, path, text);
+        pageIndexer.indexPageContent(page, html(text), site);
+        return page;
+    }
+    
+    protected Map<String, Integer> frequencies(SiteEntity site) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (LemmaEntity lemma : lemmaRepository.findAll()) {
+            if (lemma.getSite().getId().equals(site.getId())) {
+                frequencies.put(lemma.getLemma(), lemma.getFrequency());
+            }
+        }
+        return frequencies;
+    }
+    
+    protected static Document html(String text) {
+        return Jsoup.parse("<html><body><p>" + text + "</p></body></html>");
+    }
+}
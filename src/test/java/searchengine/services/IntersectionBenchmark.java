@@ -0,0 +1,124 @@
+package searchengine.services;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пересечение списков вхождений при сильно различающихся частотах лемм:
+ * прежняя реализация (распаковка всех списков и слияние) против курсоров
+ * с указателями пропуска, которые проверяют только кандидатов из самого
+ * редкого списка.
+ * Запуск: main() из IDE после mvn test-compile.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IntersectionBenchmark {
+    
+    private static final int PAGES = 200_000;
+    
+    /**
+     * Доля страниц с редкой леммой: 1 из rareEvery
+     */
+    @Param({"10", "1000"})
+    public int rareEvery;
+    
+    private InvertedIndex index;
+    private final Map<String, PostingList> postingLists = new HashMap<>();
+    private List<String> query;
+    
+    @Setup
+    public void setUp() {
+        index = new InvertedIndex(null, null);
+        Random random = new Random(42);
+        for (int pageId = 1; pageId <= PAGES; pageId++) {
+            Map<String, Integer> lemmas = new HashMap<>();
+            if (random.nextInt(10) < 9) {
+                lemmas.put("телефон", 1 + random.nextInt(5));
+            }
+            if (random.nextInt(2) == 0) {
+                lemmas.put("доставк", 1 + random.nextInt(5));
+            }
+            if (random.nextInt(rareEvery) == 0) {
+                lemmas.put("смартфон", 1 + random.nextInt(5));
+            }
+            index.addPage(1, pageId, lemmas);
+            for (Map.Entry<String, Integer> entry : lemmas.entrySet()) {
+                postingLists.computeIfAbsent(entry.getKey(), lemma -> new PostingList())
+                        .add(pageId, entry.getValue());
+            }
+        }
+        query = List.of("телефон", "доставк", "смартфон");
+    }
+    
+    @Benchmark
+    public int decodeAndMerge() {
+        return LegacyIntersection.findPagesWithAllLemmas(postingLists, query).getSize();
+    }
+    
+    @Benchmark
+    public int skipPointers() {
+        return index.findMatches(1, query).getSize();
+    }
+    
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(IntersectionBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+    
+    /**
+     * Пересечение в том виде, в каком оно было в InvertedIndex:
+     * каждый список распаковывается целиком и сливается с результатом
+     */
+    static class LegacyIntersection {
+        
+        static PostingList.Postings findPagesWithAllLemmas(Map<String, PostingList> postingLists,
+                                                           List<String> lemmas) {
+            List<PostingList> lists = new ArrayList<>();
+            for (String lemma : lemmas) {
+                lists.add(postingLists.get(lemma));
+            }
+            lists.sort(Comparator.comparingInt(PostingList::size));
+            
+            PostingList.Postings first = lists.get(0).decode();
+            int[] pageIds = first.getPageIds();
+            int[] ranks = first.getRanks();
+            int size = first.getSize();
+            for (int i = 1; i < lists.size() && size > 0; i++) {
+                size = intersect(pageIds, ranks, size, lists.get(i).decode());
+            }
+            return new PostingList.Postings(pageIds, ranks, size);
+        }
+        
+        private static int intersect(int[] pageIds, int[] ranks, int size, PostingList.Postings other) {
+            int[] otherPageIds = other.getPageIds();
+            int[] otherRanks = other.getRanks();
+            int i = 0;
+            int j = 0;
+            int result = 0;
+            while (i < size && j < other.getSize()) {
+                if (pageIds[i] < otherPageIds[j]) {
+                    i++;
+                } else if (pageIds[i] > otherPageIds[j]) {
+                    j++;
+                } else {
+                    pageIds[result] = pageIds[i];
+                    ranks[result] = ranks[i] + otherRanks[j];
+                    result++;
+                    i++;
+                    j++;
+                }
+            }
+            return result;
+        }
+    }
+}
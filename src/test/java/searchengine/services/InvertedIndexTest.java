@@ -0,0 +1,186 @@
+package searchengine.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InvertedIndexTest {
+    
+    @Test
+    void testPostingListKeepsPagesSorted() {
+        PostingList postingList = new PostingList();
+        postingList.add(10, 2);
+        postingList.add(300, 1);
+        postingList.add(5, 7);
+        postingList.add(100_000, 3);
+        
+        PostingList.Postings postings = postingList.decode();
+        
+        assertEquals(4, postings.getSize());
+        assertArrayEquals(new int[]{5, 10, 300, 100_000}, postings.getPageIds());
+        assertArrayEquals(new int[]{7, 2, 1, 3}, postings.getRanks());
+    }
+    
+    @Test
+    void testPostingListReplacesRankOfExistingPage() {
+        PostingList postingList = new PostingList();
+        postingList.add(1, 1);
+        postingList.add(2, 1);
+        postingList.add(1, 4);
+        
+        PostingList.Postings postings = postingList.decode();
+        
+        assertArrayEquals(new int[]{1, 2}, postings.getPageIds());
+        assertArrayEquals(new int[]{4, 1}, postings.getRanks());
+    }
+    
+    @Test
+    void testPostingListRemove() {
+        PostingList postingList = new PostingList();
+        postingList.add(1, 1);
+        postingList.add(2, 2);
+        postingList.add(3, 3);
+        
+        assertTrue(postingList.remove(2));
+        assertFalse(postingList.remove(2));
+        postingList.add(4, 4);
+        
+        assertArrayEquals(new int[]{1, 3, 4}, postingList.decode().getPageIds());
+    }
+    
+    @Test
+    void testCursorSkipsToPage() {
+        PostingList postingList = new PostingList();
+        for (int pageId = 3; pageId <= 3000; pageId += 3) {
+            postingList.add(pageId, pageId % 7 + 1);
+        }
+        postingList.remove(300);
+        
+        PostingList.Cursor cursor = postingList.cursor();
+        
+        assertTrue(cursor.advanceTo(1));
+        assertEquals(3, cursor.pageId());
+        assertTrue(cursor.advanceTo(299));
+        assertEquals(303, cursor.pageId());
+        assertEquals(303 % 7 + 1, cursor.rank());
+        assertTrue(cursor.advanceTo(2500));
+        assertEquals(2502, cursor.pageId());
+        assertTrue(cursor.advanceTo(2502));
+        assertEquals(2502, cursor.pageId());
+        assertTrue(cursor.advanceTo(3000));
+        assertEquals(3000, cursor.pageId());
+        assertFalse(cursor.advanceTo(3001));
+    }
+    
+    @Test
+    void testFindMatchesOnSkewedLists() {
+        InvertedIndex index = new InvertedIndex(null, null);
+        Random random = new Random(7);
+        Set<Integer> expected = new TreeSet<>();
+        for (int pageId = 1; pageId <= 20_000; pageId++) {
+            Map<String, Integer> lemmas = new HashMap<>();
+            if (random.nextInt(10) < 9) {
+                lemmas.put("част", 1);
+            }
+            if (random.nextInt(10) == 0) {
+                lemmas.put("средн", 2);
+            }
+            if (random.nextInt(500) == 0) {
+                lemmas.put("редк", 3);
+            }
+            if (lemmas.size() == 3) {
+                expected.add(pageId);
+            }
+            index.addPage(1, pageId, lemmas);
+        }
+        
+        InvertedIndex.Matches matches = index.findMatches(1, List.of("част", "средн", "редк"));
+        
+        assertEquals(List.of("редк", "средн", "част"), matches.getLemmas());
+        assertArrayEquals(expected.stream().mapToInt(Integer::intValue).toArray(),
+                          Arrays.copyOf(matches.getPageIds(), matches.getSize()));
+        for (int i = 0; i < matches.getSize(); i++) {
+            assertEquals(3, matches.getRanks()[0][i]);
+            assertEquals(2, matches.getRanks()[1][i]);
+            assertEquals(1, matches.getRanks()[2][i]);
+        }
+    }
+    
+    @Test
+    void testFindPagesWithAllLemmas() {
+        InvertedIndex index = new InvertedIndex(null, null);
+        index.addPage(1, 1, Map.of("слов", 1, "поиск", 2));
+        index.addPage(1, 2, Map.of("слов", 3));
+        index.addPage(1, 3, Map.of("слов", 1, "поиск", 1, "индекс", 5));
+        index.addPage(2, 4, Map.of("слов", 1, "поиск", 1));
+        
+        assertArrayEquals(new int[]{1, 3}, pageIds(index.findPagesWithAllLemmas(1, List.of("слов", "поиск"))));
+        assertArrayEquals(new int[]{3}, pageIds(index.findPagesWithAllLemmas(1, List.of("индекс", "слов"))));
+        assertArrayEquals(new int[]{4}, pageIds(index.findPagesWithAllLemmas(2, List.of("поиск"))));
+        assertEquals(0, index.findPagesWithAllLemmas(1, List.of("слов", "нет")).getSize());
+        assertEquals(3, index.getDocumentFrequency(1, "слов"));
+    }
+    
+    @Test
+    void testFindPagesWithAllLemmasSumsRanks() {
+        InvertedIndex index = new InvertedIndex(null, null);
+        index.addPage(1, 1, Map.of("слов", 1, "поиск", 2));
+        index.addPage(1, 2, Map.of("слов", 3));
+        index.addPage(1, 3, Map.of("слов", 4, "поиск", 1));
+        
+        PostingList.Postings matches = index.findPagesWithAllLemmas(1, List.of("слов", "поиск"));
+        
+        assertArrayEquals(new int[]{1, 3}, pageIds(matches));
+        assertArrayEquals(new int[]{3, 5}, Arrays.copyOf(matches.getRanks(), matches.getSize()));
+    }
+    
+    @Test
+    void testRemovePage() {
+        InvertedIndex index = new InvertedIndex(null, null);
+        index.addPage(1, 1, Map.of("слов", 1, "поиск", 2));
+        index.addPage(1, 2, Map.of("слов", 1, "поиск", 2));
+        
+        index.removePage(1, 1, Arrays.asList("слов", "поиск"));
+        
+        assertArrayEquals(new int[]{2}, pageIds(index.findPagesWithAllLemmas(1, List.of("слов", "поиск"))));
+    }
+    
+    @Test
+    void testFindMatchesKeepsRanksPerLemma() {
+        InvertedIndex index = new InvertedIndex(null, null);
+        index.addPage(1, 1, Map.of("слов", 1, "поиск", 2));
+        index.addPage(1, 2, Map.of("слов", 3));
+        index.addPage(1, 3, Map.of("слов", 4, "поиск", 1));
+        
+        InvertedIndex.Matches matches = index.findMatches(1, List.of("слов", "поиск"));
+        
+        assertEquals(List.of("поиск", "слов"), matches.getLemmas());
+        assertArrayEquals(new int[]{1, 3}, Arrays.copyOf(matches.getPageIds(), matches.getSize()));
+        assertArrayEquals(new int[]{2, 1}, Arrays.copyOf(matches.getRanks()[0], matches.getSize()));
+        assertArrayEquals(new int[]{1, 4}, Arrays.copyOf(matches.getRanks()[1], matches.getSize()));
+    }
+    
+    @Test
+    void testTracksPageLengths() {
+        InvertedIndex index = new InvertedIndex(null, null);
+        index.addPage(1, 1, Map.of("слов", 1, "поиск", 2));
+        index.addPage(1, 2, Map.of("слов", 3));
+        index.addPage(1, 2, Map.of("слов", 5, "индекс", 1));
+        
+        assertEquals(2, index.getPageCount(1));
+        assertEquals(9, index.getTotalLength(1));
+        assertEquals(6, index.getPageLength(1, 2));
+        
+        index.deletePage(1, 1, List.of("слов", "поиск"));
+        
+        assertEquals(1, index.getPageCount(1));
+        assertEquals(6, index.getTotalLength(1));
+        assertEquals(0, index.getPageLength(1, 1));
+    }
+    
+    private static int[] pageIds(PostingList.Postings postings) {
+        return Arrays.copyOf(postings.getPageIds(), postings.getSize());
+    }
+}
@@ -0,0 +1,73 @@
+package searchengine.services;
+
+import org.junit.jupiter.api.Test;
+import searchengine.config.LemmatizerSettings;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LemmaCacheTest {
+    
+    @Test
+    void testAnalysesEachWordOnce() {
+        AtomicInteger calls = new AtomicInteger();
+        Lemmatizer lemmatizer = word -> {
+            calls.incrementAndGet();
+            return word.substring(0, 3);
+        };
+        LemmaCache cache = new LemmaCache(100);
+        
+        assertEquals("сло", cache.get("слово", lemmatizer));
+        assertEquals("сло", cache.get("слово", lemmatizer));
+        assertEquals("сло", cache.get("словами", lemmatizer));
+        
+        assertEquals(2, calls.get());
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+    
+    @Test
+    void testSizeIsBounded() {
+        LemmaCache cache = new LemmaCache(50);
+        for (int i = 0; i < 1000; i++) {
+            cache.get("слово" + i, word -> word);
+        }
+        
+        assertTrue(cache.size() <= 50);
+        assertEquals(1000, cache.getMisses());
+    }
+    
+    @Test
+    void testFrequentWordSurvivesEviction() {
+        LemmaCache cache = new LemmaCache(50);
+        AtomicInteger hotCalls = new AtomicInteger();
+        Lemmatizer lemmatizer = word -> {
+            if (word.equals("частое")) {
+                hotCalls.incrementAndGet();
+            }
+            return word;
+        };
+        for (int i = 0; i < 1000; i++) {
+            cache.get("частое", lemmatizer);
+            cache.get("редкое" + i, lemmatizer);
+        }
+        
+        assertEquals(1, hotCalls.get());
+        assertTrue(cache.size() <= 50);
+    }
+    
+    @Test
+    void testLemmaServiceUsesLemmatizer() {
+        LemmatizerSettings settings = new LemmatizerSettings();
+        LemmaService lemmaService = new LemmaService(String::toUpperCase, settings);
+        
+        assertEquals(Map.of("СЛОВО", 2, "ПОИСК", 1), lemmaService.getLemmas("Слово, слово и поиск"));
+        assertEquals(0, lemmaService.getCache().getHits());
+        assertEquals(2, lemmaService.getCache().getMisses());
+        
+        assertEquals("ПОИСК", lemmaService.getLemma("Поиск"));
+        assertEquals(1, lemmaService.getCache().getHits());
+    }
+}
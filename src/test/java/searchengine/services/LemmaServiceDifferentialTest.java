@@ -0,0 +1,204 @@
+package searchengine.services;
+
+import org.junit.jupiter.api.Test;
+import searchengine.config.LemmatizerSettings;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Сравнивает посимвольный токенизатор LemmaService с прежней реализацией
+ * на регулярных выражениях на случайном и реальном тексте
+ */
+class LemmaServiceDifferentialTest {
+    
+    private static final String[] REAL_TEXTS = {
+        "Повторное повторение слов. Поиск по сайту находит страницы, содержащие все слова запроса.",
+        "Интернет-магазин: смартфоны, планшеты и ноутбуки со скидкой до 30%! Доставка по Москве — бесплатно.",
+        "ЁЛКИ-ПАЛКИ, ёжики и ЕЖЕВИКА; Ёмкость ёмкостями. Красивыми красного красному.",
+        "Mixed текст with English words и русскими словами, e-mail: test@example.com, цена 1 000 ₽.",
+        "Иду идёшь идете идите читать читаешь читаете стоять стоить быть мыть ходить летать.",
+        "Кошками кошкам кошках собаками собаках домами домах коровьего коровьему синими синими."
+    };
+    
+    private static final String ALPHABET =
+            "абвгдеёжзийклмнопрстуфхцчшщъыьэюяАБВГДЕЁЖЗИЙКЛМНОПРСТУФХЦЧШЩЪЫЬЭЮЯ";
+    
+    private static final String NOISE = "abcxyzABCXYZ0123456789 \t\n\r\f\u000B  .,;:!?-—«»()<>&\"'/" +
+                                        "İıKΣÀЀЍѐў😀";
+    
+    private final LemmaService lemmaService = new LemmaService(new SuffixLemmatizer(), new LemmatizerSettings());
+    
+    @Test
+    void testRealTextMatchesLegacy() {
+        for (String text : REAL_TEXTS) {
+            assertEquals(LegacyLemmas.getLemmas(text), lemmaService.getLemmas(text), text);
+        }
+    }
+    
+    @Test
+    void testRandomTextMatchesLegacy() {
+        Random random = new Random(7);
+        for (int i = 0; i < 2000; i++) {
+            String text = randomText(random, 1 + random.nextInt(400));
+            assertEquals(LegacyLemmas.getLemmas(text), lemmaService.getLemmas(text), text);
+        }
+    }
+    
+    @Test
+    void testRandomWordsMatchLegacy() {
+        Random random = new Random(11);
+        for (int i = 0; i < 20000; i++) {
+            String word = randomWord(random);
+            assertEquals(LegacyLemmas.getLemma(word), lemmaService.getLemma(word), word);
+        }
+    }
+    
+    @Test
+    void testStopWordsAndEndingsMatchLegacy() {
+        Random random = new Random(13);
+        StringBuilder text = new StringBuilder();
+        for (String stopWord : LegacyLemmas.STOP_WORDS) {
+            text.append(stopWord).append(' ').append(stopWord.toUpperCase()).append(' ');
+            for (String[] group : LegacyLemmas.ENDINGS) {
+                for (String ending : group) {
+                    text.append(stopWord).append(ending).append(' ');
+                    text.append(randomLetters(random, 1 + random.nextInt(4))).append(ending).append(' ');
+                }
+            }
+        }
+        assertEquals(LegacyLemmas.getLemmas(text.toString()), lemmaService.getLemmas(text));
+    }
+    
+    @Test
+    void testLargeTextMatchesLegacy() {
+        Random random = new Random(17);
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 500_000) {
+            text.append(randomWord(random)).append(random.nextInt(10) == 0 ? ". " : " ");
+        }
+        Map<String, Integer> expected = LegacyLemmas.getLemmas(text.toString());
+        assertEquals(expected, lemmaService.getLemmas(text));
+        assertEquals(expected, lemmaService.getLemmas(text.toString()));
+    }
+    
+    private static String randomText(Random random, int words) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            text.append(randomWord(random));
+            int separators = 1 + random.nextInt(2);
+            for (int j = 0; j < separators; j++) {
+                text.append(NOISE.charAt(random.nextInt(NOISE.length())));
+            }
+        }
+        return text.toString();
+    }
+    
+    private static String randomWord(Random random) {
+        int kind = random.nextInt(10);
+        if (kind == 0) {
+            return LegacyLemmas.STOP_WORDS.get(random.nextInt(LegacyLemmas.STOP_WORDS.size()));
+        }
+        StringBuilder word = new StringBuilder(randomLetters(random, 1 + random.nextInt(7)));
+        if (kind < 6) {
+            String[] group = LegacyLemmas.ENDINGS[random.nextInt(LegacyLemmas.ENDINGS.length)];
+            word.append(group[random.nextInt(group.length)]);
+        }
+        if (kind == 9) {
+            word.insert(random.nextInt(word.length() + 1), NOISE.charAt(random.nextInt(NOISE.length())));
+        }
+        return word.toString();
+    }
+    
+    private static String randomLetters(Random random, int length) {
+        StringBuilder letters = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            letters.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return letters.toString();
+    }
+    
+    /**
+     * Прежняя реализация LemmaService
+     */
+    private static final class LegacyLemmas {
+        
+        static final List<String> STOP_WORDS = List.of(
+            "и", "в", "во", "не", "что", "он", "на", "я", "с", "со", "как", "а", "то", "все",
+            "она", "так", "его", "но", "да", "ты", "к", "у", "же", "вы", "за", "бы", "по",
+            "только", "ее", "мне", "было", "вот", "от", "меня", "еще", "нет", "о", "из", "ему",
+            "теперь", "когда", "даже", "ну", "вдруг", "ли", "если", "уже", "или", "ни", "быть",
+            "был", "него", "до", "вас", "нибудь", "опять", "уж", "вам", "ведь", "там", "потом",
+            "себя", "ничего", "ей", "может", "они", "тут", "где", "есть", "надо", "ней", "для",
+            "мы", "тебя", "их", "чем", "была", "сам", "чтоб", "без", "будто", "чего", "раз",
+            "тоже", "себе", "под", "будет", "ж", "тогда", "кто", "этот", "того", "потому",
+            "этого", "какой", "совсем", "ним", "здесь", "этом", "один", "почти", "мой", "тем",
+            "чтобы", "нее", "сейчас", "были", "куда", "зачем", "всех", "никогда", "можно",
+            "при", "наконец", "два", "об", "другой", "хоть", "после", "над", "больше", "тот",
+            "через", "эти", "нас", "про", "всего", "них", "какая", "много", "разве", "три",
+            "эту", "моя", "впрочем", "хорошо", "свою", "этой", "перед", "иногда", "лучше",
+            "чуть", "том", "нельзя", "такой", "им", "более", "всегда", "конечно", "всю", "между"
+        );
+        
+        static final String[][] ENDINGS = {
+            {"ами", "ями", "ах", "ях", "ам", "ям"},
+            {"ого", "его", "ому", "ему", "ыми", "ими"},
+            {"ешь", "ете", "ишь", "ите", "ать", "ять", "еть", "ить", "ыть"},
+            {"ом", "ем", "им", "ой", "ей", "ий", "ый", "ая", "яя", "ое", "ее", "ые", "ие"},
+            {"ов", "ев", "ам", "ми", "ах", "ой", "ей"},
+            {"а", "я", "у", "ю", "о", "е", "и", "ы", "ь"}
+        };
+        
+        private static final Set<String> STOP_WORD_SET = new HashSet<>(STOP_WORDS);
+        
+        static Map<String, Integer> getLemmas(String text) {
+            Map<String, Integer> lemmas = new HashMap<>();
+            
+            String[] words = text.toLowerCase()
+                    .replaceAll("[^а-яa-zё\\s]", " ")
+                    .trim()
+                    .split("\\s+");
+            
+            for (String word : words) {
+                String lemma = lemmaOf(word);
+                if (lemma != null) {
+                    lemmas.put(lemma, lemmas.getOrDefault(lemma, 0) + 1);
+                }
+            }
+            
+            return lemmas;
+        }
+        
+        static String getLemma(String word) {
+            return lemmaOf(word.toLowerCase());
+        }
+        
+        private static String lemmaOf(String word) {
+            if (word.isEmpty() || word.length() < 3) {
+                return null;
+            }
+            if (!word.matches("[а-яё]+")) {
+                return null;
+            }
+            if (STOP_WORD_SET.contains(word)) {
+                return null;
+            }
+            return lemmatize(word);
+        }
+        
+        private static String lemmatize(String word) {
+            if (word.length() < 4) {
+                return word;
+            }
+            for (String[] endingGroup : ENDINGS) {
+                for (String ending : endingGroup) {
+                    if (word.endsWith(ending) && word.length() - ending.length() >= 3) {
+                        return word.substring(0, word.length() - ending.length());
+                    }
+                }
+            }
+            return word;
+        }
+    }
+}
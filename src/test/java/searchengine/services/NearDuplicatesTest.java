@@ -0,0 +1,61 @@
+package searchengine.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NearDuplicatesTest {
+    
+    @Test
+    void testDetectsNearDuplicateText() {
+        NearDuplicates duplicates = new NearDuplicates(3);
+        String text = words(0, 300);
+        
+        assertTrue(duplicates.add(text));
+        assertFalse(duplicates.add(text.toUpperCase()));
+        assertFalse(duplicates.add(text + " версия для печати"));
+        assertTrue(duplicates.add(words(1000, 1300)));
+        assertTrue(Long.bitCount(NearDuplicates.simHash(text) ^ NearDuplicates.simHash(words(1000, 1300))) > 3);
+    }
+    
+    @Test
+    void testComparesShortTextsExactly() {
+        NearDuplicates duplicates = new NearDuplicates(3);
+        
+        assertTrue(duplicates.add("Корзина пуста"));
+        assertFalse(duplicates.add("корзина, пуста!"));
+        assertTrue(duplicates.add("Корзина не пуста"));
+        assertTrue(duplicates.add(""));
+        assertTrue(duplicates.add(""));
+    }
+    
+    @Test
+    void testZeroDistanceAcceptsSimilarText() {
+        NearDuplicates duplicates = new NearDuplicates(0);
+        String text = words(0, 300);
+        
+        assertTrue(duplicates.add(text));
+        assertFalse(duplicates.add(text));
+        assertTrue(duplicates.add(text + " версия для печати"));
+    }
+    
+    @Test
+    void testZeroDistanceKeepsDistinctPagesOfOneTemplate() {
+        NearDuplicates duplicates = new NearDuplicates(0);
+        String menu = words(0, 400);
+        String footer = words(500, 700);
+        
+        assertTrue(duplicates.add(menu + " Кошки любят рыбу " + footer));
+        assertTrue(duplicates.add(menu + " Собаки любят кости " + footer));
+        assertTrue(Long.bitCount(NearDuplicates.simHash(menu + " Кошки любят рыбу " + footer)
+                                         ^ NearDuplicates.simHash(menu + " Собаки любят кости " + footer)) <= 3);
+        assertFalse(duplicates.add(menu + " кошки, любят рыбу! " + footer));
+    }
+    
+    private static String words(int from, int to) {
+        return IntStream.range(from, to).mapToObj(i -> "слово" + i).collect(Collectors.joining(" "));
+    }
+}
@@ -0,0 +1,96 @@
+package searchengine.services;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import searchengine.model.PageEntity;
+import searchengine.model.SiteEntity;
+import searchengine.repository.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class PageIndexerTest extends IndexTestSupport {
+    
+    @Autowired
+    private InvertedIndex invertedIndex;
+    
+    @Autowired
+    private IndexRepository indexRepository;
+    
+    @Autowired
+    private LemmaDictionary lemmaDictionary;
+    
+    @Test
+    void testReindexAppliesLemmaDelta() {
+        SiteEntity site = createSite("https://www.reindex.test");
+        PageEntity first = savePage(site, "/first", "кошка собака собака");
+        PageEntity second = savePage(site, "/second", "кошка");
+        
+        pageIndexer.indexPageContent(first, html("кошка собака собака"), site);
+        pageIndexer.indexPageContent(second, html("кошка"), site);
+        assertEquals(Map.of("кошк", 2, "собак", 1), frequencies(site));
+        
+        pageIndexer.reindexPageContent(first, html("кошка кошка кошка попугай"), site);
+        
+        assertEquals(Map.of("кошк", 2, "попугай", 1), frequencies(site));
+        assertEquals(Map.of("кошк", 3f, "попугай", 1f), ranks(first));
+        assertEquals(0, invertedIndex.getDocumentFrequency(site.getId(), "собак"));
+        assertEquals(2, invertedIndex.getDocumentFrequency(site.getId(), "кошк"));
+        assertEquals(4, pageRepository.findById(first.getId()).orElseThrow().getLemmaCount());
+        assertEquals(4, invertedIndex.getPageLength(site.getId(), first.getId()));
+    }
+    
+    @Test
+    void testRemovePageReleasesLemmas() {
+        SiteEntity site = createSite("https://www.remove.test");
+        PageEntity first = savePage(site, "/first", "кошка собака");
+        PageEntity second = savePage(site, "/second", "кошка");
+        
+        pageIndexer.indexPageContent(first, html("кошка собака"), site);
+        pageIndexer.indexPageContent(second, html("кошка"), site);
+        
+        pageIndexer.removePage(site.getId(), first.getId());
+        
+        assertEquals(Map.of("кошк", 1), frequencies(site));
+        assertTrue(pageRepository.findById(first.getId()).isEmpty());
+        assertTrue(indexRepository.findLemmaRanksByPageId(first.getId()).isEmpty());
+        assertEquals(0, invertedIndex.getDocumentFrequency(site.getId(), "собак"));
+        assertEquals(1, invertedIndex.getDocumentFrequency(site.getId(), "кошк"));
+    }
+    
+    @Test
+    void testLemmaDictionaryFollowsIndexChanges() {
+        SiteEntity site = createSite("https://www.dictionary.test");
+        lemmaDictionary.preload(site.getId());
+        PageEntity first = savePage(site, "/first", "кошка собака");
+        PageEntity second = savePage(site, "/second", "кошка");
+        
+        pageIndexer.indexPageContent(first, html("кошка собака"), site);
+        pageIndexer.indexPageContent(second, html("кошка"), site);
+        pageIndexer.reindexPageContent(second, html("кошка попугай"), site);
+        pageIndexer.removePage(site.getId(), first.getId());
+        
+        Map<String, Integer> expected = frequencies(site);
+        assertEquals(Map.of("кошк", 1, "попугай", 1), expected);
+        for (String lemma : List.of("кошк", "собак", "попугай")) {
+            LemmaDictionary.Lemma loaded = lemmaDictionary.findLoaded(site.getId(), lemma);
+            assertEquals(expected.getOrDefault(lemma, 0), loaded.getFrequency(), lemma);
+        }
+        lemmaDictionary.evict(site.getId());
+        assertEquals(1, lemmaDictionary.find(site.getId(), "попугай").getFrequency());
+    }
+    
+    private Map<String, Float> ranks(PageEntity page) {
+        Map<String, Float> ranks = new HashMap<>();
+        List<PageLemmaView> lemmas = indexRepository.findLemmaRanksByPageId(page.getId());
+        for (PageLemmaView lemma : lemmas) {
+            ranks.put(lemma.getLemma(), lemma.getRank());
+        }
+        return ranks;
+    }
+}
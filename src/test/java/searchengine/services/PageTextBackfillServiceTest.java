@@ -0,0 +1,50 @@
+package searchengine.services;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import searchengine.model.IndexingStatus;
+import searchengine.model.PageEntity;
+import searchengine.model.SiteEntity;
+import searchengine.repository.PageRepository;
+import searchengine.repository.SiteRepository;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class PageTextBackfillServiceTest {
+    
+    @Autowired
+    private PageTextBackfillService backfillService;
+    
+    @Autowired
+    private SiteRepository siteRepository;
+    
+    @Autowired
+    private PageRepository pageRepository;
+    
+    @Test
+    void testBackfillFillsTitleAndText() {
+        SiteEntity site = new SiteEntity();
+        site.setUrl("https://www.backfill.test");
+        site.setName("Backfill");
+        site.setStatus(IndexingStatus.INDEXED);
+        site.setStatusTime(LocalDateTime.now());
+        site = siteRepository.save(site);
+        
+        PageEntity page = new PageEntity();
+        page.setSite(site);
+        page.setPath("/old");
+        page.setCode(200);
+        page.setContent("<html><head><title>Старая страница</title></head><body><p>Текст страницы</p></body></html>");
+        page = pageRepository.save(page);
+        
+        backfillService.backfill();
+        
+        PageEntity filled = pageRepository.findById(page.getId()).orElseThrow();
+        assertEquals("Старая страница", filled.getTitle());
+        assertEquals("Текст страницы", filled.getText());
+    }
+}
@@ -0,0 +1,81 @@
+package searchengine.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RobotsTxtParserTest {
+    
+    private static final String SITE = "https://example.com";
+    
+    @Test
+    void testLongestMatchWinsAndAllowWinsTies() {
+        RobotsTxtParser robots = parse("User-agent: *\n"
+                                               + "Disallow: /catalog\n"
+                                               + "Allow: /catalog/public\n"
+                                               + "Disallow: /catalog/public/drafts\n"
+                                               + "Allow: /page\n"
+                                               + "Disallow: /page\n");
+        
+        assertTrue(robots.isAllowed(SITE + "/"));
+        assertFalse(robots.isAllowed(SITE + "/catalog/item"));
+        assertTrue(robots.isAllowed(SITE + "/catalog/public/item"));
+        assertFalse(robots.isAllowed(SITE + "/catalog/public/drafts/1"));
+        assertTrue(robots.isAllowed(SITE + "/page"));
+        assertTrue(robots.isAllowed(SITE + "/robots.txt"));
+    }
+    
+    @Test
+    void testWildcardsAndEndAnchor() {
+        RobotsTxtParser robots = parse("User-agent: *\n"
+                                               + "Disallow: /*.pdf$\n"
+                                               + "Disallow: /*?sort=\n"
+                                               + "Disallow: /search$\n"
+                                               + "Allow: /docs/**/*.pdf$\n");
+        
+        assertFalse(robots.isAllowed(SITE + "/files/report.pdf"));
+        assertTrue(robots.isAllowed(SITE + "/files/report.pdf.html"));
+        assertTrue(robots.isAllowed(SITE + "/docs/a/b/manual.pdf"));
+        assertFalse(robots.isAllowed(SITE + "/catalog?sort=price&page=2"));
+        assertTrue(robots.isAllowed(SITE + "/catalog?page=2"));
+        assertFalse(robots.isAllowed(SITE + "/search"));
+        assertTrue(robots.isAllowed(SITE + "/search/results"));
+    }
+    
+    @Test
+    void testUsesOwnAgentGroupBeforeDefault() {
+        String content = "User-agent: *\n"
+                + "Disallow: /\n"
+                + "Crawl-delay: 10\n"
+                + "\n"
+                + "User-agent: Googlebot\n"
+                + "User-agent: Mozilla\n"
+                + "Disallow: /admin # служебный раздел\n"
+                + "Crawl-delay: 1.5\n"
+                + "Sitemap: https://example.com/sitemap.xml\n";
+        
+        RobotsTxtParser robots = new RobotsTxtParser(SITE, "Mozilla/5.0 (compatible)", content);
+        assertTrue(robots.isAllowed(SITE + "/news"));
+        assertFalse(robots.isAllowed(SITE + "/admin/users"));
+        assertEquals(1500, robots.getCrawlDelayMs());
+        assertEquals(List.of("https://example.com/sitemap.xml"), robots.getSitemaps());
+        
+        RobotsTxtParser other = new RobotsTxtParser(SITE, "OtherBot/1.0", content);
+        assertFalse(other.isAllowed(SITE + "/news"));
+        assertEquals(10_000, other.getCrawlDelayMs());
+    }
+    
+    @Test
+    void testEmptyRulesAllowEverything() {
+        RobotsTxtParser robots = parse("User-agent: *\nDisallow:\n");
+        
+        assertTrue(robots.isAllowed(SITE + "/any/path"));
+        assertEquals(0, robots.getCrawlDelayMs());
+    }
+    
+    private static RobotsTxtParser parse(String content) {
+        return new RobotsTxtParser(SITE, "Mozilla/5.0", content);
+    }
+}
@@ -0,0 +1,39 @@
+package searchengine.services;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class SearchMetricsTest {
+    
+    @Autowired
+    private SearchService searchService;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Test
+    void testSearchRecordsLatencyStagesAndQueries() {
+        DistributionSummary queries = meterRegistry.get("search.db.queries").summary();
+        long queriesBefore = queries.count();
+        double totalQueriesBefore = queries.totalAmount();
+        
+        searchService.search("метрики поиска", null, 0, 10);
+        
+        Timer latency = meterRegistry.get("search.latency").tag("mode", "offset").timer();
+        assertTrue(latency.count() >= 1);
+        assertTrue(meterRegistry.get("search.stage").tag("stage", "lemmatize").timer().count() >= 1);
+        assertEquals(queriesBefore + 1, queries.count());
+        assertTrue(queries.totalAmount() > totalQueriesBefore, "Запросы к БД не посчитаны");
+        double lemmaLookups = meterRegistry.get("lemmatizer.cache.hits").functionCounter().count()
+                + meterRegistry.get("lemmatizer.cache.misses").functionCounter().count();
+        assertTrue(lemmaLookups >= 2, "Обращения к кэшу лемм не посчитаны");
+        assertTrue(meterRegistry.get("lemmatizer.cache.size").gauge().value() >= 1);
+    }
+}
@@ -0,0 +1,98 @@
+package searchengine.services;
+
+import org.junit.jupiter.api.Test;
+import searchengine.config.SearchSettings;
+import searchengine.dto.search.SearchResponse;
+import searchengine.model.SiteEntity;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchResultCacheTest {
+    
+    private final IndexVersions indexVersions = new IndexVersions();
+    
+    @Test
+    void testKeyIgnoresLemmaOrder() {
+        SearchResultCache cache = cache(10, 60);
+        SearchResponse response = new SearchResponse();
+        put(cache, SearchResultCache.key(List.of("поиск", "слов"), null, 0, 20), response, 1);
+        
+        assertSame(response, cache.get(SearchResultCache.key(List.of("слов", "поиск"), "", 0, 20)));
+        assertNull(cache.get(SearchResultCache.key(List.of("слов", "поиск"), null, 20, 20)));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(0.5, cache.getHitRate());
+    }
+    
+    @Test
+    void testSiteVersionInvalidatesEntry() {
+        SearchResultCache cache = cache(10, 60);
+        SearchResultCache.Key key = SearchResultCache.key(List.of("слов"), null, 0, 20);
+        put(cache, key, new SearchResponse(), 1, 2);
+        
+        indexVersions.bumpSite(3);
+        assertNotNull(cache.get(key));
+        
+        indexVersions.bumpSite(2);
+        assertNull(cache.get(key));
+        assertEquals(0, cache.size());
+    }
+    
+    @Test
+    void testSiteSetVersionInvalidatesEntry() {
+        SearchResultCache cache = cache(10, 60);
+        SearchResultCache.Key key = SearchResultCache.key(List.of("слов"), null, 0, 20);
+        put(cache, key, new SearchResponse(), 1);
+        
+        indexVersions.bumpSiteSet();
+        
+        assertNull(cache.get(key));
+    }
+    
+    @Test
+    void testExpiredEntryIsMissed() {
+        SearchResultCache cache = cache(10, 0);
+        SearchResultCache.Key key = SearchResultCache.key(List.of("слов"), null, 0, 20);
+        put(cache, key, new SearchResponse(), 1);
+        
+        assertNull(cache.get(key));
+    }
+    
+    @Test
+    void testEvictsLeastRecentlyUsed() {
+        SearchResultCache cache = cache(2, 60);
+        SearchResultCache.Key first = SearchResultCache.key(List.of("первый"), null, 0, 20);
+        SearchResultCache.Key second = SearchResultCache.key(List.of("второй"), null, 0, 20);
+        SearchResultCache.Key third = SearchResultCache.key(List.of("трет"), null, 0, 20);
+        put(cache, first, new SearchResponse(), 1);
+        put(cache, second, new SearchResponse(), 1);
+        cache.get(first);
+        put(cache, third, new SearchResponse(), 1);
+        
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get(first));
+        assertNull(cache.get(second));
+        assertNotNull(cache.get(third));
+    }
+    
+    private SearchResultCache cache(int size, long ttlSeconds) {
+        SearchSettings settings = new SearchSettings();
+        settings.setCacheSize(size);
+        settings.setCacheTtlSeconds(ttlSeconds);
+        return new SearchResultCache(settings, indexVersions);
+    }
+    
+    private static void put(SearchResultCache cache, SearchResultCache.Key key, SearchResponse response,
+                            int... siteIds) {
+        SearchResultCache.Versions versions = cache.snapshot();
+        SiteEntity[] sites = new SiteEntity[siteIds.length];
+        for (int i = 0; i < siteIds.length; i++) {
+            sites[i] = new SiteEntity();
+            sites[i].setId(siteIds[i]);
+        }
+        versions.captureSites(List.of(sites));
+        cache.put(key, versions, response);
+    }
+}
@@ -0,0 +1,140 @@
+package searchengine.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import searchengine.config.LemmatizerSettings;
+import searchengine.config.SearchSettings;
+import searchengine.dto.search.SearchItem;
+import searchengine.dto.search.SearchResponse;
+import searchengine.exception.InvalidSearchCursorException;
+import searchengine.model.GenerationState;
+import searchengine.model.SiteEntity;
+import searchengine.repository.PageRepository;
+import searchengine.repository.PageTextView;
+import searchengine.repository.SiteRepository;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class SearchServiceCursorTest {
+    
+    private final SiteRepository siteRepository = mock(SiteRepository.class);
+    private final PageRepository pageRepository = mock(PageRepository.class);
+    private final LemmaDictionary lemmaDictionary = mock(LemmaDictionary.class);
+    private final InvertedIndex invertedIndex = new InvertedIndex(null, null);
+    private final IndexVersions indexVersions = new IndexVersions();
+    private final SearchSettings settings = new SearchSettings();
+    private SearchService searchService;
+    
+    @BeforeEach
+    void setUp() {
+        LemmaService lemmaService = new LemmaService(new SuffixLemmatizer(), new LemmatizerSettings());
+        SearchResultCache cache = new SearchResultCache(settings, indexVersions);
+        searchService = new SearchService(siteRepository, pageRepository, lemmaService, lemmaDictionary,
+                                          invertedIndex, new SnippetGenerator(lemmaService), cache, indexVersions,
+                                          settings, new SearchMetrics(new SimpleMeterRegistry(), cache));
+        searchService.startExecutor();
+        
+        when(siteRepository.findByGenerationState(GenerationState.ACTIVE)).thenReturn(List.of(site(1), site(2)));
+        when(lemmaDictionary.find(anyInt(), eq("кошк")))
+                .thenAnswer(invocation -> new LemmaDictionary.Lemma(1, "кошк", 1));
+        when(pageRepository.findTextsByIdIn(any())).thenAnswer(invocation -> {
+            Collection<Integer> ids = invocation.getArgument(0);
+            return ids.stream().map(SearchServiceCursorTest::page).collect(Collectors.toList());
+        });
+        for (int pageId = 1; pageId <= 25; pageId++) {
+            int siteId = pageId % 2 + 1;
+            invertedIndex.addPage(siteId, pageId, Map.of("кошк", pageId % 4 + 1, "прочий", pageId % 7 + 1));
+        }
+    }
+    
+    @AfterEach
+    void tearDown() {
+        searchService.shutdownExecutor();
+    }
+    
+    @Test
+    void testCursorPagesMatchOffsetPages() {
+        assertCursorPagesMatchOffsetPages();
+    }
+    
+    @Test
+    void testCursorPagesMatchOffsetPagesWithBm25() {
+        settings.setScoring(SearchSettings.Scoring.BM25);
+        assertCursorPagesMatchOffsetPages();
+    }
+    
+    private void assertCursorPagesMatchOffsetPages() {
+        List<String> expected = uris(searchService.search("кошка", null, 0, 25));
+        
+        List<String> paged = new ArrayList<>();
+        String cursor = null;
+        int requests = 0;
+        do {
+            SearchResponse response = searchService.searchAfter("кошка", null, cursor, 10);
+            assertEquals(25, response.getCount());
+            paged.addAll(uris(response));
+            cursor = response.getNextCursor();
+            requests++;
+        } while (cursor != null);
+        
+        assertEquals(3, requests);
+        assertEquals(25, expected.size());
+        assertEquals(expected, paged);
+    }
+    
+    @Test
+    void testCursorIsRejectedAfterIndexChange() {
+        String cursor = searchService.searchAfter("кошка", null, null, 10).getNextCursor();
+        assertNotNull(cursor);
+        
+        indexVersions.bumpSite(2);
+        
+        assertThrows(InvalidSearchCursorException.class,
+                     () -> searchService.searchAfter("кошка", null, cursor, 10));
+        assertThrows(InvalidSearchCursorException.class,
+                     () -> searchService.searchAfter("кошка", null, "не курсор", 10));
+    }
+    
+    private static List<String> uris(SearchResponse response) {
+        return response.getData().stream().map(SearchItem::getUri).collect(Collectors.toList());
+    }
+    
+    private static SiteEntity site(int id) {
+        SiteEntity site = new SiteEntity();
+        site.setId(id);
+        site.setUrl("https://site" + id + ".test");
+        site.setName("Сайт " + id);
+        return site;
+    }
+    
+    private static PageTextView page(int id) {
+        return new PageTextView() {
+            @Override
+            public Integer getId() {
+                return id;
+            }
+            
+            @Override
+            public String getPath() {
+                return "/" + id;
+            }
+            
+            @Override
+            public String getTitle() {
+                return "Страница " + id;
+            }
+            
+            @Override
+            public String getText() {
+                return "кошка";
+            }
+        };
+    }
+}
@@ -0,0 +1,114 @@
+package searchengine.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import searchengine.config.LemmatizerSettings;
+import searchengine.config.SearchSettings;
+import searchengine.dto.search.SearchItem;
+import searchengine.dto.search.SearchResponse;
+import searchengine.model.GenerationState;
+import searchengine.model.SiteEntity;
+import searchengine.repository.PageRepository;
+import searchengine.repository.PageTextView;
+import searchengine.repository.SiteRepository;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class SearchServiceDeadlineTest {
+    
+    private final SiteRepository siteRepository = mock(SiteRepository.class);
+    private final PageRepository pageRepository = mock(PageRepository.class);
+    private final LemmaDictionary lemmaDictionary = mock(LemmaDictionary.class);
+    private final InvertedIndex invertedIndex = new InvertedIndex(null, null);
+    private final SearchSettings settings = new SearchSettings();
+    private SearchResultCache cache;
+    private SearchService searchService;
+    
+    @BeforeEach
+    void setUp() {
+        settings.setDeadlineMs(200);
+        LemmaService lemmaService = new LemmaService(new SuffixLemmatizer(), new LemmatizerSettings());
+        IndexVersions indexVersions = new IndexVersions();
+        cache = new SearchResultCache(settings, indexVersions);
+        searchService = new SearchService(siteRepository, pageRepository, lemmaService, lemmaDictionary,
+                                          invertedIndex, new SnippetGenerator(lemmaService), cache,
+                                          indexVersions, settings, new SearchMetrics(new SimpleMeterRegistry(), cache));
+        searchService.startExecutor();
+        
+        List<SiteEntity> sites = List.of(site(1), site(2), site(3));
+        when(siteRepository.findByGenerationState(GenerationState.ACTIVE)).thenReturn(sites);
+        when(lemmaDictionary.find(anyInt(), eq("кошк")))
+                .thenAnswer(invocation -> new LemmaDictionary.Lemma(1, "кошк", 1));
+        when(lemmaDictionary.find(eq(2), eq("кошк"))).thenAnswer(invocation -> {
+            Thread.sleep(5_000);
+            return new LemmaDictionary.Lemma(1, "кошк", 1);
+        });
+        when(pageRepository.findTextsByIdIn(any())).thenAnswer(invocation -> {
+            Collection<Integer> ids = invocation.getArgument(0);
+            return ids.stream().map(SearchServiceDeadlineTest::page).collect(Collectors.toList());
+        });
+        for (int siteId = 1; siteId <= 3; siteId++) {
+            invertedIndex.addPage(siteId, siteId * 100, Map.of("кошк", siteId));
+            for (int pageId = 1; pageId < 10; pageId++) {
+                invertedIndex.addPage(siteId, siteId * 100 + pageId, Map.of("прочий", 1));
+            }
+        }
+    }
+    
+    @AfterEach
+    void tearDown() {
+        searchService.shutdownExecutor();
+    }
+    
+    @Test
+    void testSlowSiteIsLeftOutAfterDeadline() {
+        long start = System.nanoTime();
+        SearchResponse response = searchService.search("кошка", null, 0, 10);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        
+        assertTrue(elapsedMs < 2_000, "Поиск занял " + elapsedMs + " мс");
+        assertEquals(2, response.getCount());
+        assertEquals(Set.of("/100", "/300"),
+                     response.getData().stream().map(SearchItem::getUri).collect(Collectors.toSet()));
+        assertEquals(0, cache.size());
+    }
+    
+    private static SiteEntity site(int id) {
+        SiteEntity site = new SiteEntity();
+        site.setId(id);
+        site.setUrl("https://site" + id + ".test");
+        site.setName("Сайт " + id);
+        return site;
+    }
+    
+    private static PageTextView page(int id) {
+        return new PageTextView() {
+            @Override
+            public Integer getId() {
+                return id;
+            }
+            
+            @Override
+            public String getPath() {
+                return "/" + id;
+            }
+            
+            @Override
+            public String getTitle() {
+                return "Страница " + id;
+            }
+            
+            @Override
+            public String getText() {
+                return "кошка";
+            }
+        };
+    }
+}
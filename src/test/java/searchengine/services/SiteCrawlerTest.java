@@ -0,0 +1,395 @@
+package searchengine.services;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import searchengine.config.CrawlerSettings;
+import searchengine.model.PageEntity;
+import searchengine.model.SiteEntity;
+import searchengine.repository.PageFetchView;
+import searchengine.repository.PageRepository;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class SiteCrawlerTest {
+    
+    private static final Map<String, String> PAGES = Map.of(
+        "/", "<a href=\"/a\">a</a> <a href=\"/b\">b</a> <a href=\"/image.png\">img</a>",
+        "/a", "<a href=\"/b\">b</a> <a href=\"/c\">c</a> <a href=\"https://other.example/\">other</a>",
+        "/b", "<a href=\"/c\">c</a> <a href=\"/a#top\">a</a>",
+        "/c", "<a href=\"/a\">a</a>"
+    );
+    
+    private volatile Map<String, String> pages = PAGES;
+    // Файлы, которые отдаются как есть: robots.txt и карты сайта
+    private volatile Map<String, String> files = Map.of();
+    private HttpServer server;
+    private String siteUrl;
+    private final Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private volatile long responseDelayMs;
+    private final SiteStatistics siteStatistics = mock(SiteStatistics.class);
+    
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            requests.computeIfAbsent(path, p -> new AtomicInteger()).incrementAndGet();
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(responseDelayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            inFlight.decrementAndGet();
+            if (files.containsKey(path)) {
+                byte[] bytes = files.get(path).getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, bytes.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(bytes);
+                }
+                return;
+            }
+            if (path.equals("/a")) {
+                exchange.getResponseHeaders().add("ETag", "\"v1\"");
+                if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    exchange.sendResponseHeaders(304, -1);
+                    exchange.close();
+                    return;
+                }
+            }
+            byte[] bytes = html(path).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "text/html; charset=utf-8");
+            exchange.sendResponseHeaders(pages.containsKey(path) ? 200 : 404, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.start();
+        siteUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+    
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+    
+    @Test
+    void testCrawlsEveryPageOnce() throws Exception {
+        PageRepository pageRepository = mock(PageRepository.class);
+        List<String> savedPaths = Collections.synchronizedList(new ArrayList<>());
+        when(pageRepository.save(any(PageEntity.class))).thenAnswer(invocation -> {
+            PageEntity page = invocation.getArgument(0);
+            savedPaths.add(page.getPath());
+            return page;
+        });
+        PageIndexer pageIndexer = mock(PageIndexer.class);
+        
+        SiteCrawler crawler = new SiteCrawler(site(), settings(10), pageRepository, pageIndexer,
+                                              siteStatistics, new RobotsTxtParser(siteUrl), () -> true,
+                                              new Semaphore(16), Map.of(), progress());
+        crawler.crawl();
+        
+        assertEquals(Set.of("/", "/a", "/b", "/c"), new HashSet<>(savedPaths));
+        assertEquals(4, savedPaths.size());
+        verify(pageIndexer, times(4)).indexPageContent(any(), any(), any());
+        verify(siteStatistics, times(4)).pageAdded(1);
+        for (String path : PAGES.keySet()) {
+            assertEquals(1, requests.get(path).get(), path);
+        }
+        assertFalse(requests.containsKey("/image.png"));
+    }
+    
+    @Test
+    void testKeepsPolitenessDelayBetweenRequests() throws Exception {
+        PageRepository pageRepository = mock(PageRepository.class);
+        when(pageRepository.save(any(PageEntity.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        
+        long delay = 100;
+        SiteCrawler crawler = new SiteCrawler(site(), settings(delay), pageRepository, mock(PageIndexer.class),
+                                              siteStatistics, new RobotsTxtParser(siteUrl), () -> true,
+                                              new Semaphore(16), Map.of(), progress());
+        long start = System.nanoTime();
+        crawler.crawl();
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        
+        assertTrue(elapsedMs >= (PAGES.size() - 1) * delay, "Обход занял " + elapsedMs + " мс");
+    }
+    
+    @Test
+    void testStopsWhenIndexingIsCancelled() throws Exception {
+        PageRepository pageRepository = mock(PageRepository.class);
+        AtomicBoolean running = new AtomicBoolean(true);
+        when(pageRepository.save(any(PageEntity.class))).thenAnswer(invocation -> {
+            running.set(false);
+            return invocation.getArgument(0);
+        });
+        
+        SiteCrawler crawler = new SiteCrawler(site(), settings(10), pageRepository, mock(PageIndexer.class),
+                                              siteStatistics, new RobotsTxtParser(siteUrl), running::get,
+                                              new Semaphore(16), Map.of(), progress());
+        crawler.crawl();
+        
+        verify(pageRepository, times(1)).save(any(PageEntity.class));
+    }
+    
+    @Test
+    void testSharesGlobalFetchLimitBetweenSites() throws Exception {
+        PageRepository pageRepository = mock(PageRepository.class);
+        when(pageRepository.save(any(PageEntity.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        responseDelayMs = 50;
+        Semaphore globalFetchSlots = new Semaphore(1);
+        
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                SiteCrawler crawler = new SiteCrawler(site(), settings(0), pageRepository, mock(PageIndexer.class),
+                                                      siteStatistics, new RobotsTxtParser(siteUrl), () -> true,
+                                                      globalFetchSlots, Map.of(), progress());
+                futures.add(executor.submit(() -> {
+                    crawler.crawl();
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        
+        assertEquals(1, maxInFlight.get());
+        assertEquals(1, globalFetchSlots.availablePermits());
+        verify(pageRepository, times(8)).save(any(PageEntity.class));
+    }
+    
+    @Test
+    void testRecrawlSkipsUnchangedPages() throws Exception {
+        PageRepository pageRepository = mock(PageRepository.class);
+        List<String> savedPaths = Collections.synchronizedList(new ArrayList<>());
+        when(pageRepository.save(any(PageEntity.class))).thenAnswer(invocation -> {
+            PageEntity page = invocation.getArgument(0);
+            savedPaths.add(page.getPath());
+            return page;
+        });
+        when(pageRepository.findContentById(2)).thenReturn(html("/a"));
+        PageEntity changed = new PageEntity();
+        changed.setId(3);
+        when(pageRepository.findById(3)).thenReturn(Optional.of(changed));
+        PageIndexer pageIndexer = mock(PageIndexer.class);
+        
+        Map<String, PageFetchView> knownPages = Map.of(
+            "/", knownPage(1, "/", null, PageContentHash.of(html("/").getBytes(StandardCharsets.UTF_8))),
+            "/a", knownPage(2, "/a", "\"v1\"", "stale"),
+            "/b", knownPage(3, "/b", null, "stale"),
+            "/gone", knownPage(4, "/gone", null, "stale")
+        );
+        SiteCrawler crawler = new SiteCrawler(site(), settings(10), pageRepository, pageIndexer,
+                                              siteStatistics, new RobotsTxtParser(siteUrl), () -> true,
+                                              new Semaphore(16), knownPages, progress());
+        crawler.crawl();
+        
+        assertEquals(Set.of("/b", "/c"), new HashSet<>(savedPaths));
+        verify(pageIndexer).reindexPageContent(eq(changed), any(), any());
+        verify(pageIndexer, times(1)).indexPageContent(any(), any(), any());
+        assertEquals(Set.of("/", "/a", "/b", "/c"), crawler.getAlivePaths());
+    }
+    
+    @Test
+    void testKeepsPageAliveWhenParseFails() throws Exception {
+        PageRepository pageRepository = mock(PageRepository.class);
+        when(pageRepository.save(any(PageEntity.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        // Сервер отвечает 304, а сохранённого HTML нет: разбор падает
+        when(pageRepository.findContentById(2)).thenReturn(null);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        CrawlProgress progress = new CrawlProgress(siteUrl, "Test", registry);
+        
+        SiteCrawler crawler = new SiteCrawler(site(), settings(10), pageRepository, mock(PageIndexer.class),
+                                              siteStatistics, new RobotsTxtParser(siteUrl), () -> true,
+                                              new Semaphore(16), Map.of("/a", knownPage(2, "/a", "\"v1\"", "stale")),
+                                              progress);
+        crawler.crawl();
+        
+        assertEquals(1, progress.getErrors(CrawlProgress.ErrorType.PARSE));
+        assertEquals(Set.of("/", "/a", "/b", "/c"), crawler.getAlivePaths());
+    }
+    
+    @Test
+    void testCountsProgressWithoutDatabase() throws Exception {
+        PageRepository pageRepository = mock(PageRepository.class);
+        when(pageRepository.save(any(PageEntity.class))).thenAnswer(invocation -> {
+            PageEntity page = invocation.getArgument(0);
+            if (page.getPath().equals("/c")) {
+                throw new IllegalStateException("Ошибка записи");
+            }
+            return page;
+        });
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        CrawlProgress progress = new CrawlProgress(siteUrl, "Test", registry);
+        
+        SiteCrawler crawler = new SiteCrawler(site(), settings(10), pageRepository, mock(PageIndexer.class),
+                                              siteStatistics, new RobotsTxtParser(siteUrl), () -> true,
+                                              new Semaphore(16), Map.of(), progress);
+        crawler.crawl();
+        
+        assertTrue(progress.isFinished());
+        assertEquals(4, progress.getPagesFetched());
+        assertEquals(3, progress.getPagesSaved());
+        long bytes = PAGES.keySet().stream()
+                .mapToLong(path -> html(path).getBytes(StandardCharsets.UTF_8).length)
+                .sum();
+        assertEquals(bytes, progress.getBytesDownloaded());
+        assertEquals(0, progress.getFrontierSize());
+        assertEquals(4, progress.getStageCount(CrawlProgress.Stage.FETCH));
+        assertEquals(4, progress.getStageCount(CrawlProgress.Stage.PARSE));
+        assertEquals(3, progress.getStageCount(CrawlProgress.Stage.PERSIST));
+        assertEquals(1, progress.getErrors(CrawlProgress.ErrorType.PERSIST));
+        assertEquals(4, registry.get("crawl.pages").tag("site", siteUrl).counter().count());
+        assertEquals(1, registry.get("crawl.errors").tag("type", "persist").counter().count());
+    }
+    
+    @Test
+    void testSkipsUrlVariantsAliasesAndDuplicates() throws Exception {
+        String text = IntStream.range(0, 300).mapToObj(i -> "слово" + i).collect(Collectors.joining(" "));
+        pages = Map.of(
+            "/", "<a href=\"/a?utm_source=mail\">a</a> <a href=\"/a/\">a</a> <a href=\"/alias\">alias</a>",
+            "/a", text + " <a href=\"/print/a\">print</a> <a href=\"/A/../a?utm_medium=x#top\">a</a>",
+            "/print/a", text + " версия для печати",
+            "/alias", "<link rel=\"canonical\" href=\"/a\">Страница под другим адресом"
+        );
+        CrawlerSettings settings = settings(10);
+        settings.setDuplicateMaxDistance(3);
+        PageRepository pageRepository = mock(PageRepository.class);
+        List<String> savedPaths = Collections.synchronizedList(new ArrayList<>());
+        when(pageRepository.save(any(PageEntity.class))).thenAnswer(invocation -> {
+            PageEntity page = invocation.getArgument(0);
+            savedPaths.add(page.getPath());
+            return page;
+        });
+        
+        SiteCrawler crawler = new SiteCrawler(site(), settings, pageRepository, mock(PageIndexer.class),
+                                              siteStatistics, new RobotsTxtParser(siteUrl), () -> true,
+                                              new Semaphore(16), Map.of(), progress());
+        crawler.crawl();
+        
+        assertEquals(List.of("/", "/a"), savedPaths.stream().sorted().collect(Collectors.toList()));
+        assertEquals(Set.of("/", "/a"), crawler.getAlivePaths());
+        for (String path : pages.keySet()) {
+            assertEquals(1, requests.get(path).get(), path);
+        }
+    }
+    
+    @Test
+    void testFollowsRobotsRulesCrawlDelayAndSitemaps() throws Exception {
+        pages = Map.of(
+            "/", "<a href=\"/a\">a</a> <a href=\"/private/x\">x</a>",
+            "/a", "Страница a",
+            "/deep", "Страница только из карты сайта",
+            "/private/open", "Открытая страница закрытого раздела"
+        );
+        files = Map.of(
+            "/robots.txt", "User-agent: *\nDisallow: /private\nAllow: /private/open$\nCrawl-delay: 0.2\n"
+                    + "Sitemap: " + siteUrl + "/sitemap_index.xml\n",
+            "/sitemap_index.xml", "<sitemapindex><sitemap><loc>" + siteUrl + "/sitemap.xml</loc></sitemap></sitemapindex>",
+            "/sitemap.xml", "<urlset>"
+                    + "<url><loc>" + siteUrl + "/deep</loc></url>"
+                    + "<url><loc>" + siteUrl + "/private/open</loc></url>"
+                    + "<url><loc>" + siteUrl + "/private/closed</loc></url>"
+                    + "<url><loc>https://other.example/page</loc></url>"
+                    + "</urlset>"
+        );
+        PageRepository pageRepository = mock(PageRepository.class);
+        List<String> savedPaths = Collections.synchronizedList(new ArrayList<>());
+        when(pageRepository.save(any(PageEntity.class))).thenAnswer(invocation -> {
+            PageEntity page = invocation.getArgument(0);
+            savedPaths.add(page.getPath());
+            return page;
+        });
+        
+        SiteCrawler crawler = new SiteCrawler(site(), settings(10), pageRepository, mock(PageIndexer.class),
+                                              siteStatistics, new RobotsTxtParser(siteUrl), () -> true,
+                                              new Semaphore(16), Map.of(), progress());
+        long start = System.nanoTime();
+        crawler.crawl();
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        
+        assertEquals(Set.of("/", "/a", "/deep", "/private/open"), new HashSet<>(savedPaths));
+        assertFalse(requests.containsKey("/private/x"));
+        assertFalse(requests.containsKey("/private/closed"));
+        // Четыре страницы и две карты сайта загружаются с интервалом Crawl-delay
+        assertTrue(elapsedMs >= 5 * 200, "Обход занял " + elapsedMs + " мс");
+    }
+    
+    private SiteEntity site() {
+        SiteEntity site = new SiteEntity();
+        site.setId(1);
+        site.setUrl(siteUrl);
+        site.setName("Test");
+        return site;
+    }
+    
+    private String html(String path) {
+        String body = pages.getOrDefault(path, "");
+        return "<html><head><title>" + path + "</title></head><body>" + body + "</body></html>";
+    }
+    
+    private static PageFetchView knownPage(int id, String path, String etag, String contentHash) {
+        return new PageFetchView() {
+            @Override
+            public Integer getId() {
+                return id;
+            }
+            
+            @Override
+            public String getPath() {
+                return path;
+            }
+            
+            @Override
+            public String getEtag() {
+                return etag;
+            }
+            
+            @Override
+            public String getLastModified() {
+                return null;
+            }
+            
+            @Override
+            public String getContentHash() {
+                return contentHash;
+            }
+        };
+    }
+    
+    private CrawlProgress progress() {
+        return new CrawlProgress(siteUrl, "Test", new SimpleMeterRegistry());
+    }
+    
+    private static CrawlerSettings settings(long politenessDelayMs) {
+        CrawlerSettings settings = new CrawlerSettings();
+        settings.setPolitenessDelayMs(politenessDelayMs);
+        settings.setFetchWorkers(2);
+        settings.setStageQueueCapacity(2);
+        return settings;
+    }
+}
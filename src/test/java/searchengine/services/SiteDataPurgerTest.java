@@ -0,0 +1,80 @@
+package searchengine.services;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.model.PageEntity;
+import searchengine.model.SiteEntity;
+import searchengine.repository.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class SiteDataPurgerTest extends IndexTestSupport {
+    
+    @Autowired
+    private SiteDataPurger siteDataPurger;
+    
+    @Autowired
+    private InvertedIndex invertedIndex;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @Test
+    void testPurgePagesReleasesLemmasOfAllPages() {
+        SiteEntity site = createSite("https://www.purge-pages.test");
+        PageEntity first = createPage(site, "/first", "кошка собака");
+        PageEntity second = createPage(site, "/second", "кошка собака");
+        PageEntity third = createPage(site, "/third", "кошка");
+        
+        siteDataPurger.purgePages(site.getId(), List.of(first.getId(), second.getId()));
+        
+        assertEquals(Map.of("кошк", 1), frequencies(site));
+        assertEquals(List.of(third.getId()), pageIds(site));
+        assertEquals(1, invertedIndex.getDocumentFrequency(site.getId(), "кошк"));
+        assertEquals(0, invertedIndex.getDocumentFrequency(site.getId(), "собак"));
+    }
+    
+    @Test
+    void testRolledBackPurgeKeepsPagesInMemory() {
+        SiteEntity site = createSite("https://www.purge-rollback.test");
+        PageEntity page = createPage(site, "/", "кошка");
+        
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            siteDataPurger.purgePages(site.getId(), List.of(page.getId()));
+            assertEquals(1, invertedIndex.getDocumentFrequency(site.getId(), "кошк"));
+            status.setRollbackOnly();
+        });
+        
+        assertEquals(List.of(page.getId()), pageIds(site));
+        assertEquals(1, invertedIndex.getDocumentFrequency(site.getId(), "кошк"));
+        assertEquals(1, invertedIndex.getPageCount(site.getId()));
+    }
+    
+    @Test
+    void testPurgeSitesRemovesOnlyGivenSites() {
+        SiteEntity purged = createSite("https://www.purge-site.test");
+        createPage(purged, "/", "кошка");
+        SiteEntity kept = createSite("https://www.keep-site.test");
+        createPage(kept, "/", "кошка");
+        
+        siteDataPurger.purgeSites(List.of(purged.getId()));
+        
+        assertFalse(siteRepository.existsById(purged.getId()));
+        assertEquals(Map.of("кошк", 1), frequencies(kept));
+        assertEquals(1, pageIds(kept).size());
+    }
+    
+    private List<Integer> pageIds(SiteEntity site) {
+        return pageRepository.findFetchMetadataBySite(site).stream()
+                .map(PageFetchView::getId)
+                .collect(Collectors.toList());
+    }
+}
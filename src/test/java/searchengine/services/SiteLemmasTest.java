@@ -0,0 +1,62 @@
+package searchengine.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SiteLemmasTest {
+    
+    @Test
+    void testFindsLoadedLemmas() {
+        SiteLemmas lemmas = new SiteLemmas(List.of("слов", "кошк", "собак"), new int[]{1, 2, 3}, new int[]{5, 1, 0});
+        
+        assertArrayEquals(new int[]{1, 5}, lemmas.find("слов"));
+        assertArrayEquals(new int[]{2, 1}, lemmas.find("кошк"));
+        assertNull(lemmas.find("собак"));
+        assertNull(lemmas.find("кош"));
+        assertNull(lemmas.find("кошка"));
+        assertEquals(2, lemmas.size());
+    }
+    
+    @Test
+    void testAddAndReleaseOccurrences() {
+        SiteLemmas lemmas = new SiteLemmas(List.of("кошк"), new int[]{1}, new int[]{1});
+        
+        lemmas.addOccurrences(Map.of("кошк", 1, "попугай", 7));
+        assertArrayEquals(new int[]{1, 2}, lemmas.find("кошк"));
+        assertArrayEquals(new int[]{7, 1}, lemmas.find("попугай"));
+        assertEquals(2, lemmas.size());
+        
+        lemmas.releaseOccurrences(Map.of("кошк", 2, "попугай", 1));
+        assertNull(lemmas.find("кошк"));
+        assertNull(lemmas.find("попугай"));
+        assertEquals(0, lemmas.size());
+        
+        lemmas.addOccurrences(Map.of("кошк", 9));
+        assertArrayEquals(new int[]{9, 1}, lemmas.find("кошк"));
+        assertEquals(1, lemmas.size());
+    }
+    
+    @Test
+    void testMergeKeepsEveryLemma() {
+        SiteLemmas lemmas = new SiteLemmas(new ArrayList<>(), new int[0], new int[0]);
+        Map<String, int[]> expected = new HashMap<>();
+        Random random = new Random(5);
+        for (int page = 0; page < 200; page++) {
+            Map<String, Integer> ids = new HashMap<>();
+            for (int i = 0; i < 50; i++) {
+                String lemma = "лемма" + random.nextInt(5000);
+                int id = lemma.hashCode() & 0xffff;
+                ids.put(lemma, id);
+            }
+            lemmas.addOccurrences(ids);
+            ids.forEach((lemma, id) -> expected.merge(lemma, new int[]{id, 1},
+                                                       (a, b) -> new int[]{a[0], a[1] + 1}));
+        }
+        
+        assertEquals(expected.size(), lemmas.size());
+        expected.forEach((lemma, entry) -> assertArrayEquals(entry, lemmas.find(lemma), lemma));
+    }
+}
@@ -0,0 +1,86 @@
+package searchengine.services;
+
+import org.junit.jupiter.api.Test;
+import searchengine.model.GenerationState;
+import searchengine.model.SiteEntity;
+import searchengine.repository.*;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+class SiteStatisticsTest {
+    
+    private final SiteRepository siteRepository = mock(SiteRepository.class);
+    private final PageRepository pageRepository = mock(PageRepository.class);
+    private final LemmaRepository lemmaRepository = mock(LemmaRepository.class);
+    private final LemmaDictionary lemmaDictionary = mock(LemmaDictionary.class);
+    private final SiteStatistics siteStatistics =
+            new SiteStatistics(siteRepository, pageRepository, lemmaRepository, lemmaDictionary);
+    
+    @Test
+    void testCountsWritesBetweenReconciliations() {
+        SiteEntity site = site(1, "https://a.test", GenerationState.ACTIVE);
+        when(siteRepository.findByGenerationStateIn(anyCollection())).thenReturn(List.of(site));
+        when(pageRepository.countGroupedBySite()).thenReturn(List.of(count(1, 10)));
+        when(lemmaRepository.countGroupedBySite()).thenReturn(List.of(count(1, 100)));
+        when(lemmaDictionary.countLoaded(1)).thenReturn(null);
+        
+        assertEquals(List.of(site), siteStatistics.getCurrentSites());
+        siteStatistics.pageAdded(1);
+        siteStatistics.pageAdded(1);
+        siteStatistics.pagesRemoved(1, 5);
+        assertEquals(7, siteStatistics.getPages(1));
+        assertEquals(100, siteStatistics.getLemmas(1));
+        
+        when(lemmaDictionary.countLoaded(1)).thenReturn(120);
+        assertEquals(120, siteStatistics.getLemmas(1));
+        
+        siteStatistics.getCurrentSites();
+        siteStatistics.getPages(1);
+        verify(pageRepository, times(1)).countGroupedBySite();
+        
+        when(pageRepository.countGroupedBySite()).thenReturn(List.of(count(1, 8)));
+        siteStatistics.reconcile();
+        assertEquals(8, siteStatistics.getPages(1));
+    }
+    
+    @Test
+    void testBuildingGenerationHidesActive() {
+        SiteEntity active = site(1, "https://a.test", GenerationState.ACTIVE);
+        when(siteRepository.findByGenerationStateIn(anyCollection())).thenReturn(List.of(active));
+        siteStatistics.reconcile();
+        
+        SiteEntity building = site(2, "https://a.test", GenerationState.BUILDING);
+        siteStatistics.siteSaved(building);
+        siteStatistics.pageAdded(2);
+        siteStatistics.siteSaved(active);
+        
+        assertEquals(List.of(building), siteStatistics.getCurrentSites());
+        assertEquals(1, siteStatistics.getPages(2));
+    }
+    
+    private static SiteEntity site(int id, String url, GenerationState state) {
+        SiteEntity site = new SiteEntity();
+        site.setId(id);
+        site.setUrl(url);
+        site.setGenerationState(state);
+        return site;
+    }
+    
+    private static SiteCountView count(int siteId, long count) {
+        return new SiteCountView() {
+            @Override
+            public Integer getSiteId() {
+                return siteId;
+            }
+            
+            @Override
+            public Long getCount() {
+                return count;
+            }
+        };
+    }
+}
@@ -0,0 +1,160 @@
+package searchengine.services;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import searchengine.config.LemmatizerSettings;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение построения сниппета: прежняя реализация (разбиение на предложения,
+ * лемматизация каждого предложения и каждого слова) против SnippetGenerator
+ * без кэша и с кэшированной разметкой текста.
+ * Запуск: main() из IDE после mvn test-compile.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SnippetBenchmark {
+    
+    private static final String[] WORDS = {
+        "продажа", "телефонов", "планшетов", "доставка", "городу", "гарантия", "ремонт",
+        "экранов", "ноутбуков", "выбор", "аксессуары", "чехлы", "магазин", "адрес",
+        "заказ", "оплата", "скидки", "новинки", "каталог", "товаров", "цена", "качество"
+    };
+    
+    private LemmaService lemmaService;
+    private SnippetGenerator snippetGenerator;
+    private LegacySnippets legacySnippets;
+    private String text;
+    private Map<String, Integer> queryLemmas;
+    
+    @Setup
+    public void setUp() {
+        lemmaService = new LemmaService(new SuffixLemmatizer(), new LemmatizerSettings());
+        snippetGenerator = new SnippetGenerator(lemmaService);
+        legacySnippets = new LegacySnippets(lemmaService);
+        
+        Random random = new Random(42);
+        StringBuilder builder = new StringBuilder();
+        for (int sentence = 0; sentence < 400; sentence++) {
+            int length = 5 + random.nextInt(10);
+            for (int i = 0; i < length; i++) {
+                String word = WORDS[random.nextInt(WORDS.length)];
+                builder.append(i == 0 ? Character.toUpperCase(word.charAt(0)) + word.substring(1) : word);
+                builder.append(i == length - 1 ? ". " : " ");
+            }
+        }
+        builder.append("Уникальная акция на смартфоны завершается сегодня.");
+        text = builder.toString();
+        queryLemmas = lemmaService.getLemmas("акция смартфоны");
+    }
+    
+    @Benchmark
+    public String legacy() {
+        return legacySnippets.generateSnippet(text, queryLemmas);
+    }
+    
+    @Benchmark
+    public String tokenizedWithoutCache() {
+        return snippetGenerator.build(snippetGenerator.tokenize(text), queryLemmas.keySet());
+    }
+    
+    @Benchmark
+    public String tokenizedCached() {
+        return snippetGenerator.generate(1, text, queryLemmas.keySet());
+    }
+    
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(SnippetBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+    
+    /**
+     * Построение сниппета в том виде, в каком оно было в SearchService
+     */
+    static class LegacySnippets {
+        
+        private final LemmaService lemmaService;
+        
+        LegacySnippets(LemmaService lemmaService) {
+            this.lemmaService = lemmaService;
+        }
+        
+        String generateSnippet(String text, Map<String, Integer> queryLemmas) {
+            List<String> relevantSentences = findRelevantSentences(text, queryLemmas);
+            String snippet = String.join(". ", relevantSentences);
+            snippet = highlightQueryWords(snippet, queryLemmas);
+            
+            return truncateSnippet(snippet, 300);
+        }
+        
+        private List<String> findRelevantSentences(String text, Map<String, Integer> queryLemmas) {
+            String[] sentences = text.split("\\. ");
+            List<String> relevantSentences = new ArrayList<>();
+            
+            for (String sentence : sentences) {
+                if (containsQueryLemma(sentence, queryLemmas)) {
+                    relevantSentences.add(sentence);
+                    if (relevantSentences.size() >= 3) {
+                        break;
+                    }
+                }
+            }
+            
+            if (relevantSentences.isEmpty() && sentences.length > 0) {
+                relevantSentences.add(sentences[0]);
+            }
+            
+            return relevantSentences;
+        }
+        
+        private boolean containsQueryLemma(String sentence, Map<String, Integer> queryLemmas) {
+            Map<String, Integer> sentenceLemmas = lemmaService.getLemmas(sentence);
+            return sentenceLemmas.keySet().stream()
+                    .anyMatch(queryLemmas::containsKey);
+        }
+        
+        private String highlightQueryWords(String text, Map<String, Integer> queryLemmas) {
+            for (String lemma : queryLemmas.keySet()) {
+                text = highlightLemma(text, lemma);
+            }
+            return text;
+        }
+        
+        private String truncateSnippet(String snippet, int maxLength) {
+            if (snippet.length() > maxLength) {
+                return snippet.substring(0, maxLength - 3) + "...";
+            }
+            return snippet;
+        }
+        
+        private String highlightLemma(String text, String lemma) {
+            String[] words = text.split("\\s+");
+            StringBuilder result = new StringBuilder();
+            
+            for (String word : words) {
+                String cleanWord = word.replaceAll("[^а-яa-zА-ЯA-Z]", "").toLowerCase();
+                Map<String, Integer> wordLemmas = lemmaService.getLemmas(cleanWord);
+                
+                if (wordLemmas.containsKey(lemma)) {
+                    result.append("<b>").append(word).append("</b> ");
+                } else {
+                    result.append(word).append(" ");
+                }
+            }
+            
+            return result.toString().trim();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package searchengine.services;
+
+import org.junit.jupiter.api.Test;
+import searchengine.config.LemmatizerSettings;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnippetGeneratorTest {
+    
+    private final LemmaService lemmaService = new LemmaService(new SuffixLemmatizer(), new LemmatizerSettings());
+    private final SnippetGenerator snippetGenerator = new SnippetGenerator(lemmaService);
+    
+    @Test
+    void testHighlightsAllFormsOfQueryLemma() {
+        String snippet = snippetGenerator.generate(1, "Ремонт телефонов. Замена экранов телефонов.",
+                lemmaService.getLemmas("телефоны").keySet());
+        
+        assertEquals("Ремонт <b>телефонов</b>. Замена экранов <b>телефонов</b>.", snippet);
+    }
+    
+    @Test
+    void testPicksWindowWithAllQueryLemmas() {
+        StringBuilder text = new StringBuilder("Телефоны в начале страницы. ");
+        for (int i = 0; i < 50; i++) {
+            text.append("Обычный текст без совпадений. ");
+        }
+        text.append("Чехлы для телефонов и планшетов.");
+        
+        String snippet = snippetGenerator.generate(2, text.toString(),
+                lemmaService.getLemmas("телефоны планшеты").keySet());
+        
+        assertTrue(snippet.startsWith("..."));
+        assertTrue(snippet.contains("<b>телефонов</b> и <b>планшетов</b>"));
+        assertTrue(snippet.length() <= SnippetGenerator.MAX_LENGTH + 30);
+    }
+    
+    @Test
+    void testEscapesHtml() {
+        String snippet = snippetGenerator.generate(3, "Телефоны <script> & ноутбуки",
+                lemmaService.getLemmas("телефоны").keySet());
+        
+        assertEquals("<b>Телефоны</b> &lt;script&gt; &amp; ноутбуки", snippet);
+    }
+    
+    @Test
+    void testWithoutMatchesReturnsBeginningOfText() {
+        String snippet = snippetGenerator.generate(4, "Контакты магазина", Set.of("телефон"));
+        
+        assertEquals("Контакты магазина", snippet);
+    }
+}
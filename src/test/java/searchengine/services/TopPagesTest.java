@@ -0,0 +1,60 @@
+package searchengine.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TopPagesTest {
+    
+    @Test
+    void testKeepsOnlyBestPages() {
+        TopPages topPages = new TopPages(3);
+        topPages.offer(1, 1, 0.5);
+        topPages.offer(1, 2, 0.9);
+        topPages.offer(1, 3, 0.1);
+        topPages.offer(1, 4, 0.7);
+        topPages.offer(1, 5, 0.3);
+        
+        assertEquals(List.of(2, 4, 1), pageIds(topPages.toList()));
+    }
+    
+    @Test
+    void testEqualRelevanceOrderedByPageId() {
+        TopPages topPages = new TopPages(2);
+        topPages.offer(1, 7, 1.0);
+        topPages.offer(1, 3, 1.0);
+        topPages.offer(1, 5, 1.0);
+        
+        assertEquals(List.of(3, 5), pageIds(topPages.toList()));
+    }
+    
+    @Test
+    void testZeroCapacity() {
+        TopPages topPages = new TopPages(0);
+        topPages.offer(1, 1, 1.0);
+        
+        assertTrue(topPages.toList().isEmpty());
+    }
+    
+    @Test
+    void testMergeReturnsRequestedSlice() {
+        List<ScoredPage> first = List.of(
+                new ScoredPage(1, 1, 1.0), new ScoredPage(1, 2, 0.6), new ScoredPage(1, 3, 0.2));
+        List<ScoredPage> second = List.of(
+                new ScoredPage(2, 10, 0.9), new ScoredPage(2, 11, 0.5));
+        List<ScoredPage> third = List.of();
+        
+        List<List<ScoredPage>> rankings = List.of(first, second, third);
+        
+        assertEquals(List.of(1, 10, 2, 11, 3), pageIds(TopPages.merge(rankings, 0, 10)));
+        assertEquals(List.of(2, 11), pageIds(TopPages.merge(rankings, 2, 2)));
+        assertTrue(TopPages.merge(rankings, 5, 2).isEmpty());
+    }
+    
+    private static List<Integer> pageIds(List<ScoredPage> pages) {
+        return pages.stream().map(ScoredPage::getPageId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,53 @@
+package searchengine.services;
+
+import org.junit.jupiter.api.Test;
+import searchengine.config.CrawlerSettings;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UrlCanonicalizerTest {
+    
+    private final UrlCanonicalizer canonicalizer = new UrlCanonicalizer(new CrawlerSettings());
+    
+    @Test
+    void testNormalizesHostPortAndPath() {
+        assertEquals("https://example.com/catalog",
+                     canonicalizer.canonicalize("HTTPS://Example.COM:443/shop/../catalog/#top"));
+        assertEquals("http://example.com:8080/", canonicalizer.canonicalize("http://example.com:8080"));
+        assertEquals("http://example.com/a/b", canonicalizer.canonicalize("http://example.com/a/./b//"));
+        assertEquals("http://example.com/cart", canonicalizer.canonicalize("http://example.com/cart;jsessionid=AB12"));
+    }
+    
+    @Test
+    void testStripsConfiguredParametersAndSortsTheRest() {
+        assertEquals("https://example.com/item?color=red&id=5",
+                     canonicalizer.canonicalize("https://example.com/item?id=5&utm_source=mail&color=red&UTM_Medium=x"
+                                                        + "&fbclid=abc"));
+        assertEquals("https://example.com/item", canonicalizer.canonicalize("https://example.com/item?utm_campaign=1&"));
+    }
+    
+    @Test
+    void testKeepsTrailingSlashWhenConfigured() {
+        CrawlerSettings settings = new CrawlerSettings();
+        settings.setCanonicalStripTrailingSlash(false);
+        
+        assertEquals("https://example.com/dir/", new UrlCanonicalizer(settings).canonicalize("https://example.com/dir/"));
+    }
+    
+    @Test
+    void testKeepsHostsThatUriCannotParse() {
+        assertEquals("https://xn--e1afmkfd.xn--p1ai/Каталог",
+                     canonicalizer.canonicalize("https://Пример.РФ/Каталог"));
+        assertEquals("http://my_host.example.com/a", canonicalizer.canonicalize("http://My_Host.example.com/a"));
+        assertEquals("http://example.com/a%7Cb?q=x%20y%7Cz",
+                     canonicalizer.canonicalize("http://user@example.com:80/a|b?q=x y|z"));
+    }
+    
+    @Test
+    void testRejectsNonHttpAndMalformedUrls() {
+        assertNull(canonicalizer.canonicalize("mailto:info@example.com"));
+        assertNull(canonicalizer.canonicalize("javascript:void(0)"));
+        assertNull(canonicalizer.canonicalize("http://exa mple.com/<>"));
+        assertNull(canonicalizer.canonicalize(""));
+    }
+}
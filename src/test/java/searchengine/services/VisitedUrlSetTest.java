@@ -0,0 +1,74 @@
+package searchengine.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VisitedUrlSetTest {
+    
+    @Test
+    void testAddsEachUrlOnceWhileGrowing() {
+        VisitedUrlSet visited = new VisitedUrlSet(1 << 20, 1 << 20);
+        
+        for (int i = 0; i < 100_000; i++) {
+            assertTrue(visited.add("https://site.test/page/" + i));
+        }
+        for (int i = 0; i < 100_000; i++) {
+            assertFalse(visited.add("https://site.test/page/" + i));
+        }
+        assertEquals(100_000, visited.size());
+    }
+    
+    @Test
+    void testConcurrentAddsAcceptEachUrlExactlyOnce() throws Exception {
+        VisitedUrlSet visited = new VisitedUrlSet(1 << 20, 1 << 20);
+        int urls = 50_000;
+        int threads = 8;
+        AtomicInteger accepted = new AtomicInteger();
+        CyclicBarrier start = new CyclicBarrier(threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < urls; i++) {
+                        if (visited.add("https://site.test/" + i)) {
+                            accepted.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        
+        assertEquals(urls, accepted.get());
+        assertEquals(urls, visited.size());
+    }
+    
+    @Test
+    void testOverflowGoesToBloomFilter() {
+        VisitedUrlSet visited = new VisitedUrlSet(1000, 1 << 20);
+        
+        int accepted = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (visited.add("https://site.test/" + i)) {
+                accepted++;
+            }
+        }
+        for (int i = 0; i < 10_000; i++) {
+            assertFalse(visited.add("https://site.test/" + i), "Адрес принят повторно: " + i);
+        }
+        assertTrue(accepted > 9_900, "Фильтр отбросил слишком много новых адресов: " + (10_000 - accepted));
+    }
+}